@@ -0,0 +1,77 @@
+package dev.coral.execution;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Requests per second of the {@value HandlerExecutorFactory#HANDLERS} executor bean in each
+ * {@code coral.execution.mode} when every request blocks, as the Splunk handlers do while waiting on HTTP responses.
+ * The executor is taken from an application context, so {@code BLOCKING} measures the bounded platform-thread pool
+ * of {@code coral.execution.blocking-threads} as configured for the app. Each invocation submits a burst of requests
+ * and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HandlerExecutorBenchmark {
+
+    private static final int REQUESTS = 2_000;
+
+    @Param({"BLOCKING", "VIRTUAL"})
+    private String mode;
+
+    @Param({"20"})
+    private long blockMillis;
+
+    private ApplicationContext context;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        context = ApplicationContext.run(Map.of(
+            "coral.execution.mode", mode,
+            "coral.snapshot.enabled", false,
+            "micronaut.metrics.export.signalfx.enabled", false,
+            "otel.traces.exporter", "none"));
+        executor = context.getBean(ExecutorService.class, Qualifiers.byName(HandlerExecutorFactory.HANDLERS));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void blockingRequests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Requests did not finish within 60 s");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package dev.coral.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.coral.service.Span;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Deserialization of the bundled {@code json/*.json} fixtures with Jackson databind and with Micronaut Serde,
+ * which the declarative Splunk client uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeserializationBenchmark {
+
+    private ObjectMapper jackson;
+    private io.micronaut.serde.ObjectMapper serde;
+    private byte[] mts;
+    private byte[] topology;
+    private byte[] alert;
+    private byte[] trace;
+
+    @Setup
+    public void setup() {
+        jackson = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        serde = io.micronaut.serde.ObjectMapper.getDefault();
+        mts = fixture("splunk-mts.json");
+        topology = fixture("splunk-topology.json");
+        alert = fixture("webhook-payload.json");
+        trace = fixture("trace.json");
+    }
+
+    @Benchmark
+    public SplunkMTS jacksonMts() throws IOException {
+        return jackson.readValue(mts, SplunkMTS.class);
+    }
+
+    @Benchmark
+    public SplunkMTS serdeMts() throws IOException {
+        return serde.readValue(mts, SplunkMTS.class);
+    }
+
+    @Benchmark
+    public SplunkTopology jacksonTopology() throws IOException {
+        return jackson.readValue(topology, SplunkTopology.class);
+    }
+
+    @Benchmark
+    public SplunkTopology serdeTopology() throws IOException {
+        return serde.readValue(topology, SplunkTopology.class);
+    }
+
+    @Benchmark
+    public SplunkAlert jacksonAlert() throws IOException {
+        return jackson.readValue(alert, SplunkAlert.class);
+    }
+
+    @Benchmark
+    public SplunkAlert serdeAlert() throws IOException {
+        return serde.readValue(alert, SplunkAlert.class);
+    }
+
+    @Benchmark
+    public Span[] jacksonTrace() throws IOException {
+        return jackson.readValue(trace, Span[].class);
+    }
+
+    @Benchmark
+    public Span[] serdeTrace() throws IOException {
+        return serde.readValue(trace, Span[].class);
+    }
+
+    static byte[] fixture(String name) {
+        try (InputStream in = DeserializationBenchmark.class.getResourceAsStream("/json/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture json/" + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
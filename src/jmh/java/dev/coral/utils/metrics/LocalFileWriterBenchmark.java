@@ -0,0 +1,90 @@
+package dev.coral.utils.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.coral.model.SplunkTopology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@link LocalFileWriter#save} of a pre-serialized string and of a model object into a temporary directory:
+ * what a request thread pays ({@code enqueue*}, which settles at the writer's throughput once the queue is full)
+ * and the full write until the file is on disk ({@code write*}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalFileWriterBenchmark {
+
+    @Param({"true", "false"})
+    private boolean fsync;
+
+    private Path directory;
+    private LocalFileWriter writer;
+    private String topologyJson;
+    private SplunkTopology topology;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("coral-jmh");
+        writer = new LocalFileWriter(directory, 1024, 256, Duration.ofSeconds(30), fsync);
+        topologyJson = new String(fixture("splunk-topology.json"));
+        topology = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readValue(topologyJson, SplunkTopology.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        writer.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<Path> enqueueString() {
+        return writer.save("topology", topologyJson);
+    }
+
+    @Benchmark
+    public CompletableFuture<Path> enqueueObject() {
+        return writer.save("topology", topology);
+    }
+
+    @Benchmark
+    public Path writeString() {
+        return writer.save("topology", topologyJson).join();
+    }
+
+    @Benchmark
+    public Path writeObject() {
+        return writer.save("topology", topology).join();
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = LocalFileWriterBenchmark.class.getResourceAsStream("/json/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture json/" + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+}
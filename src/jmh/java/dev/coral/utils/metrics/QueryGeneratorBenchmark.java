@@ -0,0 +1,51 @@
+package dev.coral.utils.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import dev.coral.utils.traces.GraphQLGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * String building of the Splunk query generators, called once per service or (service, metric) by the
+ * collection pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryGeneratorBenchmark {
+
+    private final String serviceName = "agamemnon";
+    private final String metricName = "service.request.duration.ns.p90";
+    private final String jobId = "a7c9b1e2-4f6d-4c1a-9b8e-2d3f4a5b6c7d";
+    private final long now = 1_730_000_000_000L;
+
+    @Benchmark
+    public String mtsQueryForService() {
+        return MTSQueryGenerator.generateQueryForServiceAt(serviceName, now);
+    }
+
+    @Benchmark
+    public String mtsTimeRange() {
+        return MTSQueryGenerator.generateTimeRange(15, now);
+    }
+
+    @Benchmark
+    public String timeSeriesWindowQuery() {
+        return TimeSeriesWindowQueryGenerator.generateQueryForService(serviceName, metricName);
+    }
+
+    @Benchmark
+    public String traceSearchQuery() {
+        return GraphQLGenerator.generateTraceSearchQuery(serviceName);
+    }
+
+    @Benchmark
+    public String getTraceIdQuery() {
+        return GraphQLGenerator.generateGetTraceIdQuery(jobId);
+    }
+}
@@ -0,0 +1,60 @@
+package dev.coral.utils.traces;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.coral.service.Span;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Exit span detection on the bundled {@code json/trace.json}: over already materialized spans, as
+ * {@code SplunkO11yDataFetcherService.findExitSpanInTrace} does, and straight from the raw response bytes as the
+ * trace endpoints do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExitSpanBenchmark {
+
+    private byte[] rawTrace;
+    private List<Span> trace;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = ExitSpanBenchmark.class.getResourceAsStream("/json/trace.json")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture json/trace.json");
+            }
+            rawTrace = in.readAllBytes();
+        }
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        trace = Arrays.asList(mapper.readValue(rawTrace, Span[].class));
+    }
+
+    @Benchmark
+    public Span findExitSpanInTrace() {
+        return SpanIndex.of(trace).exitSpan();
+    }
+
+    @Benchmark
+    public Span findExitSpanFromRawTrace() {
+        try {
+            return ExitSpanExtractor.findExitSpan(rawTrace);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package dev.coral.alerts;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+import dev.coral.config.AlertIndexConfig;
+import dev.coral.model.SplunkAlert;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * In-memory index over ingested alerts. Alerts are kept in ingestion order in a ring and every {@code detectorId},
+ * {@code severity}, {@code status}, {@code incidentId} and dimension key/value has a postings list of ring
+ * sequence numbers. A query walks the shortest postings list of its filters, or the whole ring when it has none,
+ * from the newest alert backwards. The other filters and the time range are checked per alert. Alerts whose
+ * timestamp cannot reach the range are skipped with a binary search over the running maximum of timestamps.
+ * <p>
+ * Alerts older than the maximum age, by ingestion time, or beyond the maximum size are evicted from the oldest end.
+ */
+@Singleton
+public class AlertIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maximumSize;
+    private final long maxAgeMillis;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Ring of alerts; sequence s lives at s % capacity and [head, tail) are indexed
+    private SplunkAlert[] alerts = new SplunkAlert[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] maxTimestamps = new long[INITIAL_CAPACITY];
+    private long[] ingestedAt = new long[INITIAL_CAPACITY];
+    private long head;
+    private long tail;
+
+    @Inject
+    public AlertIndex(AlertIndexConfig config) {
+        this(config.getMaximumSize(), config.getMaxAge());
+    }
+
+    public AlertIndex(int maximumSize, Duration maxAge) {
+        this.maximumSize = Math.max(1, maximumSize);
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    public void add(SplunkAlert alert) {
+        add(alert, System.currentTimeMillis());
+    }
+
+    /** Indexes an alert that was ingested at {@code ingestedAtMillis}. */
+    public void add(SplunkAlert alert, long ingestedAtMillis) {
+        long timestamp = timestampMillis(alert, ingestedAtMillis);
+        lock.writeLock().lock();
+        try {
+            evict(ingestedAtMillis);
+            if (tail - head == maximumSize) {
+                evictOldest();
+            }
+            if (tail - head == alerts.length) {
+                grow();
+            }
+            long sequence = tail++;
+            int slot = slot(sequence);
+            alerts[slot] = alert;
+            timestamps[slot] = timestamp;
+            maxTimestamps[slot] = sequence == head ? timestamp : Math.max(timestamp, maxTimestamps[slot(sequence - 1)]);
+            ingestedAt[slot] = ingestedAtMillis;
+            for (String key : keys(alert)) {
+                postings.computeIfAbsent(key, k -> new Postings()).add(sequence);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return (int) (tail - head);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Newest alerts first that match every filter set on the query. */
+    public AlertQueryResult query(AlertQuery query) {
+        List<String> filters = filters(query);
+        long now = System.currentTimeMillis();
+        if (hasExpired(now)) {
+            lock.writeLock().lock();
+            try {
+                evict(now);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            List<SplunkAlert> matches = new ArrayList<>(Math.min(query.getLimit(), 1024));
+            long first = firstReaching(query.getFrom());
+            Postings shortest = null;
+            for (String filter : filters) {
+                Postings candidates = postings.get(filter);
+                if (candidates == null) {
+                    return new AlertQueryResult(matches, false);
+                }
+                if (shortest == null || candidates.size() < shortest.size()) {
+                    shortest = candidates;
+                }
+            }
+            boolean truncated = false;
+            if (shortest == null) {
+                for (long sequence = tail - 1; sequence >= first; sequence--) {
+                    if (matches(sequence, query, filters)) {
+                        if (matches.size() == query.getLimit()) {
+                            truncated = true;
+                            break;
+                        }
+                        matches.add(alerts[slot(sequence)]);
+                    }
+                }
+            } else {
+                for (int i = shortest.size() - 1; i >= 0; i--) {
+                    long sequence = shortest.get(i);
+                    if (sequence < first) {
+                        break;
+                    }
+                    if (matches(sequence, query, filters)) {
+                        if (matches.size() == query.getLimit()) {
+                            truncated = true;
+                            break;
+                        }
+                        matches.add(alerts[slot(sequence)]);
+                    }
+                }
+            }
+            return new AlertQueryResult(matches, truncated);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matches(long sequence, AlertQuery query, List<String> filters) {
+        int slot = slot(sequence);
+        long timestamp = timestamps[slot];
+        if (timestamp < query.getFrom() || timestamp > query.getTo()) {
+            return false;
+        }
+        if (filters.size() <= 1) {
+            return true;
+        }
+        SplunkAlert alert = alerts[slot];
+        return matches(query.getDetectorId(), alert.getDetectorId())
+            && matches(query.getSeverity(), alert.getSeverity())
+            && matches(query.getStatus(), alert.getStatus())
+            && matches(query.getIncidentId(), alert.getIncidentId())
+            && matchesDimensions(query.getDimensions(), alert.getDimensions());
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return expected == null || expected.equals(actual);
+    }
+
+    private static boolean matchesDimensions(Map<String, String> expected, Map<String, String> actual) {
+        if (expected == null || expected.isEmpty()) {
+            return true;
+        }
+        if (actual == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> dimension : expected.entrySet()) {
+            if (!dimension.getValue().equals(actual.get(dimension.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** First sequence whose running maximum timestamp reaches {@code from}; every earlier alert is older. */
+    private long firstReaching(long from) {
+        long low = head;
+        long high = tail;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (maxTimestamps[slot(mid)] < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean hasExpired(long now) {
+        lock.readLock().lock();
+        try {
+            return head < tail && ingestedAt[slot(head)] < now - maxAgeMillis;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void evict(long now) {
+        long oldest = now - maxAgeMillis;
+        while (head < tail && ingestedAt[slot(head)] < oldest) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        int slot = slot(head);
+        for (String key : keys(alerts[slot])) {
+            Postings list = postings.get(key);
+            if (list != null && list.removeFirst(head)) {
+                postings.remove(key);
+            }
+        }
+        // The running maxima of the remaining alerts may still include this one's timestamp. They stay monotonic
+        // and at least the true maximum, so range lookups only start a little earlier than they could.
+        alerts[slot] = null;
+        head++;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) alerts.length * 2, Math.max(maximumSize, alerts.length));
+        SplunkAlert[] newAlerts = new SplunkAlert[capacity];
+        long[] newTimestamps = new long[capacity];
+        long[] newMaxTimestamps = new long[capacity];
+        long[] newIngestedAt = new long[capacity];
+        for (long sequence = head; sequence < tail; sequence++) {
+            int from = slot(sequence);
+            int to = (int) (sequence % capacity);
+            newAlerts[to] = alerts[from];
+            newTimestamps[to] = timestamps[from];
+            newMaxTimestamps[to] = maxTimestamps[from];
+            newIngestedAt[to] = ingestedAt[from];
+        }
+        alerts = newAlerts;
+        timestamps = newTimestamps;
+        maxTimestamps = newMaxTimestamps;
+        ingestedAt = newIngestedAt;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % alerts.length);
+    }
+
+    private static List<String> keys(SplunkAlert alert) {
+        List<String> keys = new ArrayList<>();
+        addKey(keys, "detectorId", alert.getDetectorId());
+        addKey(keys, "severity", alert.getSeverity());
+        addKey(keys, "status", alert.getStatus());
+        addKey(keys, "incidentId", alert.getIncidentId());
+        if (alert.getDimensions() != null) {
+            for (Map.Entry<String, String> dimension : alert.getDimensions().entrySet()) {
+                if (dimension.getKey() != null && dimension.getValue() != null) {
+                    keys.add(dimensionKey(dimension.getKey(), dimension.getValue()));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> filters(AlertQuery query) {
+        List<String> filters = new ArrayList<>();
+        addKey(filters, "detectorId", query.getDetectorId());
+        addKey(filters, "severity", query.getSeverity());
+        addKey(filters, "status", query.getStatus());
+        addKey(filters, "incidentId", query.getIncidentId());
+        if (query.getDimensions() != null) {
+            query.getDimensions().forEach((key, value) -> filters.add(dimensionKey(key, value)));
+        }
+        return filters;
+    }
+
+    private static void addKey(List<String> keys, String field, String value) {
+        if (value != null) {
+            keys.add(field + '\u0000' + value);
+        }
+    }
+
+    private static String dimensionKey(String key, String value) {
+        return "dimension\u0000" + key + '\u0000' + value;
+    }
+
+    /** Alert timestamp in epoch millis, or the ingestion time if the alert has none or it cannot be parsed. */
+    static long timestampMillis(SplunkAlert alert, long ingestedAtMillis) {
+        String timestamp = alert.getTimestamp();
+        if (timestamp == null || timestamp.isEmpty()) {
+            return ingestedAtMillis;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return Instant.parse(timestamp).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return ingestedAtMillis;
+            }
+        }
+    }
+
+    /** Ascending sequence numbers; evicted ones are dropped from the front. */
+    private static final class Postings {
+        private long[] sequences = new long[4];
+        private int start;
+        private int end;
+
+        void add(long sequence) {
+            if (end == sequences.length) {
+                if (start > sequences.length / 2) {
+                    System.arraycopy(sequences, start, sequences, 0, end - start);
+                } else {
+                    sequences = Arrays.copyOfRange(sequences, start, sequences.length * 2 + start);
+                }
+                end -= start;
+                start = 0;
+            }
+            sequences[end++] = sequence;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        long get(int index) {
+            return sequences[start + index];
+        }
+
+        /** Removes the sequence if it is the first one; returns whether the list is now empty. */
+        boolean removeFirst(long sequence) {
+            if (start < end && sequences[start] == sequence) {
+                start++;
+            }
+            return start == end;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class AlertQuery {
+        /** Inclusive lower bound of the alert timestamp in epoch millis. */
+        private long from = Long.MIN_VALUE;
+        /** Inclusive upper bound of the alert timestamp in epoch millis. */
+        private long to = Long.MAX_VALUE;
+        private String detectorId;
+        private String severity;
+        private String status;
+        private String incidentId;
+        private Map<String, String> dimensions;
+        private int limit = 100;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class AlertQueryResult {
+        private List<SplunkAlert> alerts;
+        /** Whether more alerts matched than the limit. */
+        private boolean truncated;
+    }
+}
@@ -0,0 +1,318 @@
+package dev.coral.alerts;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+import dev.coral.config.AlertIndexConfig;
+import dev.coral.config.AlertLogConfig;
+import dev.coral.config.AlertLogConfig.Durability;
+import dev.coral.model.SplunkAlert;
+import dev.coral.utils.Directories;
+import dev.coral.utils.JsonFactories;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingests alert webhooks into the {@link AlertLog}. A payload is a single alert or an array of alerts. Alerts whose
+ * {@code incidentId} + {@code status} was already seen within the dedup window are dropped. The remaining alerts are
+ * encoded as compact single-line JSON on the request thread and queued for a writer thread. That thread appends
+ * many webhooks to the log at once and syncs according to {@link Durability}. The returned future completes
+ * according to the durability: on enqueue, once written, or once synced.
+ * <p>
+ * Accepted alerts are also added to the {@link AlertIndex} as soon as they are queued.
+ */
+@Slf4j
+@Singleton
+public class AlertIngestionService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper(JsonFactories.newJsonFactory())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final Batch SHUTDOWN = new Batch(List.of(), List.of(), null);
+
+    private final AlertLog alertLog;
+    private final AlertIndex alertIndex;
+    private final Durability durability;
+    private final BlockingQueue<Batch> queue;
+    private final int maxBatchSize;
+    private final Duration enqueueTimeout;
+    private final Cache<String, Boolean> seen;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    @Inject
+    public AlertIngestionService(AlertLogConfig config, AlertIndex alertIndex, AlertIndexConfig indexConfig)
+        throws IOException {
+        this(AlertLog.open(Directories.resolve(config.getDir()), config.getSegmentBytes(), config.getRetainSegments()),
+            alertIndex, config.getDurability(), config.getQueueCapacity(), config.getMaxBatchSize(), config.getEnqueueTimeout(),
+            config.getDedupWindow(), config.getDedupMaximumSize());
+        if (indexConfig.isRestoreFromLog()) {
+            restoreIndex(indexConfig.getMaximumSize());
+        }
+    }
+
+    public AlertIngestionService(AlertLog alertLog, AlertIndex alertIndex, Durability durability, int queueCapacity,
+                                 int maxBatchSize, Duration enqueueTimeout, Duration dedupWindow,
+                                 long dedupMaximumSize) {
+        this.alertLog = alertLog;
+        this.alertIndex = alertIndex;
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.enqueueTimeout = enqueueTimeout;
+        this.seen = Caffeine.newBuilder()
+            .expireAfterWrite(dedupWindow)
+            .maximumSize(dedupMaximumSize)
+            .build();
+        this.writer = new Thread(this::run, "coral-alert-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Parses, deduplicates and queues the alerts of one webhook payload. The alerts are indexed once they are logged.
+     *
+     * @throws IOException if the payload is not a JSON alert or array of alerts
+     * @throws RejectedExecutionException if the service is closed or the queue stays full for the enqueue timeout
+     */
+    public CompletableFuture<IngestResult> ingest(byte[] payload) throws IOException {
+        List<SplunkAlert> alerts = parse(payload);
+        List<SplunkAlert> accepted = new ArrayList<>(alerts.size());
+        List<byte[]> records = new ArrayList<>(alerts.size());
+        List<String> keys = new ArrayList<>(alerts.size());
+        for (SplunkAlert alert : alerts) {
+            String key = dedupKey(alert);
+            if (key != null) {
+                if (seen.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+                    continue;
+                }
+                keys.add(key);
+            }
+            accepted.add(alert);
+            records.add(MAPPER.writeValueAsBytes(alert));
+        }
+        int duplicates = alerts.size() - records.size();
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(new IngestResult(alerts.size(), 0, duplicates, null));
+        }
+
+        Batch batch = new Batch(records, keys, new CompletableFuture<>());
+        enqueue(batch);
+        long now = System.currentTimeMillis();
+        // Only logged alerts are indexed, so that the index never shows an alert the log lost
+        CompletableFuture<Long> indexed = batch.appended.thenApply(firstOffset -> {
+            for (SplunkAlert alert : accepted) {
+                alertIndex.add(alert, now);
+            }
+            return firstOffset;
+        });
+        IngestResult result = new IngestResult(alerts.size(), records.size(), duplicates, null);
+        if (durability == Durability.ACCEPTED) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return indexed.thenApply(firstOffset -> {
+            result.setFirstOffset(firstOffset);
+            return result;
+        });
+    }
+
+    /** Up to {@code limit} logged alerts, as JSON lines, starting at {@code offset}. */
+    public List<byte[]> read(long offset, int limit) throws IOException {
+        return alertLog.read(offset, limit);
+    }
+
+    public long nextOffset() {
+        return alertLog.nextOffset();
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException, IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.put(SHUTDOWN);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        Batch batch;
+        while ((batch = queue.poll()) != null) {
+            fail(batch, new RejectedExecutionException("Alert log is closed"));
+        }
+        alertLog.close();
+    }
+
+    /**
+     * Adds the last {@code maximumSize} logged alerts to the index. Their ingestion time is not logged, so the alert
+     * timestamp stands in for it and alerts beyond the index's maximum age are evicted right away.
+     */
+    private void restoreIndex(int maximumSize) throws IOException {
+        long offset = Math.max(0, alertLog.nextOffset() - maximumSize);
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        List<byte[]> records;
+        while (!(records = alertLog.read(offset, 10_000)).isEmpty()) {
+            for (byte[] record : records) {
+                try {
+                    SplunkAlert alert = MAPPER.readValue(record, SplunkAlert.class);
+                    alertIndex.add(alert, Math.min(now, AlertIndex.timestampMillis(alert, now)));
+                    restored++;
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable alert log record: {}", e.getMessage());
+                }
+            }
+            offset = Math.max(offset, alertLog.firstOffset()) + records.size();
+        }
+        log.info("Restored {} alerts from the alert log into the alert index", restored);
+    }
+
+    private void enqueue(Batch batch) {
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Alert log is closed");
+            }
+            if (!queue.offer(batch, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("Alert log queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            forget(batch);
+            throw new RejectedExecutionException("Interrupted while queueing alerts", e);
+        } catch (RejectedExecutionException e) {
+            // Let the sender retry without its alerts being taken for duplicates
+            forget(batch);
+            throw e;
+        }
+    }
+
+    private void run() {
+        List<Batch> batches = new ArrayList<>(maxBatchSize);
+        List<byte[]> records = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batches.add(queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, so that queued alerts are not lost
+                continue;
+            }
+            queue.drainTo(batches, maxBatchSize - 1);
+            if (batches.remove(SHUTDOWN)) {
+                running = false;
+                queue.drainTo(batches);
+            }
+            for (Batch batch : batches) {
+                records.addAll(batch.records);
+            }
+            append(batches, records);
+            batches.clear();
+            records.clear();
+        }
+        log.info("Alert log writer stopped");
+    }
+
+    private void append(List<Batch> batches, List<byte[]> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            long offset = alertLog.append(records);
+            if (durability == Durability.SYNCED) {
+                alertLog.sync();
+            }
+            for (Batch batch : batches) {
+                batch.appended.complete(offset);
+                offset += batch.records.size();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not append {} alerts to the alert log", records.size(), e);
+            batches.forEach(batch -> fail(batch, e));
+        }
+    }
+
+    private void fail(Batch batch, Exception e) {
+        forget(batch);
+        batch.appended.completeExceptionally(e);
+    }
+
+    private void forget(Batch batch) {
+        seen.invalidateAll(batch.dedupKeys);
+    }
+
+    private static List<SplunkAlert> parse(byte[] payload) throws IOException {
+        List<SplunkAlert> alerts = new ArrayList<>();
+        try (JsonParser parser = MAPPER.createParser(payload)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                alerts.add(MAPPER.readValue(parser, SplunkAlert.class));
+            } else if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    alerts.add(MAPPER.readValue(parser, SplunkAlert.class));
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    throw new IOException("Expected an array of alert objects");
+                }
+            } else {
+                throw new IOException("Expected an alert object or an array of alerts");
+            }
+        }
+        return alerts;
+    }
+
+    private static String dedupKey(SplunkAlert alert) {
+        if (alert.getIncidentId() == null) {
+            return null;
+        }
+        return alert.getIncidentId() + '\u0000' + alert.getStatus();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class IngestResult {
+        private int received;
+        private int accepted;
+        private int duplicates;
+        /** Log offset of the first accepted alert; only known once the alerts are written. */
+        private Long firstOffset;
+    }
+
+    private static final class Batch {
+        private final List<byte[]> records;
+        private final List<String> dedupKeys;
+        private final CompletableFuture<Long> appended;
+
+        Batch(List<byte[]> records, List<String> dedupKeys, CompletableFuture<Long> appended) {
+            this.records = records;
+            this.dedupKeys = dedupKeys;
+            this.appended = appended;
+        }
+    }
+}
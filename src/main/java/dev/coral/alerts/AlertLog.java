@@ -0,0 +1,377 @@
+package dev.coral.alerts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Segmented append-only log of NDJSON records. Every record gets a sequential offset. A segment is a pair of files
+ * named after the offset of its first record: {@code <base>.ndjson} holding one record per line and
+ * {@code <base>.index} holding the 8-byte file position of each record, so a record is found by offset with one
+ * positional read of the index. The active segment is rolled once it reaches the configured size and only the
+ * newest segments are retained.
+ * <p>
+ * Appends come from a single writer thread; reads may run concurrently and only see records whose append has
+ * completed. On open, a record left half-written by a crash is truncated away.
+ */
+@Slf4j
+public final class AlertLog implements Closeable {
+
+    static final String DATA_SUFFIX = ".ndjson";
+    static final String INDEX_SUFFIX = ".index";
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES;
+    private static final byte NEWLINE = '\n';
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int retainSegments;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+
+    private AlertLog(Path directory, long segmentBytes, int retainSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainSegments = Math.max(1, retainSegments);
+    }
+
+    /** Opens the log in the directory, recovering its segments, or starts an empty one. */
+    public static AlertLog open(Path directory, long segmentBytes, int retainSegments) throws IOException {
+        Files.createDirectories(directory);
+        AlertLog alertLog = new AlertLog(directory, segmentBytes, retainSegments);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(DATA_SUFFIX))
+                .map(name -> Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length())))
+                .sorted()
+                .forEach(base -> alertLog.segments.put(base, new Segment(directory, base)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file in alert log directory " + directory, e);
+        }
+        Map.Entry<Long, Segment> last = alertLog.segments.lastEntry();
+        if (last == null) {
+            alertLog.active = alertLog.newSegment(0);
+        } else {
+            for (Segment segment : alertLog.segments.values()) {
+                segment.recover(segment == last.getValue());
+            }
+            alertLog.active = last.getValue();
+            alertLog.active.openForAppend();
+        }
+        log.info("Opened alert log {} with {} segments, next offset {}", directory, alertLog.segments.size(),
+            alertLog.nextOffset());
+        return alertLog;
+    }
+
+    /** Offset the next appended record will get; every record below it is readable. */
+    public long nextOffset() {
+        Segment segment = active;
+        return segment.baseOffset + segment.extent.count;
+    }
+
+    public long firstOffset() {
+        return segments.firstKey();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Appends records, each a single line of JSON without the trailing newline.
+     *
+     * @return the offset of the first record
+     */
+    public long append(List<byte[]> records) throws IOException {
+        long first = nextOffset();
+        int from = 0;
+        while (from < records.size()) {
+            long size = active.extent.size;
+            if (size > 0 && size + records.get(from).length + 1 > segmentBytes) {
+                roll();
+            }
+            from = active.append(records, from, segmentBytes);
+        }
+        return first;
+    }
+
+    /** Forces the active segment's records and index to disk. */
+    public void sync() throws IOException {
+        active.sync();
+    }
+
+    /** Up to {@code maxRecords} records starting at {@code offset}; records already removed by retention are skipped. */
+    public List<byte[]> read(long offset, int maxRecords) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        long next = Math.max(offset, firstOffset());
+        while (records.size() < maxRecords) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(next);
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            Extent extent = segment.extent;
+            int count = extent.count;
+            if (next >= segment.baseOffset + count) {
+                Long higher = segments.higherKey(segment.baseOffset);
+                if (higher == null) {
+                    break;
+                }
+                next = higher;
+                continue;
+            }
+            try {
+                int read = segment.read((int) (next - segment.baseOffset), extent, maxRecords - records.size(), records);
+                next += read;
+            } catch (NoSuchFileException e) {
+                // Removed by retention while reading, continue with the next segment
+                next = segment.baseOffset + count;
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        active.sync();
+        active.closeForAppend();
+    }
+
+    private void roll() throws IOException {
+        Segment previous = active;
+        previous.sync();
+        previous.closeForAppend();
+        active = newSegment(previous.baseOffset + previous.extent.count);
+        while (segments.size() > retainSegments) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            oldest.delete();
+            log.info("Removed alert log segment {}", oldest.baseOffset);
+        }
+    }
+
+    private Segment newSegment(long baseOffset) throws IOException {
+        Segment segment = new Segment(directory, baseOffset);
+        segment.openForAppend();
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    /** Size in bytes and number of records of a segment, published together. */
+    private static final class Extent {
+        private static final Extent EMPTY = new Extent(0, 0);
+
+        private final long size;
+        private final int count;
+
+        Extent(long size, int count) {
+            this.size = size;
+            this.count = count;
+        }
+    }
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final Path dataFile;
+        private final Path indexFile;
+        private FileChannel data;
+        private FileChannel index;
+        // Replaced by the appending thread only, after the records it covers are written
+        private volatile Extent extent = Extent.EMPTY;
+
+        Segment(Path directory, long baseOffset) {
+            this.baseOffset = baseOffset;
+            String name = String.format("%020d", baseOffset);
+            this.dataFile = directory.resolve(name + DATA_SUFFIX);
+            this.indexFile = directory.resolve(name + INDEX_SUFFIX);
+        }
+
+        /**
+         * Restores size and count from the files. The last segment may end with a record that was written without
+         * its index entry, or an index entry past the data; both are cut off at the last complete record.
+         */
+        void recover(boolean last) throws IOException {
+            long dataSize = Files.exists(dataFile) ? Files.size(dataFile) : 0;
+            long indexSize = Files.exists(indexFile) ? Files.size(indexFile) : 0;
+            int entries = (int) (indexSize / INDEX_ENTRY_BYTES);
+            try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                while (entries > 0 && position(indexChannel, entries - 1) >= dataSize) {
+                    entries--;
+                }
+                long end = entries == 0 ? 0 : lineEnd(dataChannel, position(indexChannel, entries - 1), dataSize);
+                if (end < 0) {
+                    // The last indexed record is incomplete
+                    entries--;
+                    end = entries == 0 ? 0 : position(indexChannel, entries);
+                }
+                if (last || end != dataSize || (long) entries * INDEX_ENTRY_BYTES != indexSize) {
+                    if (end != dataSize || (long) entries * INDEX_ENTRY_BYTES != indexSize) {
+                        log.warn("Truncating alert log segment {} to {} records", baseOffset, entries);
+                    }
+                    dataChannel.truncate(end);
+                    indexChannel.truncate((long) entries * INDEX_ENTRY_BYTES);
+                }
+                this.extent = new Extent(end, entries);
+            }
+        }
+
+        void openForAppend() throws IOException {
+            data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            data.position(extent.size);
+            index.position((long) extent.count * INDEX_ENTRY_BYTES);
+        }
+
+        /**
+         * Appends records from {@code from} while they fit; returns the index of the first record not appended. If
+         * either write fails, both files are cut back to the committed extent, so that a retry does not leave records
+         * without index entries or index entries pointing past the data.
+         */
+        int append(List<byte[]> records, int from, long segmentBytes) throws IOException {
+            long position = extent.size;
+            int to = from;
+            long bytes = 0;
+            while (to < records.size()
+                && (to == from || position + bytes + records.get(to).length + 1 <= segmentBytes)) {
+                bytes += records.get(to).length + 1;
+                to++;
+            }
+            ByteBuffer dataBuffer = ByteBuffer.allocate((int) bytes);
+            ByteBuffer indexBuffer = ByteBuffer.allocate((to - from) * INDEX_ENTRY_BYTES);
+            for (int i = from; i < to; i++) {
+                indexBuffer.putLong(position + dataBuffer.position());
+                dataBuffer.put(records.get(i)).put(NEWLINE);
+            }
+            try {
+                writeFully(data, dataBuffer.flip());
+                writeFully(index, indexBuffer.flip());
+            } catch (IOException e) {
+                rollBack(e);
+                throw e;
+            }
+            extent = new Extent(position + bytes, extent.count + to - from);
+            return to;
+        }
+
+        /** Truncates and repositions both channels to the committed extent after a failed append. */
+        private void rollBack(IOException failure) {
+            Extent committed = extent;
+            long indexSize = (long) committed.count * INDEX_ENTRY_BYTES;
+            try {
+                data.truncate(committed.size);
+                data.position(committed.size);
+                index.truncate(indexSize);
+                index.position(indexSize);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+
+        int read(int first, Extent extent, int maxRecords, List<byte[]> records) throws IOException {
+            int count = extent.count;
+            int n = Math.min(maxRecords, count - first);
+            long segmentSize = extent.size;
+            try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ);
+                 FileChannel dataChannel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+                ByteBuffer positions = ByteBuffer.allocate((n + 1) * INDEX_ENTRY_BYTES);
+                long indexEnd = (long) count * INDEX_ENTRY_BYTES;
+                long indexPosition = (long) first * INDEX_ENTRY_BYTES;
+                positions.limit((int) Math.min(positions.capacity(), indexEnd - indexPosition));
+                readFully(indexChannel, positions, indexPosition);
+                positions.flip();
+                long start = positions.getLong();
+                long end = n < count - first ? position(positions, n) : segmentSize;
+                ByteBuffer chunk = ByteBuffer.allocate((int) (end - start));
+                readFully(dataChannel, chunk, start);
+                for (int i = 0; i < n; i++) {
+                    long recordStart = position(positions, i) - start;
+                    long recordEnd = (i + 1 < n ? position(positions, i + 1) : end) - start - 1;
+                    byte[] record = new byte[(int) (recordEnd - recordStart)];
+                    chunk.get((int) recordStart, record);
+                    records.add(record);
+                }
+            }
+            return n;
+        }
+
+        void sync() throws IOException {
+            if (data != null) {
+                data.force(false);
+                index.force(false);
+            }
+        }
+
+        void closeForAppend() throws IOException {
+            if (data != null) {
+                data.close();
+                index.close();
+                data = null;
+                index = null;
+            }
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(indexFile);
+        }
+
+        private static long position(FileChannel indexChannel, int entry) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            readFully(indexChannel, buffer, (long) entry * INDEX_ENTRY_BYTES);
+            return buffer.getLong(0);
+        }
+
+        private static long position(ByteBuffer positions, int entry) {
+            return positions.getLong(entry * INDEX_ENTRY_BYTES);
+        }
+
+        /** Position just past the newline ending the record at {@code start}, or -1 if the record has none. */
+        private static long lineEnd(FileChannel dataChannel, long start, long dataSize) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = start;
+            while (position < dataSize) {
+                buffer.clear();
+                int read = dataChannel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == NEWLINE) {
+                        return position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            return -1;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of alert log file at " + (position + buffer.position()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dev.coral.client.splunk;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Lane;
+import dev.coral.config.SplunkCacheConfig;
+import dev.coral.model.SplunkMTS;
+import dev.coral.model.SplunkTopology;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Caches the {@link SplunkO11yHttpClient} responses of every {@link SplunkTarget} per operation, keyed by org. Each operation has its own size-bounded Caffeine
+ * cache (W-TinyLFU eviction) and TTL. Callers align the time ranges of their queries with {@link #alignedNow}
+ * so that repeated queries within a bucket produce the same key.
+ * <p>
+ * Cache misses, and the uncached trace lookups, go through a {@link SingleFlight} keyed by operation and query,
+ * so concurrent identical requests share one upstream call and its result or failure. Only the upstream call is
+ * admitted by the {@link SplunkRequestScheduler}, in the lane of the caller that started it.
+ */
+@Singleton
+public class CachingSplunkO11yClient {
+
+    public enum Operation { MTS, TOPOLOGY, TIME_SERIES, TRACE }
+
+    private final SplunkRequestScheduler scheduler;
+    private final boolean enabled;
+    private final Map<Operation, Long> bucketMillis = new EnumMap<>(Operation.class);
+    private final Map<Operation, Cache<String, Object>> caches = new EnumMap<>(Operation.class);
+    private final Map<Operation, SingleFlight<String>> inFlight = new EnumMap<>(Operation.class);
+
+    @Inject
+    public CachingSplunkO11yClient(SplunkRequestScheduler scheduler, SplunkCacheConfig config) {
+        this.scheduler = scheduler;
+        this.enabled = config.isEnabled();
+        register(Operation.MTS, config.getMtsBucket(), config.getMtsTtl(), config.getMaximumSize());
+        register(Operation.TOPOLOGY, config.getTopologyBucket(), config.getTopologyTtl(), config.getMaximumSize());
+        register(Operation.TIME_SERIES, config.getTimeSeriesBucket(), config.getTimeSeriesTtl(), config.getMaximumSize());
+        for (Operation operation : Operation.values()) {
+            inFlight.put(operation, new SingleFlight<>());
+        }
+    }
+
+    /** Current time rounded down to the start of the operation's bucket. */
+    public long alignedNow(Operation operation) {
+        long now = System.currentTimeMillis();
+        long bucket = bucketMillis.getOrDefault(operation, 0L);
+        return bucket <= 0 ? now : now - Math.floorMod(now, bucket);
+    }
+
+    public SplunkMTS getMtsPage(SplunkTarget target, String query, long offset, long limit, Lane lane) {
+        return get(Operation.MTS, key(target, query, offset, limit), () -> scheduler.execute(target.getOrg(),
+            Family.METRIC_TIME_SERIES, lane,
+            () -> target.getClient().getMtsPage(target.getToken(), query, offset, limit)));
+    }
+
+    public SplunkTopology getSplunkTopology(SplunkTarget target, String body, Lane lane) {
+        return get(Operation.TOPOLOGY, key(target, body), () -> scheduler.execute(target.getOrg(),
+            Family.TOPOLOGY, lane, () -> target.getClient().getSplunkTopology(target.getToken(), body)));
+    }
+
+    public String getTimeSeriesWindow(SplunkTarget target, String query, long startMS, long endMS, long resolution,
+                                      Lane lane) {
+        return get(Operation.TIME_SERIES, key(target, query, startMS, endMS, resolution), () -> scheduler.execute(
+            target.getOrg(), Family.TIME_SERIES_WINDOW, lane,
+            () -> target.getClient().getTimeSeriesWindow(target.getToken(), query, startMS, endMS, resolution)));
+    }
+
+    public byte[] getRawTraceById(SplunkTarget target, String traceId) {
+        return inFlight.get(Operation.TRACE).execute(key(target, traceId), () -> scheduler.execute(target.getOrg(),
+            Family.TRACE, Lane.INTERACTIVE, () -> target.getClient().getRawTraceById(target.getToken(), traceId)));
+    }
+
+    public CompletableFuture<byte[]> getRawTraceByIdAsync(SplunkTarget target, String traceId) {
+        return inFlight.get(Operation.TRACE).executeAsync(key(target, traceId), () -> scheduler.executeAsync(
+            target.getOrg(), Family.TRACE, Lane.INTERACTIVE,
+            () -> target.getClient().getRawTraceByIdAsync(target.getToken(), traceId)));
+    }
+
+    /** Hit, miss and eviction statistics of the caches, and upstream/joined call counts, per operation. */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            Cache<String, Object> cache = caches.get(operation);
+            if (cache != null) {
+                CacheStats cacheStats = cache.stats();
+                values.put("size", cache.estimatedSize());
+                values.put("hits", cacheStats.hitCount());
+                values.put("misses", cacheStats.missCount());
+                values.put("hitRate", cacheStats.hitRate());
+                values.put("evictions", cacheStats.evictionCount());
+            }
+            SingleFlight<String> calls = inFlight.get(operation);
+            values.put("upstreamCalls", calls.calls());
+            values.put("joinedCalls", calls.joined());
+            values.put("inFlight", calls.inFlight());
+            stats.put(operation.name(), values);
+        }
+        return stats;
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(Cache::invalidateAll);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Operation operation, String key, Supplier<T> loader) {
+        if (!enabled) {
+            return inFlight.get(operation).execute(key, loader);
+        }
+        Cache<String, Object> cache = caches.get(operation);
+        Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        return inFlight.get(operation).execute(key, () -> {
+            // A call that completed while this one was waiting to become the leader may have filled the cache. The
+            // map view does not record stats, so that the miss above is only counted once
+            Object filled = cache.asMap().get(key);
+            if (filled != null) {
+                return (T) filled;
+            }
+            T value = loader.get();
+            if (value != null) {
+                cache.put(key, value);
+            }
+            return value;
+        });
+    }
+
+    private void register(Operation operation, Duration bucket, Duration ttl, long maximumSize) {
+        bucketMillis.put(operation, bucket.toMillis());
+        caches.put(operation, Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build());
+    }
+
+    private static String key(SplunkTarget target, Object... parts) {
+        StringBuilder key = new StringBuilder().append(target.getOrg());
+        for (Object part : parts) {
+            key.append('\u0000').append(part);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,280 @@
+package dev.coral.client.splunk;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+import dev.coral.model.SplunkMTS;
+import dev.coral.model.SplunkTopology;
+import dev.coral.service.Span;
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpRequest;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.http.uri.UriBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link SplunkO11yHttpClient} over a low-level {@link HttpClient} with its own connection pool. Counts the
+ * requests in flight against the pool's capacity so that pools can be sized from their utilization.
+ * <p>
+ * Every call is timed as {@code splunk.client.requests}, tagged by org, operation and response status, with a
+ * percentile histogram; the pool's in-flight requests and capacity are gauges. Every call is also traced as a client
+ * span, carrying the status and, when the response declares a {@code Content-Length}, its size. The span is current
+ * while the request is sent, so HTTP client instrumentation records under it rather than beside it. Its time is added
+ * to the {@link SplunkCallClock} of the context it was made in.
+ */
+final class PooledSplunkO11yHttpClient implements SplunkO11yHttpClient, AutoCloseable {
+
+    private static final String TOKEN_HEADER = "X-SF-Token";
+    private static final String TRACE = "trace";
+    private static final String GRAPHQL = "graphql";
+    private static final AttributeKey<String> ORG = AttributeKey.stringKey("coral.org");
+    private static final AttributeKey<String> OPERATION = AttributeKey.stringKey("splunk.operation");
+    private static final AttributeKey<String> STATUS = AttributeKey.stringKey("splunk.status");
+    private static final AttributeKey<Long> RESPONSE_BYTES = AttributeKey.longKey("splunk.response.bytes");
+
+    private final HttpClient httpClient;
+    private final int capacity;
+    private final String org;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    /**
+     * @param capacity requests the pool can carry at once: its HTTP/1.1 connections, or its HTTP/2 connections
+     *                 times the streams per connection
+     */
+    PooledSplunkO11yHttpClient(HttpClient httpClient, int capacity, String org, MeterRegistry meterRegistry,
+                               Tracer tracer) {
+        this.httpClient = httpClient;
+        this.capacity = Math.max(1, capacity);
+        this.org = org;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+        Gauge.builder("splunk.client.pool.in.flight", inFlight, AtomicInteger::get)
+            .description("Splunk requests in flight on the target's connection pool")
+            .tag("org", org)
+            .register(meterRegistry);
+        Gauge.builder("splunk.client.pool.capacity", this, PooledSplunkO11yHttpClient::capacity)
+            .description("Requests the target's connection pool can carry at once")
+            .tag("org", org)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public List<Span> getTraceById(String sfxToken, String traceId) {
+        return retrieve(TRACE, get(sfxToken, UriBuilder.of("/v2/apm/trace").path(traceId).path("latest").build()),
+            Argument.listOf(Span.class));
+    }
+
+    @Override
+    public String getTraceByService(String sfxToken, String op, String body) {
+        return retrieve(GRAPHQL, graphql(sfxToken, op, body), Argument.STRING);
+    }
+
+    @Override
+    public byte[] getRawTraceById(String sfxToken, String traceId) {
+        return retrieve(TRACE, get(sfxToken, UriBuilder.of("/v2/apm/trace").path(traceId).path("latest").build()),
+            Argument.of(byte[].class));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getRawTraceByIdAsync(String sfxToken, String traceId) {
+        return retrieveAsync(TRACE,
+            get(sfxToken, UriBuilder.of("/v2/apm/trace").path(traceId).path("latest").build()),
+            Argument.of(byte[].class));
+    }
+
+    @Override
+    public CompletableFuture<String> getTraceByServiceAsync(String sfxToken, String op, String body) {
+        return retrieveAsync(GRAPHQL, graphql(sfxToken, op, body), Argument.STRING);
+    }
+
+    @Override
+    public SplunkMTS getMtsPage(String sfxToken, String query, long offset, long limit) {
+        return retrieve("metrictimeseries", get(sfxToken, UriBuilder.of("/v2/metrictimeseries/")
+            .queryParam("query", query)
+            .queryParam("offset", offset)
+            .queryParam("limit", limit)
+            .build()), Argument.of(SplunkMTS.class));
+    }
+
+    @Override
+    public SplunkTopology getSplunkTopology(String sfxToken, String body) {
+        return retrieve("topology", post(sfxToken, UriBuilder.of("/v2/apm/topology").build(), body),
+            Argument.of(SplunkTopology.class));
+    }
+
+    @Override
+    public String getTimeSeriesWindow(String sfxToken, String query, long startMS, long endMS, long resolution) {
+        return retrieve("timeserieswindow", get(sfxToken, UriBuilder.of("/v1/timeserieswindow")
+            .queryParam("query", query)
+            .queryParam("startMS", startMS)
+            .queryParam("endMS", endMS)
+            .queryParam("resolution", resolution)
+            .build()), Argument.STRING);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long served = requests.sum();
+        stats.put("capacity", capacity);
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        stats.put("utilization", (double) inFlight.get() / capacity);
+        stats.put("peakUtilization", (double) peakInFlight.get() / capacity);
+        stats.put("requests", served);
+        stats.put("failures", failures.sum());
+        stats.put("meanLatencyMillis", served == 0 ? 0.0 : latencyNanos.sum() / 1e6 / served);
+        return stats;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private <T> T retrieve(String operation, MutableHttpRequest<?> request, Argument<T> type) {
+        Call call = begin(operation);
+        HttpResponse<T> response = null;
+        Throwable error = null;
+        try (Scope ignored = call.span.makeCurrent()) {
+            response = httpClient.toBlocking().exchange(request, type);
+            return response.body();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            end(call, response, error);
+        }
+    }
+
+    private <T> CompletableFuture<T> retrieveAsync(String operation, MutableHttpRequest<?> request, Argument<T> type) {
+        Call call = begin(operation);
+        CompletableFuture<HttpResponse<T>> exchange;
+        try (Scope ignored = call.span.makeCurrent()) {
+            exchange = Mono.from(httpClient.exchange(request, type)).toFuture();
+        }
+        return exchange
+            .whenComplete((response, error) -> end(call, response, error))
+            .thenApply(response -> response == null ? null : response.body());
+    }
+
+    private Call begin(String operation) {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        io.opentelemetry.api.trace.Span span = tracer.spanBuilder("splunk " + operation)
+            .setSpanKind(SpanKind.CLIENT)
+            .setAttribute(ORG, org)
+            .setAttribute(OPERATION, operation)
+            .startSpan();
+        return new Call(operation, span, SplunkCallClock.current());
+    }
+
+    private void end(Call call, HttpResponse<?> response, Throwable error) {
+        long elapsed = System.nanoTime() - call.start;
+        latencyNanos.add(elapsed);
+        requests.increment();
+        if (error != null) {
+            failures.increment();
+        }
+        inFlight.decrementAndGet();
+        String status = status(response, error);
+        timer(call.operation, status).record(elapsed, TimeUnit.NANOSECONDS);
+        if (call.clock != null) {
+            call.clock.upstream(elapsed);
+        }
+        call.span.setAttribute(STATUS, status);
+        if (response != null && response.getContentLength() >= 0) {
+            call.span.setAttribute(RESPONSE_BYTES, response.getContentLength());
+        }
+        if (error != null) {
+            call.span.recordException(error);
+            call.span.setStatus(StatusCode.ERROR);
+        }
+        call.span.end();
+    }
+
+    private Timer timer(String operation, String status) {
+        return timers.computeIfAbsent(operation + ' ' + status, k -> Timer.builder("splunk.client.requests")
+            .description("Splunk API calls of one target")
+            .tag("org", org)
+            .tag("operation", operation)
+            .tag("status", status)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    /** HTTP status code of a call's response, or the kind of failure if there was none. */
+    private static String status(HttpResponse<?> response, Throwable error) {
+        if (error == null) {
+            return response == null ? "unknown" : Integer.toString(response.code());
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpClientResponseException) {
+            return Integer.toString(((HttpClientResponseException) cause).getStatus().getCode());
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    private static MutableHttpRequest<?> get(String sfxToken, URI uri) {
+        return HttpRequest.GET(uri).header(TOKEN_HEADER, sfxToken).accept(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    private static MutableHttpRequest<?> post(String sfxToken, URI uri, String body) {
+        return HttpRequest.POST(uri, body)
+            .header(TOKEN_HEADER, sfxToken)
+            .contentType(MediaType.APPLICATION_JSON_TYPE)
+            .accept(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    private static MutableHttpRequest<?> graphql(String sfxToken, String op, String body) {
+        return post(sfxToken, UriBuilder.of("/v2/apm/graphql").queryParam("op", op).build(), body);
+    }
+
+    private static final class Call {
+        private final String operation;
+        private final long start = System.nanoTime();
+        private final io.opentelemetry.api.trace.Span span;
+        private final SplunkCallClock clock;
+
+        Call(String operation, io.opentelemetry.api.trace.Span span, SplunkCallClock clock) {
+            this.operation = operation;
+            this.span = span;
+            this.clock = clock;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package dev.coral.client.splunk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates identical calls that are in flight at the same time. The first caller for a key runs the call;
+ * callers arriving while it is outstanding join its future and receive the same result or failure. The key is
+ * released as soon as the call completes, so later callers start a new call.
+ */
+public final class SingleFlight<K> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    /** Runs a blocking call on the caller's thread, or waits for the identical call already in flight. */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(K key, Supplier<V> call) {
+        CompletableFuture<Object> leader = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            joined.increment();
+            return (V) await(existing);
+        }
+        calls.increment();
+        try {
+            V value = call.get();
+            leader.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            leader.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, leader);
+        }
+    }
+
+    /** Starts an asynchronous call, or returns the future of the identical call already in flight. */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<Object> leader = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            joined.increment();
+            return (CompletableFuture<V>) (CompletableFuture<?>) existing.thenApply(value -> value);
+        }
+        calls.increment();
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, leader);
+            if (error != null) {
+                leader.completeExceptionally(error);
+            } else {
+                leader.complete(value);
+            }
+        });
+        return (CompletableFuture<V>) (CompletableFuture<?>) leader.thenApply(value -> value);
+    }
+
+    /** Number of calls actually executed. */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /** Number of callers that joined a call already in flight instead of executing their own. */
+    public long joined() {
+        return joined.sum();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dev.coral.client.splunk;
+
+import java.util.Map;
+
+
+import io.micronaut.management.endpoint.annotation.Delete;
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+
+/**
+ * Management endpoint exposing the Splunk response cache statistics at {@code /splunkcache}.
+ */
+@Endpoint(id = "splunkcache", defaultSensitive = false)
+public class SplunkCacheEndpoint {
+
+    private final CachingSplunkO11yClient cachingSplunkO11yClient;
+
+    public SplunkCacheEndpoint(CachingSplunkO11yClient cachingSplunkO11yClient) {
+        this.cachingSplunkO11yClient = cachingSplunkO11yClient;
+    }
+
+    @Read
+    public Map<String, Map<String, Object>> stats() {
+        return cachingSplunkO11yClient.stats();
+    }
+
+    @Delete
+    public void invalidate() {
+        cachingSplunkO11yClient.invalidateAll();
+    }
+}
@@ -0,0 +1,57 @@
+package dev.coral.client.splunk;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.ImplicitContextKeyed;
+
+/**
+ * Time the Splunk calls made under an OpenTelemetry {@link Context} spent waiting for admission by the
+ * {@link SplunkRequestScheduler} and on the API itself. A pipeline task puts a clock in its context; the scheduler
+ * and the client add to the clock of the context a call was made in, also for asynchronous calls completing on
+ * other threads.
+ */
+public final class SplunkCallClock implements ImplicitContextKeyed {
+
+    private static final ContextKey<SplunkCallClock> KEY = ContextKey.named("coral-splunk-call-clock");
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder queuedNanos = new LongAdder();
+    private final LongAdder upstreamNanos = new LongAdder();
+
+    /** Clock of the current context, or {@code null} if calls are not being timed. */
+    static SplunkCallClock current() {
+        return Context.current().get(KEY);
+    }
+
+    static SplunkCallClock of(Context context) {
+        return context.get(KEY);
+    }
+
+    @Override
+    public Context storeInContext(Context context) {
+        return context.with(KEY, this);
+    }
+
+    void queued(long nanos) {
+        queuedNanos.add(nanos);
+    }
+
+    void upstream(long nanos) {
+        calls.increment();
+        upstreamNanos.add(nanos);
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long queuedNanos() {
+        return queuedNanos.sum();
+    }
+
+    public long upstreamNanos() {
+        return upstreamNanos.sum();
+    }
+}
@@ -1,43 +1,50 @@
 package dev.coral.client.splunk;
 
-import static io.micronaut.http.HttpHeaders.ACCEPT;
-
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 import dev.coral.model.SplunkMTS;
 import dev.coral.model.SplunkTopology;
 import dev.coral.service.Span;
-import io.micronaut.http.annotation.Body;
-import io.micronaut.http.annotation.Get;
-import io.micronaut.http.annotation.Header;
-import io.micronaut.http.annotation.Headers;
-import io.micronaut.http.annotation.PathVariable;
-import io.micronaut.http.annotation.Post;
-import io.micronaut.http.annotation.QueryValue;
-import io.micronaut.http.client.annotation.Client;
-
-@Client("https://api.us1.signalfx.com") // Base URL
+
+/**
+ * Splunk Observability API of one realm. There is one client, with its own connection pool, per configured
+ * {@link SplunkTarget}; see {@link SplunkTargets}.
+ */
 public interface SplunkO11yHttpClient {
 
-    @Get(value = "/v2/apm/trace/{traceId}/latest")
-    @Headers(
-        @Header(name = ACCEPT, value = "application/json")
-    )
-    List<Span> getTraceById(@Header("X-SF-Token") String sfxToken, @PathVariable String traceId);
+    /** {@code GET /v2/apm/trace/{traceId}/latest} */
+    List<Span> getTraceById(String sfxToken, String traceId);
+
+    /** {@code POST /v2/apm/graphql?op=} */
+    String getTraceByService(String sfxToken, String op, String body);
+
+    /** {@code GET /v2/apm/trace/{traceId}/latest} */
+    byte[] getRawTraceById(String sfxToken, String traceId);
+
+    /** {@code GET /v2/apm/trace/{traceId}/latest} */
+    CompletableFuture<byte[]> getRawTraceByIdAsync(String sfxToken, String traceId);
+
+    /** {@code POST /v2/apm/graphql?op=} */
+    CompletableFuture<String> getTraceByServiceAsync(String sfxToken, String op, String body);
+
+    /** {@code GET /v2/metrictimeseries/?query=&offset=&limit=} */
+    SplunkMTS getMtsPage(String sfxToken, String query, long offset, long limit);
 
-    @Post(value = "v2/apm/graphql")
-    @Headers(
-            @Header(name = ACCEPT, value = "application/json")
-    )
-    String getTraceByService(@Header("X-SF-Token") String sfxToken, @QueryValue("op") String op, @Body String body);
+    /** {@code POST /v2/apm/topology} */
+    SplunkTopology getSplunkTopology(String sfxToken, String body);
 
-    @Get(value = "/v2/metrictimeseries/")
-    SplunkMTS getMts(@Header("X-SF-Token") String sfxToken, @QueryValue("query") String query, @QueryValue("limit") long limit);
+    /** {@code GET /v1/timeserieswindow?query=&startMS=&endMS=&resolution=} */
+    String getTimeSeriesWindow(String sfxToken, String query, long startMS, long endMS, long resolution);
 
-    @Post(value = "/v2/apm/topology")
-    SplunkTopology getSplunkTopology(@Header("X-SF-Token") String sfxToken, @Body String body);
+    /** Requests in flight and served, and how much of the connection pool's capacity they use. */
+    default Map<String, Object> stats() {
+        return Map.of();
+    }
 
-    @Get(value = "/v1/timeserieswindow")
-    String getTimeSeriesWindow(@Header("X-SF-Token") String sfxToken, @QueryValue("query") String query, @QueryValue("startMS") long startMS, @QueryValue("endMS") long endMS, @QueryValue("resolution") long resolution);
-}
\ No newline at end of file
+    /** Releases the connection pool. */
+    default void close() {
+    }
+}
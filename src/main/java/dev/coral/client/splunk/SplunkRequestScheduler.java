@@ -0,0 +1,428 @@
+package dev.coral.client.splunk;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+import dev.coral.config.SplunkSchedulerConfig;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits calls to the Splunk API so that collection runs as fast as the API allows without being throttled. Every
+ * endpoint {@link Family} of every org has its own
+ * <ul>
+ *     <li>token bucket, capping its request rate;</li>
+ *     <li>concurrency limit, adapted AIMD-style: it grows by {@code 1/limit} per call faster than the latency
+ *     threshold, shrinks by 10% on slower calls and halves on a 429;</li>
+ *     <li>two waiting {@link Lane lanes}: waiting interactive calls are always admitted before bulk ones.</li>
+ * </ul>
+ * A 429 also pauses the whole family of that org for its {@code Retry-After}, after which the call is retried in its
+ * lane. Orgs are limited independently since Splunk rate-limits each org, so one throttled org does not slow the
+ * collection of the others.
+ * <p>
+ * Waiting never holds a thread of the scheduler: blocking calls wait on their own thread, asynchronous ones on a
+ * future completed when they are admitted. Asynchronous calls are started in the OpenTelemetry context they were
+ * scheduled in, and the time calls wait for admission is added to the context's {@link SplunkCallClock}.
+ */
+@Slf4j
+@Singleton
+public class SplunkRequestScheduler {
+
+    /** Endpoints sharing a rate limit. */
+    public enum Family { METRIC_TIME_SERIES, TIME_SERIES_WINDOW, APM_GRAPHQL, TOPOLOGY, TRACE }
+
+    public enum Lane {
+        /** Calls a user is waiting for, e.g. from a controller request. */
+        INTERACTIVE,
+        /** Calls of a collection run such as {@code fetchAllSplunkData}. */
+        BULK
+    }
+
+    private static final double SLOW_DECREASE = 0.9;
+    private static final double THROTTLED_DECREASE = 0.5;
+
+    private final boolean enabled;
+    private final int maxRetries;
+    private final long defaultRetryAfterNanos;
+    private final Map<Family, Limits> limits = new EnumMap<>(Family.class);
+    private final Map<String, Map<Family, Limiter>> limiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    @Inject
+    public SplunkRequestScheduler(SplunkSchedulerConfig config) {
+        this(config.isEnabled(), limits(config), config.getMaxRetries(), config.getDefaultRetryAfter());
+    }
+
+    public SplunkRequestScheduler(boolean enabled, Map<Family, Limits> limits, int maxRetries,
+                                  Duration defaultRetryAfter) {
+        this.enabled = enabled;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.defaultRetryAfterNanos = defaultRetryAfter.toNanos();
+        for (Family family : Family.values()) {
+            Limits familyLimits = limits.get(family);
+            if (familyLimits == null) {
+                throw new IllegalArgumentException("No limits for " + family);
+            }
+            this.limits.put(family, familyLimits);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "splunk-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /** Runs a blocking call on the caller's thread once admitted, retrying it while it is throttled. */
+    public <T> T execute(String org, Family family, Lane lane, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        Limiter limiter = limiter(org, family);
+        SplunkCallClock clock = SplunkCallClock.current();
+        for (int attempt = 0; ; attempt++) {
+            long waiting = System.nanoTime();
+            limiter.acquire(lane).join();
+            long start = System.nanoTime();
+            if (clock != null) {
+                clock.queued(start - waiting);
+            }
+            T value;
+            try {
+                value = call.get();
+            } catch (RuntimeException | Error e) {
+                if (!limiter.release(start, e) || attempt >= maxRetries) {
+                    throw e;
+                }
+                limiter.retried();
+                log.debug("Retrying throttled {} call of org {}, attempt {}", family, org, attempt + 1);
+                continue;
+            }
+            limiter.release(start, null);
+            return value;
+        }
+    }
+
+    /** Starts an asynchronous call once admitted, retrying it while it is throttled. */
+    public <T> CompletableFuture<T> executeAsync(String org, Family family, Lane lane,
+                                                 Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        return executeAsync(limiter(org, family), lane, call, Context.current(), 0);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Limiter limiter, Lane lane, Supplier<CompletableFuture<T>> call,
+                                                  Context context, int attempt) {
+        long waiting = System.nanoTime();
+        return limiter.acquire(lane).thenCompose(admitted -> {
+            long start = System.nanoTime();
+            SplunkCallClock clock = SplunkCallClock.of(context);
+            if (clock != null) {
+                clock.queued(start - waiting);
+            }
+            CompletableFuture<T> result;
+            try (Scope scope = context.makeCurrent()) {
+                result = call.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.handle((value, error) -> {
+                if (error == null) {
+                    limiter.release(start, null);
+                    return CompletableFuture.completedFuture(value);
+                }
+                Throwable cause = unwrap(error);
+                if (limiter.release(start, cause) && attempt < maxRetries) {
+                    limiter.retried();
+                    return executeAsync(limiter, lane, call, context, attempt + 1);
+                }
+                return CompletableFuture.<T>failedFuture(cause);
+            }).thenCompose(next -> next);
+        });
+    }
+
+    /** Concurrency limit, admitted, waiting and throttled calls per org and family. */
+    public Map<String, Map<String, Map<String, Object>>> stats() {
+        Map<String, Map<String, Map<String, Object>>> stats = new LinkedHashMap<>();
+        limiters.forEach((org, families) -> {
+            Map<String, Map<String, Object>> byFamily = new LinkedHashMap<>();
+            families.forEach((family, limiter) -> byFamily.put(family.name(), limiter.stats()));
+            stats.put(org, byFamily);
+        });
+        return stats;
+    }
+
+    private Limiter limiter(String org, Family family) {
+        return limiters.computeIfAbsent(org, k -> {
+            Map<Family, Limiter> families = new EnumMap<>(Family.class);
+            limits.forEach((f, familyLimits) -> families.put(f, new Limiter(familyLimits)));
+            return families;
+        }).get(family);
+    }
+
+    /**
+     * Pause requested by a throttled call: its {@code Retry-After}, {@link Duration#ZERO} for a 429 without one, or
+     * {@code null} if the error is not a 429.
+     */
+    static Duration throttledFor(Throwable error) {
+        if (!(error instanceof HttpClientResponseException)) {
+            return null;
+        }
+        HttpClientResponseException response = (HttpClientResponseException) error;
+        if (response.getStatus() != HttpStatus.TOO_MANY_REQUESTS) {
+            return null;
+        }
+        return parseRetryAfter(response.getResponse().getHeaders().get(HttpHeaders.RETRY_AFTER),
+            System.currentTimeMillis());
+    }
+
+    /** Parses a {@code Retry-After} of delay seconds or an HTTP date; {@link Duration#ZERO} if absent or invalid. */
+    static Duration parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.isBlank()) {
+            return Duration.ZERO;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // Not delay seconds, maybe a date
+        }
+        try {
+            long untilMillis = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Duration.ofMillis(Math.max(0, untilMillis - nowMillis));
+        } catch (DateTimeParseException e) {
+            return Duration.ZERO;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static Map<Family, Limits> limits(SplunkSchedulerConfig config) {
+        Map<Family, Limits> limits = new EnumMap<>(Family.class);
+        limits.put(Family.METRIC_TIME_SERIES, limits(config, config.getMetricTimeSeriesRate()));
+        limits.put(Family.TIME_SERIES_WINDOW, limits(config, config.getTimeSeriesWindowRate()));
+        limits.put(Family.APM_GRAPHQL, limits(config, config.getGraphqlRate()));
+        limits.put(Family.TOPOLOGY, limits(config, config.getTopologyRate()));
+        limits.put(Family.TRACE, limits(config, config.getTraceRate()));
+        return limits;
+    }
+
+    private static Limits limits(SplunkSchedulerConfig config, double rate) {
+        return new Limits(rate, Math.max(1, rate * config.getBurst().toMillis() / 1000.0),
+            config.getInitialConcurrency(), config.getMinConcurrency(), config.getMaxConcurrency(),
+            config.getLatencyThreshold());
+    }
+
+    /** Rate and concurrency bounds of one family. */
+    public static final class Limits {
+        private final double ratePerSecond;
+        private final double burst;
+        private final int initialConcurrency;
+        private final int minConcurrency;
+        private final int maxConcurrency;
+        private final Duration latencyThreshold;
+
+        public Limits(double ratePerSecond, double burst, int initialConcurrency, int minConcurrency,
+                      int maxConcurrency, Duration latencyThreshold) {
+            if (ratePerSecond <= 0 || burst < 1 || minConcurrency < 1 || maxConcurrency < minConcurrency) {
+                throw new IllegalArgumentException("Invalid Splunk request limits");
+            }
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            this.initialConcurrency = Math.max(minConcurrency, Math.min(maxConcurrency, initialConcurrency));
+            this.minConcurrency = minConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            this.latencyThreshold = latencyThreshold;
+        }
+    }
+
+    private final class Limiter {
+        private final Limits limits;
+        private final double nanosPerToken;
+        private final long latencyThresholdNanos;
+        private final Deque<CompletableFuture<Void>> interactive = new ArrayDeque<>();
+        private final Deque<CompletableFuture<Void>> bulk = new ArrayDeque<>();
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private double limit;
+        private int inFlight;
+        private long pausedUntil = refilledAt;
+        private long lastDecreaseAt = refilledAt;
+        private boolean wakeScheduled;
+        private long admitted;
+        private long throttled;
+        private long slow;
+        private long retries;
+
+        private Limiter(Limits limits) {
+            this.limits = limits;
+            this.nanosPerToken = 1_000_000_000.0 / limits.ratePerSecond;
+            this.latencyThresholdNanos = limits.latencyThreshold.toNanos();
+            this.tokens = limits.burst;
+            this.limit = limits.initialConcurrency;
+        }
+
+        CompletableFuture<Void> acquire(Lane lane) {
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            synchronized (this) {
+                (lane == Lane.INTERACTIVE ? interactive : bulk).add(waiter);
+            }
+            dispatch();
+            return waiter;
+        }
+
+        /**
+         * Frees the slot of a finished call and adapts the limit to its outcome.
+         *
+         * @return whether the call was throttled and may be retried
+         */
+        boolean release(long startNanos, Throwable error) {
+            Duration retryAfter = error == null ? null : throttledFor(error);
+            long now = System.nanoTime();
+            synchronized (this) {
+                inFlight--;
+                if (retryAfter != null) {
+                    throttled++;
+                    if (now - pausedUntil >= 0) {
+                        // Only the first 429 of a burst shrinks the limit
+                        limit = Math.max(limits.minConcurrency, limit * THROTTLED_DECREASE);
+                        lastDecreaseAt = now;
+                    }
+                    long pause = retryAfter.isZero() ? defaultRetryAfterNanos : retryAfter.toNanos();
+                    if (now + pause - pausedUntil > 0) {
+                        pausedUntil = now + pause;
+                    }
+                } else if (error == null) {
+                    if (now - startNanos > latencyThresholdNanos) {
+                        slow++;
+                        if (now - lastDecreaseAt > latencyThresholdNanos) {
+                            limit = Math.max(limits.minConcurrency, limit * SLOW_DECREASE);
+                            lastDecreaseAt = now;
+                        }
+                    } else {
+                        limit = Math.min(limits.maxConcurrency, limit + 1 / limit);
+                    }
+                }
+            }
+            dispatch();
+            return retryAfter != null;
+        }
+
+        synchronized void retried() {
+            retries++;
+        }
+
+        /** Admits waiting calls while the family has a free slot, a token and is not paused. */
+        private void dispatch() {
+            List<CompletableFuture<Void>> granted = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                while (inFlight < (int) limit) {
+                    Deque<CompletableFuture<Void>> lane = next();
+                    if (lane == null) {
+                        break;
+                    }
+                    if (now - pausedUntil < 0) {
+                        scheduleWake(pausedUntil - now);
+                        break;
+                    }
+                    refill(now);
+                    if (tokens < 1) {
+                        scheduleWake((long) Math.ceil((1 - tokens) * nanosPerToken));
+                        break;
+                    }
+                    tokens -= 1;
+                    inFlight++;
+                    admitted++;
+                    granted.add(lane.poll());
+                }
+            }
+            for (CompletableFuture<Void> waiter : granted) {
+                if (!waiter.complete(null)) {
+                    // Cancelled after it was admitted
+                    release(System.nanoTime(), new CancellationException());
+                }
+            }
+        }
+
+        /** Lane of the next call to admit, dropping waiters that were cancelled meanwhile. */
+        private Deque<CompletableFuture<Void>> next() {
+            for (Deque<CompletableFuture<Void>> lane : List.of(interactive, bulk)) {
+                while (!lane.isEmpty() && lane.peek().isDone()) {
+                    lane.poll();
+                }
+                if (!lane.isEmpty()) {
+                    return lane;
+                }
+            }
+            return null;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(limits.burst, tokens + (now - refilledAt) / nanosPerToken);
+            refilledAt = now;
+        }
+
+        private void scheduleWake(long delayNanos) {
+            if (wakeScheduled) {
+                return;
+            }
+            wakeScheduled = true;
+            timer.schedule(() -> {
+                synchronized (this) {
+                    wakeScheduled = false;
+                }
+                dispatch();
+            }, Math.max(1, delayNanos), TimeUnit.NANOSECONDS);
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long now = System.nanoTime();
+            refill(now);
+            stats.put("concurrencyLimit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("waitingInteractive", interactive.size());
+            stats.put("waitingBulk", bulk.size());
+            stats.put("tokens", Math.floor(tokens));
+            stats.put("pausedMillis", Math.max(0, (pausedUntil - now) / 1_000_000));
+            stats.put("admitted", admitted);
+            stats.put("throttled", throttled);
+            stats.put("slow", slow);
+            stats.put("retries", retries);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package dev.coral.client.splunk;
+
+import java.util.Map;
+
+
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+
+/**
+ * Management endpoint exposing the Splunk request scheduler's limits and counters at {@code /splunkscheduler}.
+ */
+@Endpoint(id = "splunkscheduler", defaultSensitive = false)
+public class SplunkSchedulerEndpoint {
+
+    private final SplunkRequestScheduler splunkRequestScheduler;
+
+    public SplunkSchedulerEndpoint(SplunkRequestScheduler splunkRequestScheduler) {
+        this.splunkRequestScheduler = splunkRequestScheduler;
+    }
+
+    @Read
+    public Map<String, Map<String, Map<String, Object>>> stats() {
+        return splunkRequestScheduler.stats();
+    }
+}
@@ -0,0 +1,68 @@
+package dev.coral.client.splunk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One Splunk org to collect from: its realm, API token and the {@link SplunkO11yHttpClient} with the connection
+ * pool dedicated to it.
+ */
+public final class SplunkTarget {
+
+    private final String org;
+    private final String realm;
+    private final String token;
+    private final String url;
+    private final boolean http2;
+    private final SplunkO11yHttpClient client;
+
+    /** Targets are built from configuration by {@link SplunkTargets}. */
+    public SplunkTarget(String org, String realm, String token, String url, boolean http2,
+                        SplunkO11yHttpClient client) {
+        this.org = org;
+        this.realm = realm;
+        this.token = token;
+        this.url = url;
+        this.http2 = http2;
+        this.client = client;
+    }
+
+    public String getOrg() {
+        return org;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public SplunkO11yHttpClient getClient() {
+        return client;
+    }
+
+    /** Realm, protocol and connection pool utilization. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("realm", realm);
+        stats.put("url", url);
+        stats.put("http2", http2);
+        stats.putAll(client.stats());
+        return stats;
+    }
+
+    void close() {
+        client.close();
+    }
+
+    @Override
+    public String toString() {
+        return org + "@" + realm;
+    }
+}
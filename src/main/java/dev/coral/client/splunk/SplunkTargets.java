@@ -0,0 +1,164 @@
+package dev.coral.client.splunk;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+import dev.coral.config.SplunkTargetsConfig;
+import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.HttpClientConfiguration;
+import io.micronaut.http.client.HttpVersionSelection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The configured {@link SplunkTarget}s. Each gets its own low-level {@link HttpClient} so that one realm's slow or
+ * throttled org cannot exhaust the connections of another. Timeouts and content length come from
+ * {@code micronaut.http.client}; the pool sizes and HTTP/2 negotiation come from the target.
+ */
+@Slf4j
+@Singleton
+public class SplunkTargets {
+
+    public static final String DEFAULT_ORG = "default";
+
+    private final Map<String, SplunkTarget> targets = new LinkedHashMap<>();
+    private final SplunkTarget defaultTarget;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    @Inject
+    public SplunkTargets(SplunkTargetsConfig config, DefaultHttpClientConfiguration defaults,
+                         MeterRegistry meterRegistry, OpenTelemetry openTelemetry) {
+        this.meterRegistry = meterRegistry;
+        this.tracer = openTelemetry.getTracer("dev.coral.splunk");
+        List<SplunkTargetsConfig.Target> configured = config.getTargets() == null
+            ? Collections.emptyList() : config.getTargets();
+        for (SplunkTargetsConfig.Target target : configured) {
+            if (targets.containsKey(target.getOrg())) {
+                throw new IllegalArgumentException("Duplicate Splunk target org " + target.getOrg());
+            }
+            targets.put(target.getOrg(), create(target, defaults));
+        }
+        if (targets.isEmpty()) {
+            if (isBlank(System.getenv("SIGNALFX_API_TOKEN"))) {
+                throw new IllegalArgumentException(
+                    "No API token for the default Splunk org: set SIGNALFX_API_TOKEN or configure coral.splunk.targets");
+            }
+            String realm = System.getenv("REALM") == null ? "us1" : System.getenv("REALM");
+            targets.put(DEFAULT_ORG, create(DEFAULT_ORG, realm, System.getenv("SIGNALFX_API_TOKEN"), null,
+                SplunkTargetsConfig.MapToTargetConverter.DEFAULT_MAX_CONNECTIONS, true,
+                SplunkTargetsConfig.MapToTargetConverter.DEFAULT_HTTP2_CONNECTIONS,
+                SplunkTargetsConfig.MapToTargetConverter.DEFAULT_MAX_STREAMS_PER_CONNECTION, defaults));
+        }
+        this.defaultTarget = targets.values().iterator().next();
+    }
+
+    /** Serves the given targets, the first of which is the default, instead of building them from configuration. */
+    public SplunkTargets(List<SplunkTarget> targets) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No Splunk targets");
+        }
+        for (SplunkTarget target : targets) {
+            if (this.targets.putIfAbsent(target.getOrg(), target) != null) {
+                throw new IllegalArgumentException("Duplicate Splunk target org " + target.getOrg());
+            }
+        }
+        this.defaultTarget = targets.get(0);
+        this.meterRegistry = null;
+        this.tracer = null;
+    }
+
+    public List<SplunkTarget> all() {
+        return new ArrayList<>(targets.values());
+    }
+
+    /** The first configured target, used when a request names no org. */
+    public SplunkTarget getDefault() {
+        return defaultTarget;
+    }
+
+    /**
+     * @param org org of a configured target, or {@code null} for the default target
+     * @throws IllegalArgumentException if no target has that org
+     */
+    public SplunkTarget get(String org) {
+        if (org == null) {
+            return defaultTarget;
+        }
+        SplunkTarget target = targets.get(org);
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown Splunk org " + org);
+        }
+        return target;
+    }
+
+    /** The given org, or that of the default target if {@code null}. */
+    public String orgOrDefault(String org) {
+        return org == null ? defaultTarget.getOrg() : org;
+    }
+
+    /** Connection pool utilization per org. */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        targets.forEach((org, target) -> stats.put(org, target.stats()));
+        return stats;
+    }
+
+    @PreDestroy
+    void close() {
+        targets.values().forEach(SplunkTarget::close);
+    }
+
+    private SplunkTarget create(SplunkTargetsConfig.Target target, HttpClientConfiguration defaults) {
+        return create(target.getOrg(), target.getRealm(), target.getToken(), target.getUrl(),
+            target.getMaxConnections(), target.isHttp2(), target.getHttp2Connections(),
+            target.getMaxStreamsPerConnection(), defaults);
+    }
+
+    private SplunkTarget create(String org, String realm, String token, String url, int maxConnections,
+                                boolean http2, int http2Connections, int maxStreamsPerConnection,
+                                HttpClientConfiguration defaults) {
+        if (isBlank(token)) {
+            throw new IllegalArgumentException("No API token for Splunk org " + org);
+        }
+        String baseUrl = url != null ? url : "https://api." + realm + ".signalfx.com";
+        DefaultHttpClientConfiguration configuration = new DefaultHttpClientConfiguration();
+        defaults.getReadTimeout().ifPresent(configuration::setReadTimeout);
+        defaults.getConnectTimeout().ifPresent(configuration::setConnectTimeout);
+        configuration.setMaxContentLength(defaults.getMaxContentLength());
+        configuration.setAlpnModes(http2
+            ? List.of(HttpVersionSelection.ALPN_HTTP_2, HttpVersionSelection.ALPN_HTTP_1)
+            : List.of(HttpVersionSelection.ALPN_HTTP_1));
+        HttpClientConfiguration.ConnectionPoolConfiguration pool = configuration.getConnectionPoolConfiguration();
+        pool.setEnabled(true);
+        pool.setMaxConcurrentHttp1Connections(maxConnections);
+        pool.setMaxConcurrentHttp2Connections(http2Connections);
+        pool.setMaxConcurrentRequestsPerHttp2Connection(maxStreamsPerConnection);
+        // Over HTTP/1.1 fallback the HTTP/2 connections are not used, so capacity is the larger of the two
+        int capacity = http2 ? Math.max(maxConnections, http2Connections * maxStreamsPerConnection) : maxConnections;
+        log.info("Splunk org {} at {}, http2={}, pool capacity {}", org, baseUrl, http2, capacity);
+        try {
+            HttpClient httpClient = HttpClient.create(new URL(baseUrl), configuration);
+            return new SplunkTarget(org, realm, token, baseUrl, http2,
+                new PooledSplunkO11yHttpClient(httpClient, capacity, org, meterRegistry, tracer));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid URL " + baseUrl + " for Splunk org " + org, e);
+        }
+    }
+
+    private static boolean isBlank(String token) {
+        return token == null || token.isBlank();
+    }
+}
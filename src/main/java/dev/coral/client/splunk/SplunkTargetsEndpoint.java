@@ -0,0 +1,25 @@
+package dev.coral.client.splunk;
+
+import java.util.Map;
+
+
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+
+/**
+ * Management endpoint exposing the connection pool utilization of each Splunk target at {@code /splunktargets}.
+ */
+@Endpoint(id = "splunktargets", defaultSensitive = false)
+public class SplunkTargetsEndpoint {
+
+    private final SplunkTargets splunkTargets;
+
+    public SplunkTargetsEndpoint(SplunkTargets splunkTargets) {
+        this.splunkTargets = splunkTargets;
+    }
+
+    @Read
+    public Map<String, Map<String, Object>> stats() {
+        return splunkTargets.stats();
+    }
+}
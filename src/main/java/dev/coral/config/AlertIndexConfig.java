@@ -0,0 +1,25 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * In-memory index over recently ingested alerts.
+ */
+@ConfigurationProperties("coral.alert-index")
+public interface AlertIndexConfig {
+
+    /** Maximum number of alerts kept; the oldest ones are evicted first. */
+    @Bindable(defaultValue = "200000")
+    int getMaximumSize();
+
+    /** How long an alert stays in the index after it was ingested. */
+    @Bindable(defaultValue = "24h")
+    Duration getMaxAge();
+
+    /** Whether the index is rebuilt from the most recent alerts in the alert log on startup. */
+    @Bindable(defaultValue = "true")
+    boolean isRestoreFromLog();
+}
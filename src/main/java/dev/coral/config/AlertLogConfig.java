@@ -0,0 +1,57 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Append-only log that alert webhooks are ingested into.
+ */
+@ConfigurationProperties("coral.alert-log")
+public interface AlertLogConfig {
+
+    enum Durability {
+        /** Acknowledge once the alerts are queued; segments are synced on rotation and shutdown. */
+        ACCEPTED,
+        /** Acknowledge once the alerts are written to the log (page cache). */
+        WRITTEN,
+        /** Acknowledge once the batch holding the alerts has been synced to disk. */
+        SYNCED
+    }
+
+    /** Directory holding the log segments and their offset indexes; relative to the user's home directory. */
+    @Bindable(defaultValue = ".coral/alerts")
+    String getDir();
+
+    /** Size at which the active segment is rolled. */
+    @Bindable(defaultValue = "67108864")
+    long getSegmentBytes();
+
+    /** Number of most recent segments kept on disk. */
+    @Bindable(defaultValue = "10")
+    int getRetainSegments();
+
+    /** Number of webhook requests waiting to be written before callers block. */
+    @Bindable(defaultValue = "8192")
+    int getQueueCapacity();
+
+    /** Maximum number of webhook requests appended together. */
+    @Bindable(defaultValue = "512")
+    int getMaxBatchSize();
+
+    /** How long a webhook waits for room in a full queue before it is rejected. */
+    @Bindable(defaultValue = "1s")
+    Duration getEnqueueTimeout();
+
+    @Bindable(defaultValue = "ACCEPTED")
+    Durability getDurability();
+
+    /** How long an incidentId + status pair is remembered for deduplication. */
+    @Bindable(defaultValue = "1h")
+    Duration getDedupWindow();
+
+    /** Maximum number of incidentId + status pairs remembered for deduplication. */
+    @Bindable(defaultValue = "100000")
+    long getDedupMaximumSize();
+}
@@ -1,7 +1,5 @@
 package dev.coral.config;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.context.annotation.ConfigurationProperties;
 import io.micronaut.core.convert.ConversionContext;
 import io.micronaut.core.convert.TypeConverter;
@@ -17,7 +15,11 @@ public interface EndpointConfig {
     interface Endpoint {
         String getName();
         String getUrl();
-        List<String> getActions();
+        /**
+         * Each action is either a {@code type|value} string or a {@code parallel} map whose list entries run
+         * concurrently; an entry of that list may itself be a list of actions that run in sequence.
+         */
+        List<Object> getActions();
     }
 
     @Singleton
@@ -25,30 +27,43 @@ public interface EndpointConfig {
 
         @Override
         public Optional<Endpoint> convert(Map object, Class<Endpoint> targetType, ConversionContext context) {
+            String name = object.getOrDefault("name", "").toString();
+            String url = object.getOrDefault("url", "").toString();
+            List<Object> actions = toActions(object.get("actions"));
             return Optional.of(new Endpoint() {
                 @Override
                 public String getName() {
-                    return object.getOrDefault("name", "").toString();
+                    return name;
                 }
 
                 @Override
                 public String getUrl() {
-                    return object.getOrDefault("url", "").toString();
-
+                    return url;
                 }
 
                 @Override
-                public List<String> getActions() {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    try {
-                        return objectMapper.convertValue(object.get("actions"), new TypeReference<>() {
-                        });
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    return new ArrayList<String>();
+                public List<Object> getActions() {
+                    return actions;
                 }
             });
         }
+
+        // Converted once here rather than on every getActions() call
+        private static List<Object> toActions(Object actions) {
+            Collection<?> values;
+            if (actions instanceof Collection) {
+                values = (Collection<?>) actions;
+            } else if (actions != null) {
+                values = List.of(actions);
+            } else {
+                values = List.of();
+            }
+            List<Object> result = new ArrayList<>(values.size());
+            for (Object value : values) {
+                // Groups such as parallel are kept as maps and lists, everything else is an action string
+                result.add(value instanceof Map || value instanceof Collection ? value : String.valueOf(value));
+            }
+            return Collections.unmodifiableList(result);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package dev.coral.config;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Threads that run the blocking request handlers of {@code DynamicController}.
+ */
+@ConfigurationProperties("coral.execution")
+public interface ExecutionConfig {
+
+    enum Mode {
+        /** A fixed pool of {@link #getBlockingThreads()} platform threads. */
+        BLOCKING,
+        /** A new virtual thread per request. Needs JDK 21+, otherwise falls back to {@link #BLOCKING}. */
+        VIRTUAL
+    }
+
+    @Bindable(defaultValue = "BLOCKING")
+    Mode getMode();
+
+    /** Platform threads of the handler pool in {@link Mode#BLOCKING} mode; further requests queue for a thread. */
+    @Bindable(defaultValue = "200")
+    int getBlockingThreads();
+}
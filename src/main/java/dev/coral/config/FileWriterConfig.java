@@ -0,0 +1,33 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Background writer that saves alerts, topology and time-series responses as JSON files.
+ */
+@ConfigurationProperties("coral.file-writer")
+public interface FileWriterConfig {
+
+    /** Directory the files are written to; relative to the user's home directory. */
+    @Bindable(defaultValue = ".coral")
+    String getDir();
+
+    /** Number of files waiting to be written before callers block. */
+    @Bindable(defaultValue = "1024")
+    int getQueueCapacity();
+
+    /** Maximum number of files written and synced together. */
+    @Bindable(defaultValue = "256")
+    int getMaxBatchSize();
+
+    /** How long a caller waits for room in a full queue before the save is rejected. */
+    @Bindable(defaultValue = "5s")
+    Duration getEnqueueTimeout();
+
+    /** Whether each batch is forced to disk before it is acknowledged. */
+    @Bindable(defaultValue = "true")
+    boolean isFsync();
+}
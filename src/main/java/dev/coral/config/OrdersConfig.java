@@ -0,0 +1,27 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Downstreams called by {@code GET /orders}. Urls are resolved once at startup.
+ */
+@ConfigurationProperties("coral.orders")
+public interface OrdersConfig {
+
+    @Bindable(defaultValue = "http://localhost:8082/checkout")
+    String getCheckoutUrl();
+
+    /** How long to wait for the checkout service before leaving it out of the order. */
+    @Bindable(defaultValue = "5s")
+    Duration getCheckoutTimeout();
+
+    @Bindable(defaultValue = "http://localhost:8083/payments")
+    String getPaymentsUrl();
+
+    /** How long to wait for the payment service before leaving it out of the order. */
+    @Bindable(defaultValue = "5s")
+    Duration getPaymentsTimeout();
+}
@@ -0,0 +1,36 @@
+package dev.coral.config;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Concurrency of each stage of the Splunk collection pipeline
+ * (topology -> MTS discovery -> time-series fetch -> export).
+ */
+@ConfigurationProperties("coral.pipeline")
+public interface PipelineConfig {
+
+    /** Number of services whose MTS lists are discovered concurrently. */
+    @Bindable(defaultValue = "8")
+    int getMtsConcurrency();
+
+    /** Number of MTS requested per page during discovery. */
+    @Bindable(defaultValue = "1000")
+    int getMtsPageSize();
+
+    /** Number of (service, metric) time-series windows fetched concurrently. */
+    @Bindable(defaultValue = "32")
+    int getTimeSeriesConcurrency();
+
+    /** Number of threads writing collected data to disk. */
+    @Bindable(defaultValue = "1")
+    int getExportConcurrency();
+
+    /** Directory the collected topology, time series and exit spans are exported to as JSON. */
+    @Bindable(defaultValue = "src/main/resources/data")
+    String getExportDir();
+
+    /** Number of finished runs whose profiles are kept for {@code /splunk/pipeline/profile}. */
+    @Bindable(defaultValue = "20")
+    int getProfileHistory();
+}
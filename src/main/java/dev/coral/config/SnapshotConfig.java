@@ -0,0 +1,22 @@
+package dev.coral.config;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Binary snapshots of collected Splunk data, written after every collection and used to warm-start.
+ */
+@ConfigurationProperties("coral.snapshot")
+public interface SnapshotConfig {
+
+    @Bindable(defaultValue = "true")
+    boolean isEnabled();
+
+    /** Directory holding the snapshots. */
+    @Bindable(defaultValue = "snapshots")
+    String getDir();
+
+    /** Number of most recent snapshots kept on disk. */
+    @Bindable(defaultValue = "3")
+    int getRetain();
+}
@@ -0,0 +1,40 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Response cache in front of the Splunk API. Query time ranges are aligned to the bucket of their operation so
+ * that requests within the same bucket share a cache entry; entries expire after the operation's TTL.
+ */
+@ConfigurationProperties("coral.splunk-cache")
+public interface SplunkCacheConfig {
+
+    @Bindable(defaultValue = "true")
+    boolean isEnabled();
+
+    /** Maximum number of responses kept per operation. */
+    @Bindable(defaultValue = "10000")
+    long getMaximumSize();
+
+    @Bindable(defaultValue = "60s")
+    Duration getMtsBucket();
+
+    @Bindable(defaultValue = "60s")
+    Duration getMtsTtl();
+
+    @Bindable(defaultValue = "60s")
+    Duration getTopologyBucket();
+
+    @Bindable(defaultValue = "60s")
+    Duration getTopologyTtl();
+
+    @Bindable(defaultValue = "10s")
+    Duration getTimeSeriesBucket();
+
+    @Bindable(defaultValue = "10s")
+    Duration getTimeSeriesTtl();
+}
@@ -0,0 +1,62 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Client-side admission control of Splunk API calls: a token bucket per endpoint family, an adaptive (AIMD)
+ * concurrency limit per family, and retries of throttled calls after their {@code Retry-After}.
+ */
+@ConfigurationProperties("coral.splunk-scheduler")
+public interface SplunkSchedulerConfig {
+
+    @Bindable(defaultValue = "true")
+    boolean isEnabled();
+
+    /** Requests per second to {@code /v2/metrictimeseries}. */
+    @Bindable(defaultValue = "10")
+    double getMetricTimeSeriesRate();
+
+    /** Requests per second to {@code /v1/timeserieswindow}. */
+    @Bindable(defaultValue = "20")
+    double getTimeSeriesWindowRate();
+
+    /** Requests per second to {@code /v2/apm/graphql}. */
+    @Bindable(defaultValue = "10")
+    double getGraphqlRate();
+
+    /** Requests per second to {@code /v2/apm/topology}. */
+    @Bindable(defaultValue = "2")
+    double getTopologyRate();
+
+    /** Requests per second to {@code /v2/apm/trace}. */
+    @Bindable(defaultValue = "10")
+    double getTraceRate();
+
+    /** Requests worth of this much time a family may send at once after being idle. */
+    @Bindable(defaultValue = "1s")
+    Duration getBurst();
+
+    @Bindable(defaultValue = "4")
+    int getInitialConcurrency();
+
+    @Bindable(defaultValue = "1")
+    int getMinConcurrency();
+
+    @Bindable(defaultValue = "64")
+    int getMaxConcurrency();
+
+    /** Calls slower than this shrink the concurrency limit of their family instead of growing it. */
+    @Bindable(defaultValue = "5s")
+    Duration getLatencyThreshold();
+
+    /** Number of times a throttled (429) call is retried before its error is returned. */
+    @Bindable(defaultValue = "3")
+    int getMaxRetries();
+
+    /** Pause after a 429 without a {@code Retry-After} header. */
+    @Bindable(defaultValue = "1s")
+    Duration getDefaultRetryAfter();
+}
@@ -0,0 +1,110 @@
+package dev.coral.config;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.convert.ConversionContext;
+import io.micronaut.core.convert.TypeConverter;
+import jakarta.inject.Singleton;
+
+import java.util.*;
+
+
+/**
+ * Splunk orgs to collect from. Each target has its own HTTP client and connection pool. Without targets, a single
+ * {@code default} org is collected from the realm and token in the {@code REALM} and {@code SIGNALFX_API_TOKEN}
+ * environment variables.
+ */
+@ConfigurationProperties("coral.splunk")
+public interface SplunkTargetsConfig {
+    @Nullable
+    List<Target> getTargets();
+
+    interface Target {
+        /** Name the collected data is tagged with; unique across targets. */
+        String getOrg();
+        String getRealm();
+        /** API token, or {@code null} if it is read from the environment variable named by {@code token-env}. */
+        String getToken();
+        /** Base URL replacing {@code https://api.<realm>.signalfx.com}, or {@code null}. */
+        String getUrl();
+        /** HTTP/1.1 connections the pool may open. */
+        int getMaxConnections();
+        /** Whether HTTP/2 is negotiated (ALPN) so requests are multiplexed over a few connections. */
+        boolean isHttp2();
+        int getHttp2Connections();
+        /** Concurrent requests multiplexed over one HTTP/2 connection. */
+        int getMaxStreamsPerConnection();
+    }
+
+    @Singleton
+    class MapToTargetConverter implements TypeConverter<Map, Target> {
+
+        static final int DEFAULT_MAX_CONNECTIONS = 32;
+        static final int DEFAULT_HTTP2_CONNECTIONS = 1;
+        static final int DEFAULT_MAX_STREAMS_PER_CONNECTION = 100;
+
+        @Override
+        public Optional<Target> convert(Map object, Class<Target> targetType, ConversionContext context) {
+            String org = string(object, "org", "default");
+            String realm = string(object, "realm", "us1");
+            String tokenEnv = string(object, "token-env", null);
+            String token = string(object, "token", tokenEnv == null ? null : System.getenv(tokenEnv));
+            String url = string(object, "url", null);
+            int maxConnections = integer(object, "max-connections", DEFAULT_MAX_CONNECTIONS);
+            boolean http2 = Boolean.parseBoolean(string(object, "http2", "true"));
+            int http2Connections = integer(object, "http2-connections", DEFAULT_HTTP2_CONNECTIONS);
+            int maxStreams = integer(object, "max-streams-per-connection", DEFAULT_MAX_STREAMS_PER_CONNECTION);
+            return Optional.of(new Target() {
+                @Override
+                public String getOrg() {
+                    return org;
+                }
+
+                @Override
+                public String getRealm() {
+                    return realm;
+                }
+
+                @Override
+                public String getToken() {
+                    return token;
+                }
+
+                @Override
+                public String getUrl() {
+                    return url;
+                }
+
+                @Override
+                public int getMaxConnections() {
+                    return maxConnections;
+                }
+
+                @Override
+                public boolean isHttp2() {
+                    return http2;
+                }
+
+                @Override
+                public int getHttp2Connections() {
+                    return http2Connections;
+                }
+
+                @Override
+                public int getMaxStreamsPerConnection() {
+                    return maxStreams;
+                }
+            });
+        }
+
+        private static String string(Map<?, ?> object, String key, String defaultValue) {
+            Object value = object.get(key);
+            return value == null ? defaultValue : value.toString();
+        }
+
+        private static int integer(Map<?, ?> object, String key, int defaultValue) {
+            Object value = object.get(key);
+            return value == null ? defaultValue : Integer.parseInt(value.toString());
+        }
+    }
+}
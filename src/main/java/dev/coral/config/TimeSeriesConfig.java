@@ -0,0 +1,41 @@
+package dev.coral.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Time-series windows fetched from {@code /v1/timeserieswindow} and kept in the time-series store.
+ */
+@ConfigurationProperties("coral.time-series")
+public interface TimeSeriesConfig {
+
+    /**
+     * Length of the window fetched per metric, and the furthest back an incremental refresh reaches. How long points
+     * are kept is set by {@link #getRawPoints()} and {@link #getRollups()}.
+     */
+    @Bindable(defaultValue = "15m")
+    Duration getWindow();
+
+    @Bindable(defaultValue = "1s")
+    Duration getResolution();
+
+    /**
+     * Whether refreshes only fetch the points since the last one stored for a metric instead of the whole window.
+     */
+    @Bindable(defaultValue = "true")
+    boolean isIncremental();
+
+    /** Capacity of the raw-point ring of each MTS; once full, every new point overwrites the oldest one. */
+    @Bindable(defaultValue = "3600")
+    int getRawPoints();
+
+    /**
+     * Rollup tiers kept per MTS as {@code <width>:<retention>}, each holding min, max, sum and count of the points
+     * in its buckets.
+     */
+    @Bindable(defaultValue = "1m:2h,5m:1d,1h:7d")
+    List<String> getRollups();
+}
@@ -0,0 +1,26 @@
+package dev.coral.config;
+
+import java.time.Duration;
+
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.core.bind.annotation.Bindable;
+
+/**
+ * Polling behaviour of exemplar trace search jobs.
+ */
+@ConfigurationProperties("coral.trace-search")
+public interface TraceSearchConfig {
+
+    /** Delay before the first poll and after every poll that saw progress. */
+    @Bindable(defaultValue = "500ms")
+    Duration getInitialPollDelay();
+
+    /** Upper bound of the backoff applied while a job reports no progress. */
+    @Bindable(defaultValue = "5s")
+    Duration getMaxPollDelay();
+
+    /** Time after which a search is given up, measured from the start of the job. */
+    @Bindable(defaultValue = "60s")
+    Duration getDeadline();
+}
@@ -1,55 +1,104 @@
 package dev.coral.controllers;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 
-import dev.coral.config.EndpointConfig;
-import dev.coral.model.SplunkAlert;
+import dev.coral.alerts.AlertIndex;
+import dev.coral.alerts.AlertIndex.AlertQuery;
+import dev.coral.alerts.AlertIndex.AlertQueryResult;
+import dev.coral.alerts.AlertIngestionService;
+import dev.coral.client.splunk.SplunkTargets;
+import dev.coral.config.OrdersConfig;
+import dev.coral.execution.HandlerExecutorFactory;
 import dev.coral.model.SplunkMTS;
 import dev.coral.model.SplunkTopology;
+import dev.coral.service.PipelineTimings;
 import dev.coral.service.Span;
 import dev.coral.service.SplunkO11yDataFetcherService;
+import dev.coral.store.MtsCatalog;
+import dev.coral.store.RollupSlice;
+import dev.coral.store.TimeSeriesRollups;
+import dev.coral.store.TimeSeriesSlice;
+import dev.coral.store.TimeSeriesStore;
 import dev.coral.utils.metrics.LocalFileWriter;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
 import io.micronaut.http.annotation.PathVariable;
 import io.micronaut.http.annotation.Post;
+import io.micronaut.http.annotation.QueryValue;
 import io.micronaut.http.client.HttpClient;
 import io.micronaut.http.client.annotation.Client;
-import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Controller
-@ExecuteOn(TaskExecutors.BLOCKING)
+@ExecuteOn(HandlerExecutorFactory.HANDLERS)
 public class DynamicController {
-    private final EndpointConfig endpointConfig;
     private final HttpClient httpClient;
+    private final OrdersConfig ordersConfig;
     private final SplunkO11yDataFetcherService splunkO11yDataFetcherService;
+    private final TimeSeriesStore timeSeriesStore;
+    private final LocalFileWriter localFileWriter;
+    private final AlertIngestionService alertIngestionService;
+    private final AlertIndex alertIndex;
+    private final MtsCatalog mtsCatalog;
+    private final SplunkTargets splunkTargets;
 
     @Inject
-    public DynamicController(EndpointConfig endpointConfig, @Client HttpClient httpClient,
-                             SplunkO11yDataFetcherService splunkO11yDataFetcherService) {
-        this.endpointConfig = endpointConfig;
+    public DynamicController(@Client HttpClient httpClient, OrdersConfig ordersConfig,
+                             SplunkO11yDataFetcherService splunkO11yDataFetcherService,
+                             TimeSeriesStore timeSeriesStore,
+                             LocalFileWriter localFileWriter,
+                             AlertIngestionService alertIngestionService,
+                             AlertIndex alertIndex,
+                             MtsCatalog mtsCatalog,
+                             SplunkTargets splunkTargets) {
         this.httpClient = httpClient;
+        this.ordersConfig = ordersConfig;
         this.splunkO11yDataFetcherService = splunkO11yDataFetcherService;
+        this.timeSeriesStore = timeSeriesStore;
+        this.localFileWriter = localFileWriter;
+        this.alertIngestionService = alertIngestionService;
+        this.alertIndex = alertIndex;
+        this.mtsCatalog = mtsCatalog;
+        this.splunkTargets = splunkTargets;
     }
 
     @Get("/orders")
-    public StringBuilder getSplunkMTS() {
-        String serviceHostAddress = System.getenv("SERVICE_HOST_ADDRESS");
+    public CompletableFuture<String> getSplunkMTS() {
         log.info("Received order request, calling payment service and checkout service");
-        StringBuilder responseBuilder = new StringBuilder();
-        // service in splunk
-        responseBuilder.append(httpClient.toBlocking().retrieve("http://" + serviceHostAddress + ":8082/checkout"));
-        // service in appD
-        responseBuilder.append(httpClient.toBlocking().retrieve("http://" + serviceHostAddress + ":8083/payments"));
-        return responseBuilder;
+        // checkout is a service in splunk, payments a service in appD; both are called concurrently and a
+        // downstream that times out is left out of the order instead of failing it
+        return Mono.zip(
+                retrieve(ordersConfig.getCheckoutUrl(), ordersConfig.getCheckoutTimeout()),
+                retrieve(ordersConfig.getPaymentsUrl(), ordersConfig.getPaymentsTimeout()),
+                String::concat)
+            .toFuture();
+    }
+
+    private Mono<String> retrieve(String url, Duration timeout) {
+        return Mono.from(httpClient.retrieve(url))
+            .defaultIfEmpty("")
+            .timeout(timeout)
+            .onErrorResume(TimeoutException.class, e -> {
+                log.warn("No response from {} within {}, leaving it out of the order", url, timeout);
+                return Mono.just("");
+            });
     }
 
     @Get("/checkout")
@@ -63,9 +112,9 @@ public class DynamicController {
     }
 
     @Get("/splunk/trace/{traceId}/exitspan")
-    public Span getSplunkTrace(String traceId) {
+    public Span getSplunkTrace(String traceId, @Nullable @QueryValue String org) {
         log.info("Received request to fetch traceID: {}", traceId);
-        Span resp = splunkO11yDataFetcherService.getExistSpanFromTraceAPI(traceId);
+        Span resp = splunkO11yDataFetcherService.getExistSpanFromTraceAPI(org, traceId);
         log.info("Received exit span for Trace id {} - {}", traceId, resp);
         return resp;
     }
@@ -75,38 +124,114 @@ public class DynamicController {
         return splunkO11yDataFetcherService.getExistSpanFromLocalTrace();
     }
 
+    /**
+     * Accepts a single alert or an array of alerts. Depending on {@code coral.alert-log.durability} the response is
+     * sent once the alerts are queued, written or synced to the alert log.
+     */
     @Post("/splunk/alert/webhook")
-    public void postAlertData(@Body SplunkAlert body) throws IOException {
-        log.info("Splunk alert data: {}", body);
-        LocalFileWriter.save(body.getDetector().trim() + "-" + body.getDetectorId() , body);
+    public CompletableFuture<HttpResponse<?>> postAlertData(@Body byte[] body) {
+        try {
+            return alertIngestionService.ingest(body)
+                .thenApply(result -> {
+                    log.debug("Splunk alerts ingested: {}", result);
+                    return HttpResponse.accepted().body(result);
+                });
+        } catch (IOException e) {
+            log.warn("Rejected malformed alert payload: {}", e.getMessage());
+            return CompletableFuture.completedFuture(HttpResponse.badRequest(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected alert payload: {}", e.getMessage());
+            return CompletableFuture.completedFuture(HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    /** Logged alerts as NDJSON, starting at {@code offset}. */
+    @Get(value = "/splunk/alert/log", produces = "application/x-ndjson")
+    public byte[] getAlertLog(@QueryValue(defaultValue = "0") long offset,
+                              @QueryValue(defaultValue = "100") int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] record : alertIngestionService.read(offset, Math.min(limit, 10_000))) {
+            out.write(record);
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Recently ingested alerts, newest first, whose timestamp (epoch millis) lies in [{@code from}, {@code to}] and
+     * that match every given filter. Dimensions are given as {@code dimension=key:value} and may repeat.
+     */
+    @Get("/splunk/alerts")
+    public HttpResponse<AlertQueryResult> queryAlerts(@QueryValue(defaultValue = "0") long from,
+                                                      @QueryValue(defaultValue = "9223372036854775807") long to,
+                                                      @Nullable @QueryValue String detectorId,
+                                                      @Nullable @QueryValue String severity,
+                                                      @Nullable @QueryValue String status,
+                                                      @Nullable @QueryValue String incidentId,
+                                                      @Nullable @QueryValue List<String> dimension,
+                                                      @QueryValue(defaultValue = "100") int limit) {
+        Map<String, String> dimensions = parseDimensions(dimension);
+        if (dimensions == null) {
+            return HttpResponse.badRequest();
+        }
+        AlertQuery query = new AlertQuery(from, to, detectorId, severity, status, incidentId, dimensions,
+            Math.max(0, Math.min(limit, 10_000)));
+        return HttpResponse.ok(alertIndex.query(query));
     }
 
 
     @Get("/splunk/metrics/{serviceName}")
-    public SplunkMTS getSplunkMTS(@PathVariable("serviceName") String serviceName) {
+    public SplunkMTS getSplunkMTS(@PathVariable("serviceName") String serviceName, @Nullable @QueryValue String org) {
         log.info("Received request to fetch mts for serviceName: {}", serviceName);
-        SplunkMTS resp = splunkO11yDataFetcherService.getMTS(serviceName);
+        SplunkMTS resp = splunkO11yDataFetcherService.getMTS(org, serviceName);
         log.info("Serialized MTS: {} ", resp);
         return resp;
     }
 
     @Get("/splunk/topology")
-    public SplunkTopology getSplunkTopology() {
-        SplunkTopology resp = splunkO11yDataFetcherService.getTopology();
+    public SplunkTopology getSplunkTopology(@Nullable @QueryValue String org) {
+        SplunkTopology resp = splunkO11yDataFetcherService.getTopology(org);
         log.info("Topology data {}", resp);
-        LocalFileWriter.save("topology", resp);
+        save("topology", resp);
         return resp;
     }
 
     @Get("/splunk/metrics/timeseries/{serviceName}/{metricName}")
-    public String getSplunkTimeSeriesWindow(@PathVariable("serviceName") String serviceName, @PathVariable("metricName") String metricName) {
+    public String getSplunkTimeSeriesWindow(@PathVariable("serviceName") String serviceName, @PathVariable("metricName") String metricName,
+                                            @Nullable @QueryValue String org) {
         log.info("Received request to fetch Time Series for serviceName: {} and metric: {}", serviceName, metricName);
-        String resp = splunkO11yDataFetcherService.getTimeSeriesWindow(serviceName, metricName);
-        LocalFileWriter.save(serviceName + "-" + metricName, resp);
+        String resp = splunkO11yDataFetcherService.getTimeSeriesWindow(org, serviceName, metricName);
+        save(serviceName + "-" + metricName, resp);
         log.info("Serialized MTS for service {} & metric name {} -- {} ",serviceName, metricName, resp);
         return resp;
     }
 
+    /** Queues a response to be written to disk, without failing the request if the writer rejects it. */
+    private void save(String fileName, Object content) {
+        try {
+            localFileWriter.save(fileName, content);
+        } catch (RejectedExecutionException e) {
+            log.warn("Not saving {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * Discovered MTS matching every given filter; dimensions are given as {@code dimension=key:value} and may repeat.
+     * Without {@code org} the MTS of every org match.
+     */
+    @Get("/splunk/mts")
+    public HttpResponse<List<MtsCatalog.Mts>> findMts(@Nullable @QueryValue String org,
+                                                      @Nullable @QueryValue String service,
+                                                      @Nullable @QueryValue String metric,
+                                                      @Nullable @QueryValue List<String> dimension,
+                                                      @QueryValue(defaultValue = "1000") int limit) {
+        Map<String, String> dimensions = parseDimensions(dimension);
+        if (dimensions == null) {
+            return HttpResponse.badRequest();
+        }
+        return HttpResponse.ok(mtsCatalog.find(org, service, metric, dimensions, Math.max(0, Math.min(limit, 10_000))));
+    }
+
     @Get("/splunk/allMTS")
     public String getAllMTS() {
         return splunkO11yDataFetcherService.getAllMTS();
@@ -118,67 +243,88 @@ public class DynamicController {
     }
 
     @Get("/splunk/loadAllSplunkData")
-    public Map<String, Map<String, String>> loadAllSplunkData() {
+    public Map<String, Map<String, Map<String, Integer>>> loadAllSplunkData() {
         return splunkO11yDataFetcherService.fetchAllSplunkData();
     }
 
+    @Get("/splunk/store")
+    public Map<String, Map<String, Map<String, Integer>>> getStoredTimeSeries() {
+        return timeSeriesStore.summary();
+    }
+
+    @Get("/splunk/store/{serviceName}/{metricName}")
+    public Map<String, TimeSeriesSlice> scanStoredTimeSeries(@PathVariable("serviceName") String serviceName,
+                                                             @PathVariable("metricName") String metricName,
+                                                             @QueryValue(defaultValue = "0") long from,
+                                                             @QueryValue(defaultValue = "9223372036854775807") long to,
+                                                             @Nullable @QueryValue String org) {
+        return timeSeriesStore.scan(splunkTargets.orgOrDefault(org), serviceName, metricName, from, to);
+    }
+
+    /**
+     * Rollup buckets of a stored metric at one of the configured resolutions, e.g. {@code resolution=5m}, whose start
+     * lies in {@code [from, to]}.
+     */
+    @Get("/splunk/store/{serviceName}/{metricName}/rollup")
+    public HttpResponse<Map<String, RollupSlice>> rollupStoredTimeSeries(@PathVariable("serviceName") String serviceName,
+                                                                        @PathVariable("metricName") String metricName,
+                                                                        @QueryValue(defaultValue = "1m") String resolution,
+                                                                        @QueryValue(defaultValue = "0") long from,
+                                                                        @QueryValue(defaultValue = "9223372036854775807") long to,
+                                                                        @Nullable @QueryValue String org) {
+        Duration width;
+        try {
+            width = TimeSeriesRollups.Tier.parseDuration(resolution);
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.badRequest();
+        }
+        Map<String, RollupSlice> rollups = timeSeriesStore.rollups(splunkTargets.orgOrDefault(org), serviceName, metricName,
+            width.toMillis(), from, to);
+        return rollups == null ? HttpResponse.badRequest() : HttpResponse.ok(rollups);
+    }
+
+    @Get("/splunk/pipeline/timings")
+    public PipelineTimings.Report getPipelineTimings() {
+        return splunkO11yDataFetcherService.getLastPipelineTimings();
+    }
+
+    @Get("/splunk/pipeline/profile")
+    public List<PipelineTimings.Report> getPipelineProfile(@QueryValue(defaultValue = "5") int runs) {
+        return splunkO11yDataFetcherService.getPipelineProfiles(runs);
+    }
+
     @Get("/splunk/fetchCoralData/{serviceName}")
-    public String fetchCoralData(@PathVariable("serviceName") String serviceName) {
-        return splunkO11yDataFetcherService.fetchCoralData(serviceName);
+    public String fetchCoralData(@PathVariable("serviceName") String serviceName, @Nullable @QueryValue String org) {
+        return splunkO11yDataFetcherService.fetchCoralData(org, serviceName);
     }
 
 
     @Get("/splunk/trace/exitSpan/{serviceName}")
-    public Span getExitSpanForService(String serviceName) {
+    public CompletableFuture<Span> getExitSpanForService(String serviceName, @Nullable @QueryValue String org) {
         log.info("Received request to fetch exit span for service: {}", serviceName);
-        Span resp = splunkO11yDataFetcherService.getExitSpanForService(serviceName);
-        log.info("Received exit span for Service {} - {}", serviceName, resp);
-        return resp;
+        return splunkO11yDataFetcherService.getExitSpanForServiceAsync(org, serviceName)
+            .whenComplete((resp, e) -> log.info("Received exit span for Service {} - {}", serviceName, resp));
     }
 
     @Get("/splunk/trace/{serviceName}")
-    public String getTraceIdForService(String serviceName) {
+    public CompletableFuture<String> getTraceIdForService(String serviceName, @Nullable @QueryValue String org) {
         log.info("Received request to fetch trace for service: {}", serviceName);
-        String resp = splunkO11yDataFetcherService.getTraceId(serviceName);
-        log.info("Received trace ID for Service {} - {}", serviceName, resp);
-        return resp;
+        return splunkO11yDataFetcherService.getTraceIdAsync(org, serviceName)
+            .whenComplete((resp, e) -> log.info("Received trace ID for Service {} - {}", serviceName, resp));
     }
 
-    @Get("/dynamic/{dynamicEndpoint}")
-    public String handleRequest(String dynamicEndpoint) {
-        log.info("===================================");
-        log.info("Dynamic request: {}", dynamicEndpoint);
-        EndpointConfig.Endpoint endpoint = endpointConfig.getEndpoints().stream()
-            .filter(e -> e.getUrl().equalsIgnoreCase(dynamicEndpoint))
-            .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException("Endpoint not found"));
-
-        StringBuilder responseBuilder = new StringBuilder();
-        for (String action : endpoint.getActions()) {
-            log.info("-----------------------------------");
-            String[] parts = action.split("\\|");
-            String actionType = parts[0];
-            String actionValue = parts[1];
-            log.info("Action type: {} , Action value: {}", actionType, actionValue);
-            switch (actionType) {
-                case "request":
-                    log.info("Making request to: {}", actionValue);
-                    String response = httpClient.toBlocking().retrieve(actionValue);
-                    responseBuilder.append(response);
-                    break;
-                case "wait_random":
-                    try {
-                        long waitTime = ThreadLocalRandom.current().nextLong(0, Long.parseLong(actionValue.replace("ms", "")));
-                        log.info("Waiting for {} ms" , waitTime);
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    break;
-                // Add more cases for other action types
+    /** Parses repeated {@code key:value} parameters; {@code null} if one has no key. */
+    private static Map<String, String> parseDimensions(List<String> keyValues) {
+        Map<String, String> dimensions = new LinkedHashMap<>();
+        if (keyValues != null) {
+            for (String keyValue : keyValues) {
+                int separator = keyValue.indexOf(':');
+                if (separator <= 0) {
+                    return null;
+                }
+                dimensions.put(keyValue.substring(0, separator), keyValue.substring(separator + 1));
             }
         }
-        log.info("===================================");
-        return responseBuilder.toString();
+        return dimensions;
     }
-}
\ No newline at end of file
+}
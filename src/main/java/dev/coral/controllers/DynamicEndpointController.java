@@ -0,0 +1,39 @@
+package dev.coral.controllers;
+
+import java.util.concurrent.CompletableFuture;
+
+
+import dev.coral.endpoints.EndpointPlan;
+import dev.coral.endpoints.EndpointPlanExecutor;
+import dev.coral.endpoints.EndpointRegistry;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the endpoints configured under {@code coral.endpoints}. Unlike {@link DynamicController} this runs on the
+ * event loop: plans are executed without blocking, so simulated requests do not pin a thread while they wait.
+ */
+@Slf4j
+@Controller
+public class DynamicEndpointController {
+    private final EndpointRegistry endpointRegistry;
+    private final EndpointPlanExecutor endpointPlanExecutor;
+
+    @Inject
+    public DynamicEndpointController(EndpointRegistry endpointRegistry, EndpointPlanExecutor endpointPlanExecutor) {
+        this.endpointRegistry = endpointRegistry;
+        this.endpointPlanExecutor = endpointPlanExecutor;
+    }
+
+    @Get("/dynamic/{dynamicEndpoint}")
+    public CompletableFuture<String> handleRequest(String dynamicEndpoint) {
+        log.debug("Dynamic request: {}", dynamicEndpoint);
+        EndpointPlan endpoint = endpointRegistry.find(dynamicEndpoint);
+        if (endpoint == null) {
+            throw new IllegalArgumentException("Endpoint not found");
+        }
+        return endpointPlanExecutor.execute(endpoint);
+    }
+}
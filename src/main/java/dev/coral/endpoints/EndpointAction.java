@@ -0,0 +1,191 @@
+package dev.coral.endpoints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * One pre-parsed step of a dynamic endpoint. Parsed once from {@code coral.endpoints[].actions}, so running it
+ * needs no string handling. Plain actions have the form {@code type|value}; a {@code parallel} group runs its
+ * branches concurrently, each branch being a single action or a list of actions run in sequence.
+ */
+public final class EndpointAction {
+
+    public enum Type { REQUEST, WAIT_RANDOM, PARALLEL }
+
+    private static final String PARALLEL_KEY = "parallel";
+    private static final EndpointAction[][] NO_BRANCHES = new EndpointAction[0][];
+
+    private final Type type;
+    private final String url;
+    private final long maxWaitMillis;
+    private final EndpointAction[][] branches;
+    private final Timer successTimer;
+    private final Timer errorTimer;
+
+    private EndpointAction(Type type, String url, long maxWaitMillis, EndpointAction[][] branches) {
+        this(type, url, maxWaitMillis, branches, null, null);
+    }
+
+    private EndpointAction(Type type, String url, long maxWaitMillis, EndpointAction[][] branches,
+                           Timer successTimer, Timer errorTimer) {
+        this.type = type;
+        this.url = url;
+        this.maxWaitMillis = maxWaitMillis;
+        this.branches = branches;
+        this.successTimer = successTimer;
+        this.errorTimer = errorTimer;
+    }
+
+    public static EndpointAction request(String url) {
+        return new EndpointAction(Type.REQUEST, url, 0, NO_BRANCHES);
+    }
+
+    public static EndpointAction waitRandom(long maxWaitMillis) {
+        return new EndpointAction(Type.WAIT_RANDOM, null, maxWaitMillis, NO_BRANCHES);
+    }
+
+    public static EndpointAction parallel(List<List<EndpointAction>> branches) {
+        EndpointAction[][] compiled = new EndpointAction[branches.size()][];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = branches.get(i).toArray(new EndpointAction[0]);
+        }
+        return new EndpointAction(Type.PARALLEL, null, 0, compiled);
+    }
+
+    /**
+     * Parses one configured action: a {@code request|<url>} or {@code wait_random|<millis>[ms]} string, or a
+     * map with a single {@code parallel} list.
+     *
+     * @throws IllegalArgumentException if the action is malformed or of an unknown type
+     */
+    public static EndpointAction parse(Object action) {
+        if (action instanceof Map) {
+            return parseGroup((Map<?, ?>) action);
+        }
+        return parse(action == null ? null : action.toString());
+    }
+
+    public static EndpointAction parse(String action) {
+        int separator = action == null ? -1 : action.indexOf('|');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected <type>|<value> but got: " + action);
+        }
+        String type = action.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        String value = action.substring(separator + 1).trim();
+        switch (type) {
+            case "request":
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Missing url in action: " + action);
+                }
+                return request(value);
+            case "wait_random":
+                String millis = value.endsWith("ms") ? value.substring(0, value.length() - 2).trim() : value;
+                try {
+                    return waitRandom(Long.parseLong(millis));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid wait in action: " + action, e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown action type '" + type + "' in action: " + action);
+        }
+    }
+
+    /** Parses a list of configured actions that run in sequence. */
+    public static List<EndpointAction> parseAll(Collection<?> actions) {
+        List<EndpointAction> parsed = new ArrayList<>(actions.size());
+        for (Object action : actions) {
+            parsed.add(parse(action));
+        }
+        return parsed;
+    }
+
+    private static EndpointAction parseGroup(Map<?, ?> group) {
+        Object branches = group.get(PARALLEL_KEY);
+        if (group.size() != 1 || !(branches instanceof Collection) || ((Collection<?>) branches).isEmpty()) {
+            throw new IllegalArgumentException("Expected a non-empty 'parallel' list but got: " + group);
+        }
+        List<List<EndpointAction>> parsed = new ArrayList<>();
+        for (Object branch : (Collection<?>) branches) {
+            parsed.add(branch instanceof Collection ? parseAll((Collection<?>) branch) : List.of(parse(branch)));
+        }
+        return parallel(parsed);
+    }
+
+    /**
+     * A copy of the action, branches included, that is timed as {@code coral.endpoint.action} of the endpoint.
+     * The timers are registered here so that running the action only records on them.
+     */
+    EndpointAction timed(String endpoint, MeterRegistry meterRegistry) {
+        EndpointAction[][] timedBranches = branches.length == 0 ? NO_BRANCHES : new EndpointAction[branches.length][];
+        for (int i = 0; i < timedBranches.length; i++) {
+            timedBranches[i] = new EndpointAction[branches[i].length];
+            for (int j = 0; j < branches[i].length; j++) {
+                timedBranches[i][j] = branches[i][j].timed(endpoint, meterRegistry);
+            }
+        }
+        return new EndpointAction(type, url, maxWaitMillis, timedBranches,
+            timer(endpoint, "success", meterRegistry), timer(endpoint, "error", meterRegistry));
+    }
+
+    private Timer timer(String endpoint, String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("coral.endpoint.action")
+            .description("Actions of coral.endpoints plans")
+            .tag("endpoint", endpoint)
+            .tag("action", type.name().toLowerCase(Locale.ROOT))
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /** The timer of successful or failed runs, or {@code null} if the action is not {@link #timed}. */
+    Timer timer(boolean success) {
+        return success ? successTimer : errorTimer;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Target of a {@link Type#REQUEST} action. */
+    public String getUrl() {
+        return url;
+    }
+
+    /** Exclusive upper bound of a {@link Type#WAIT_RANDOM} action; zero or less means no wait. */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /** Number of concurrent branches of a {@link Type#PARALLEL} action. */
+    public int branchCount() {
+        return branches.length;
+    }
+
+    /** The actions of a {@link Type#PARALLEL} branch, run in sequence. */
+    public EndpointAction[] branch(int index) {
+        return branches[index];
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case REQUEST:
+                return "request|" + url;
+            case WAIT_RANDOM:
+                return "wait_random|" + maxWaitMillis;
+            default:
+                List<List<EndpointAction>> printed = new ArrayList<>();
+                for (EndpointAction[] branch : branches) {
+                    printed.add(List.of(branch));
+                }
+                return "parallel" + printed;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.coral.endpoints;
+
+import java.util.List;
+
+/**
+ * Immutable, compiled form of one {@code coral.endpoints} entry. Actions are held in an array so they can be
+ * walked by index without allocating an iterator.
+ */
+public final class EndpointPlan {
+
+    private final String name;
+    private final String url;
+    private final EndpointAction[] actions;
+
+    public EndpointPlan(String name, String url, List<EndpointAction> actions) {
+        this.name = name;
+        this.url = url;
+        this.actions = actions.toArray(new EndpointAction[0]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int actionCount() {
+        return actions.length;
+    }
+
+    public EndpointAction action(int index) {
+        return actions[index];
+    }
+
+    EndpointAction[] actions() {
+        return actions;
+    }
+
+    public List<EndpointAction> getActions() {
+        return List.of(actions);
+    }
+}
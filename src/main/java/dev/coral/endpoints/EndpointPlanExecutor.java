@@ -0,0 +1,132 @@
+package dev.coral.endpoints;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.TaskScheduler;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs {@link EndpointPlan}s without holding a thread per simulated request. Requests use the non-blocking
+ * {@link HttpClient} and random waits are timers on the shared {@link TaskScheduler}, so a plan only occupies a
+ * thread while an action is being started or its result appended. Branches of a {@code parallel} action run
+ * concurrently; their responses are appended in configuration order once all of them have completed.
+ * <p>
+ * Each action is timed as {@code coral.endpoint.action}, tagged by endpoint, action type and outcome, so the time a
+ * plan spends on requests can be told apart from the time it spends waiting. The timers are resolved when the
+ * {@link EndpointRegistry} compiles the plan; actions of plans built otherwise are not timed.
+ */
+@Slf4j
+@Singleton
+public class EndpointPlanExecutor {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final HttpClient httpClient;
+    private final TaskScheduler taskScheduler;
+
+    @Inject
+    public EndpointPlanExecutor(@Client HttpClient httpClient,
+                                @Named(TaskExecutors.SCHEDULED) TaskScheduler taskScheduler) {
+        this.httpClient = httpClient;
+        this.taskScheduler = taskScheduler;
+    }
+
+    /** @return the concatenated responses of the plan's requests */
+    public CompletableFuture<String> execute(EndpointPlan plan) {
+        StringBuilder response = new StringBuilder();
+        return runSequence(plan.actions(), 0, response).thenApply(done -> response.toString());
+    }
+
+    private CompletableFuture<Void> runSequence(EndpointAction[] actions, int from, StringBuilder response) {
+        for (int i = from; i < actions.length; i++) {
+            CompletableFuture<Void> step = timed(actions[i], response);
+            if (!step.isDone()) {
+                int next = i + 1;
+                return step.thenCompose(done -> runSequence(actions, next, response));
+            }
+            if (step.isCompletedExceptionally()) {
+                return step;
+            }
+        }
+        return DONE;
+    }
+
+    private CompletableFuture<Void> timed(EndpointAction action, StringBuilder response) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> step;
+        try {
+            step = run(action, response);
+        } catch (RuntimeException e) {
+            step = CompletableFuture.failedFuture(e);
+        }
+        if (step.isDone()) {
+            record(action, !step.isCompletedExceptionally(), start);
+            return step;
+        }
+        return step.whenComplete((done, error) -> record(action, error == null, start));
+    }
+
+    private static void record(EndpointAction action, boolean success, long start) {
+        Timer timer = action.timer(success);
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CompletableFuture<Void> run(EndpointAction action, StringBuilder response) {
+        switch (action.getType()) {
+            case REQUEST:
+                log.debug("Making request to: {}", action.getUrl());
+                return Mono.from(httpClient.retrieve(action.getUrl())).toFuture()
+                    .thenAccept(body -> {
+                        if (body != null) {
+                            response.append(body);
+                        }
+                    });
+            case WAIT_RANDOM:
+                return waitRandom(action.getMaxWaitMillis());
+            case PARALLEL:
+                return runParallel(action, response);
+            default:
+                throw new IllegalStateException("Unhandled action type " + action.getType());
+        }
+    }
+
+    private CompletableFuture<Void> waitRandom(long maxWaitMillis) {
+        if (maxWaitMillis <= 0) {
+            return DONE;
+        }
+        long waitTime = ThreadLocalRandom.current().nextLong(0, maxWaitMillis);
+        log.debug("Waiting for {} ms", waitTime);
+        CompletableFuture<Void> waited = new CompletableFuture<>();
+        taskScheduler.schedule(Duration.ofMillis(waitTime), () -> waited.complete(null));
+        return waited;
+    }
+
+    private CompletableFuture<Void> runParallel(EndpointAction action, StringBuilder response) {
+        int branchCount = action.branchCount();
+        StringBuilder[] responses = new StringBuilder[branchCount];
+        CompletableFuture<?>[] branches = new CompletableFuture<?>[branchCount];
+        for (int i = 0; i < branchCount; i++) {
+            responses[i] = new StringBuilder();
+            branches[i] = runSequence(action.branch(i), 0, responses[i]);
+        }
+        return CompletableFuture.allOf(branches).thenRun(() -> {
+            for (StringBuilder branchResponse : responses) {
+                response.append(branchResponse);
+            }
+        });
+    }
+}
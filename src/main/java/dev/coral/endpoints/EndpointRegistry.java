@@ -0,0 +1,79 @@
+package dev.coral.endpoints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+import dev.coral.config.EndpointConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The dynamic endpoints of {@code coral.endpoints}, compiled once at startup into {@link EndpointPlan}s.
+ * Urls are matched case-insensitively like before: an exact hash lookup serves the common case and only a miss
+ * falls back to the lower-cased url. Invalid actions fail startup instead of the first request. The timers of every
+ * action are registered here too, so running a plan does not look them up.
+ */
+@Slf4j
+@Singleton
+public class EndpointRegistry {
+
+    private final Map<String, EndpointPlan> byUrl;
+    private final Map<String, EndpointPlan> byLowerCaseUrl;
+
+    @Inject
+    public EndpointRegistry(EndpointConfig endpointConfig, MeterRegistry meterRegistry) {
+        this(endpointConfig.getEndpoints(), meterRegistry);
+    }
+
+    EndpointRegistry(List<EndpointConfig.Endpoint> endpoints, MeterRegistry meterRegistry) {
+        Map<String, EndpointPlan> byUrl = new HashMap<>();
+        Map<String, EndpointPlan> byLowerCaseUrl = new LinkedHashMap<>();
+        if (endpoints != null) {
+            for (EndpointConfig.Endpoint endpoint : endpoints) {
+                EndpointPlan plan = compile(endpoint, meterRegistry);
+                // First definition wins, as with the previous linear scan, also over later ones differing in case
+                if (byLowerCaseUrl.putIfAbsent(plan.getUrl().toLowerCase(Locale.ROOT), plan) == null) {
+                    byUrl.put(plan.getUrl(), plan);
+                }
+            }
+        }
+        this.byUrl = Collections.unmodifiableMap(byUrl);
+        this.byLowerCaseUrl = Collections.unmodifiableMap(byLowerCaseUrl);
+        log.info("Compiled {} dynamic endpoints", byLowerCaseUrl.size());
+    }
+
+    /** @return the plan served at the url, or {@code null} if there is none */
+    public EndpointPlan find(String url) {
+        EndpointPlan plan = byUrl.get(url);
+        return plan != null ? plan : byLowerCaseUrl.get(url.toLowerCase(Locale.ROOT));
+    }
+
+    public Collection<EndpointPlan> getPlans() {
+        return byLowerCaseUrl.values();
+    }
+
+    private static EndpointPlan compile(EndpointConfig.Endpoint endpoint, MeterRegistry meterRegistry) {
+        List<EndpointAction> actions;
+        try {
+            List<Object> configured = endpoint.getActions();
+            actions = EndpointAction.parseAll(configured == null ? List.of() : configured);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid action in dynamic endpoint '" + endpoint.getName() + "': "
+                + e.getMessage(), e);
+        }
+        List<EndpointAction> timed = new ArrayList<>(actions.size());
+        for (EndpointAction action : actions) {
+            timed.add(action.timed(endpoint.getName(), meterRegistry));
+        }
+        return new EndpointPlan(endpoint.getName(), endpoint.getUrl(), timed);
+    }
+}
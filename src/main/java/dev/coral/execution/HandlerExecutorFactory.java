@@ -0,0 +1,90 @@
+package dev.coral.execution;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.coral.config.ExecutionConfig;
+import io.micronaut.context.annotation.Factory;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Provides the executor named {@value #HANDLERS} that blocking controllers run on via
+ * {@code @ExecuteOn(HandlerExecutorFactory.HANDLERS)}. Depending on {@code coral.execution.mode} it is either a
+ * fixed pool of {@code coral.execution.blocking-threads} platform threads or a virtual-thread-per-task executor.
+ * Micronaut's own {@code blocking} executor is not used, since on JDK 21+ it runs on virtual threads itself.
+ * <p>
+ * The project still targets Java 17, so the virtual-thread executor is looked up reflectively and the factory
+ * falls back to the platform-thread pool on older runtimes.
+ */
+@Slf4j
+@Factory
+public class HandlerExecutorFactory {
+
+    public static final String HANDLERS = "coral-handlers";
+
+    private volatile ExecutorService handlerExecutor;
+
+    @Singleton
+    @Named(HANDLERS)
+    ExecutorService handlerExecutor(ExecutionConfig config) {
+        if (config.getMode() == ExecutionConfig.Mode.VIRTUAL) {
+            Optional<ExecutorService> executor = newVirtualThreadExecutor("coral-handler-");
+            if (executor.isPresent()) {
+                log.info("Running request handlers on virtual threads");
+                handlerExecutor = executor.get();
+                return handlerExecutor;
+            }
+            log.warn("Virtual threads need Java 21+, running request handlers on platform threads (Java {})",
+                Runtime.version());
+        }
+        int threads = Math.max(1, config.getBlockingThreads());
+        log.info("Running request handlers on {} platform threads", threads);
+        handlerExecutor = newPlatformThreadExecutor("coral-handler-", threads);
+        return handlerExecutor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+    }
+
+    /**
+     * A fixed pool of daemon platform threads, named with the prefix and a counter. Tasks beyond the pool size
+     * queue for a thread.
+     */
+    public static ExecutorService newPlatformThreadExecutor(String namePrefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+
+    /**
+     * An executor that starts a new virtual thread, named with the prefix and a counter, per task, or empty if
+     * the runtime does not support virtual threads.
+     */
+    public static Optional<ExecutorService> newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return Optional.of((ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
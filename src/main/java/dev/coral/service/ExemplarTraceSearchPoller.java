@@ -0,0 +1,161 @@
+package dev.coral.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+import dev.coral.client.splunk.SingleFlight;
+import dev.coral.client.splunk.SplunkRequestScheduler;
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Lane;
+import dev.coral.client.splunk.SplunkTarget;
+import dev.coral.config.TraceSearchConfig;
+import dev.coral.utils.JsonFactories;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.TaskScheduler;
+import io.opentelemetry.context.Context;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import static dev.coral.utils.traces.GraphQLGenerator.generateGetTraceIdQuery;
+import static dev.coral.utils.traces.GraphQLGenerator.generateTraceSearchQuery;
+
+/**
+ * Runs exemplar trace searches without holding a thread per search. The job is started and polled with
+ * asynchronous client calls, and the polls are timed on the shared {@link TaskScheduler}. The delay is reset
+ * whenever {@code completedProcessingItems} advances and backs off exponentially while it stalls. The search
+ * completes with the first trace found, with an empty result once the job has processed every item, or with
+ * a {@link TimeoutException} when the deadline passes. Concurrent searches for the same org and service share one
+ * job. Polls run in the OpenTelemetry context the search was started in, so that they are traced and timed with it.
+ */
+@Slf4j
+@Singleton
+public class ExemplarTraceSearchPoller {
+
+    private static final String START_OPERATION = "StartExemplarTraceSearchJob";
+    private static final String GET_OPERATION = "GetExemplarTraceSearchJob";
+    private static final ObjectMapper MAPPER = new ObjectMapper(JsonFactories.newJsonFactory());
+
+    private final SplunkRequestScheduler requestScheduler;
+    private final TaskScheduler taskScheduler;
+    private final TraceSearchConfig config;
+    private final SingleFlight<String> searches = new SingleFlight<>();
+
+    @Inject
+    public ExemplarTraceSearchPoller(SplunkRequestScheduler requestScheduler,
+                                     @Named(TaskExecutors.SCHEDULED) TaskScheduler taskScheduler,
+                                     TraceSearchConfig config) {
+        this.requestScheduler = requestScheduler;
+        this.taskScheduler = taskScheduler;
+        this.config = config;
+    }
+
+    public CompletableFuture<Optional<String>> findTraceId(SplunkTarget target, String serviceName) {
+        return searches.executeAsync(target.getOrg() + '\u0000' + serviceName, () -> startSearch(target, serviceName));
+    }
+
+    private CompletableFuture<Optional<String>> startSearch(SplunkTarget target, String serviceName) {
+        long deadline = System.nanoTime() + config.getDeadline().toNanos();
+        Context context = Context.current();
+        return requestScheduler.executeAsync(target.getOrg(), Family.APM_GRAPHQL, Lane.INTERACTIVE,
+                () -> target.getClient().getTraceByServiceAsync(target.getToken(), START_OPERATION, generateTraceSearchQuery(serviceName)))
+            .thenApply(ExemplarTraceSearchPoller::parseJobId)
+            .thenCompose(jobId -> {
+                log.info("Started exemplar trace search job {} for service {}", jobId, serviceName);
+                Search search = new Search(target, jobId, deadline, context);
+                schedulePoll(search, config.getInitialPollDelay());
+                return search.result;
+            });
+    }
+
+    private void schedulePoll(Search search, Duration delay) {
+        if (System.nanoTime() + delay.toNanos() > search.deadline) {
+            search.result.completeExceptionally(new TimeoutException(
+                "Exemplar trace search job " + search.jobId + " did not finish before its deadline"));
+            return;
+        }
+        taskScheduler.schedule(delay, search.context.wrap(() -> poll(search, delay)));
+    }
+
+    private void poll(Search search, Duration delay) {
+        SplunkTarget target = search.target;
+        requestScheduler.executeAsync(target.getOrg(), Family.APM_GRAPHQL, Lane.INTERACTIVE,
+                () -> target.getClient().getTraceByServiceAsync(target.getToken(), GET_OPERATION, generateGetTraceIdQuery(search.jobId)))
+            .whenComplete((body, error) -> {
+                if (error != null) {
+                    search.result.completeExceptionally(error);
+                    return;
+                }
+                JsonNode job;
+                try {
+                    job = MAPPER.readTree(body).path("data").path("getExemplarSearch");
+                } catch (IOException e) {
+                    search.result.completeExceptionally(e);
+                    return;
+                }
+
+                for (JsonNode itemNode : job.path("results").path("items")) {
+                    String traceId = itemNode.path("item").path("traceId").asText(null);
+                    if (traceId != null) {
+                        search.result.complete(Optional.of(traceId));
+                        return;
+                    }
+                }
+
+                long completed = job.path("completedProcessingItems").asLong();
+                long total = job.path("totalItemsToProcess").asLong();
+                log.debug("Exemplar trace search job {} processed {}/{} items", search.jobId, completed, total);
+                if (total > 0 && completed >= total) {
+                    search.result.complete(Optional.empty());
+                    return;
+                }
+
+                Duration nextDelay = completed > search.lastCompleted
+                    ? config.getInitialPollDelay()
+                    : min(delay.multipliedBy(2), config.getMaxPollDelay());
+                search.lastCompleted = completed;
+                schedulePoll(search, nextDelay);
+            });
+    }
+
+    private static String parseJobId(String jobIdResponse) {
+        try {
+            JsonNode jobIdNode = MAPPER.readTree(jobIdResponse).path("data").path("startExemplarSearch").path("jobID");
+            if (jobIdNode.isMissingNode() || jobIdNode.isNull()) {
+                throw new IllegalStateException("No jobID in exemplar trace search response: " + jobIdResponse);
+            }
+            return jobIdNode.asText();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse exemplar trace search response", e);
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static class Search {
+        private final SplunkTarget target;
+        private final String jobId;
+        private final long deadline;
+        private final Context context;
+        private final CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        // Only touched by the single poll in flight for this search
+        private long lastCompleted = -1;
+
+        Search(SplunkTarget target, String jobId, long deadline, Context context) {
+            this.target = target;
+            this.jobId = jobId;
+            this.deadline = deadline;
+            this.context = context;
+        }
+    }
+}
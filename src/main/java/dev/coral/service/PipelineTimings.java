@@ -0,0 +1,295 @@
+package dev.coral.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+import dev.coral.client.splunk.SplunkCallClock;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-stage timings of one run of the Splunk collection pipeline. Stages overlap, so each stage reports
+ * its wall-clock span (first task start to last task end) as well as the summed time of its tasks.
+ * <p>
+ * Every task is traced as a span under the span of the run, and the Splunk calls it makes as spans under the task.
+ * A task's time is split into queueing (waiting for a stage thread and for admission by the request scheduler),
+ * upstream (Splunk API calls) and the rest. Tasks do not record what they waited for, so the critical path is
+ * approximated by walking back from the task that finished last to the latest task that had finished when it was
+ * submitted.
+ */
+public class PipelineTimings {
+
+    public enum Stage { TOPOLOGY, MTS, TIME_SERIES, EXPORT, TRACE_SEARCH }
+
+    public static final AttributeKey<String> ORG = AttributeKey.stringKey("coral.org");
+    public static final AttributeKey<String> SERVICE = AttributeKey.stringKey("coral.service");
+    public static final AttributeKey<String> METRIC = AttributeKey.stringKey("coral.metric");
+    public static final AttributeKey<Long> MTS = AttributeKey.longKey("coral.mts");
+    public static final AttributeKey<Long> POINTS = AttributeKey.longKey("coral.points");
+    private static final AttributeKey<String> RUN = AttributeKey.stringKey("coral.pipeline.run");
+    private static final AttributeKey<Long> QUEUED_MILLIS = AttributeKey.longKey("coral.queued_ms");
+    private static final AttributeKey<Long> UPSTREAM_MILLIS = AttributeKey.longKey("coral.upstream_ms");
+
+    private final String name;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<Stage, StageClock> clocks = new EnumMap<>(Stage.class);
+    private final Queue<TaskRecord> tasks = new ConcurrentLinkedQueue<>();
+    private final Tracer tracer;
+    private final io.opentelemetry.api.trace.Span span;
+    private final Context context;
+    private volatile long totalNanos = -1;
+
+    public PipelineTimings(Tracer tracer, String name) {
+        this.name = name;
+        this.tracer = tracer;
+        this.span = tracer.spanBuilder("coral.pipeline").setAttribute(RUN, name).startSpan();
+        this.context = Context.current().with(span);
+        for (Stage stage : Stage.values()) {
+            clocks.put(stage, new StageClock());
+        }
+    }
+
+    /** A task of the stage submitted now, e.g. right before it is handed to a stage executor. */
+    public Task task(Stage stage) {
+        return new Task(stage, Attributes.empty());
+    }
+
+    public Task task(Stage stage, Attributes attributes) {
+        return new Task(stage, attributes);
+    }
+
+    public <T> T record(Stage stage, Supplier<T> task) {
+        return task(stage).run(task);
+    }
+
+    public void record(Stage stage, Runnable task) {
+        task(stage).run(task);
+    }
+
+    /** Adds a count, such as the points a task received, to the span of the task running on this thread. */
+    public static void count(AttributeKey<Long> key, long value) {
+        io.opentelemetry.api.trace.Span.current().setAttribute(key, value);
+    }
+
+    public void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+        span.end();
+    }
+
+    public Report toReport() {
+        Map<Stage, long[]> critical = new EnumMap<>(Stage.class);
+        long criticalNanos = 0;
+        long criticalQueued = 0;
+        long criticalUpstream = 0;
+        for (TaskRecord task : criticalPath(new ArrayList<>(tasks))) {
+            long[] sums = critical.computeIfAbsent(task.stage, k -> new long[3]);
+            sums[0] += task.end - task.submitted;
+            sums[1] += task.queued;
+            sums[2] += task.upstream;
+            criticalNanos += task.end - task.submitted;
+            criticalQueued += task.queued;
+            criticalUpstream += task.upstream;
+        }
+        List<StageReport> stages = new ArrayList<>();
+        for (Map.Entry<Stage, StageClock> entry : clocks.entrySet()) {
+            stages.add(entry.getValue().toReport(entry.getKey(), critical.getOrDefault(entry.getKey(), new long[3])));
+        }
+        long total = totalNanos < 0 ? System.nanoTime() - startNanos : totalNanos;
+        return new Report(name, span.getSpanContext().getTraceId(), startedAtMillis, toMillis(total),
+            toMillis(criticalNanos), toMillis(criticalQueued), toMillis(criticalUpstream), stages);
+    }
+
+    @Override
+    public String toString() {
+        return toReport().toString();
+    }
+
+    /**
+     * Tasks on the critical path, the last to finish first. Each task's predecessor is the latest task that had
+     * finished by the time it was submitted.
+     */
+    static List<TaskRecord> criticalPath(List<TaskRecord> tasks) {
+        TaskRecord[] byEnd = tasks.toArray(new TaskRecord[0]);
+        Arrays.sort(byEnd, Comparator.comparingLong(task -> task.end));
+        List<TaskRecord> path = new ArrayList<>();
+        for (int i = byEnd.length - 1; i >= 0; i = lastEndedBy(byEnd, i, byEnd[i].submitted)) {
+            path.add(byEnd[i]);
+        }
+        return path;
+    }
+
+    /** Index of the last task before {@code limit} that ended by {@code time}, or -1. */
+    private static int lastEndedBy(TaskRecord[] byEnd, int limit, long time) {
+        int low = 0;
+        int high = limit - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (byEnd[mid].end <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /** One task of a stage, traced and timed from its submission. */
+    public final class Task {
+        private final Stage stage;
+        private final Attributes attributes;
+        private final long submittedNanos = System.nanoTime();
+
+        private Task(Stage stage, Attributes attributes) {
+            this.stage = stage;
+            this.attributes = attributes;
+        }
+
+        public <T> T run(Supplier<T> work) {
+            long start = System.nanoTime();
+            io.opentelemetry.api.trace.Span taskSpan = tracer
+                .spanBuilder("coral.pipeline." + stage.name().toLowerCase(Locale.ROOT))
+                .setParent(context)
+                .setAllAttributes(attributes)
+                .startSpan();
+            SplunkCallClock calls = new SplunkCallClock();
+            try (Scope scope = context.with(taskSpan).with(calls).makeCurrent()) {
+                return work.get();
+            } catch (RuntimeException | Error e) {
+                taskSpan.recordException(e);
+                taskSpan.setStatus(StatusCode.ERROR);
+                throw e;
+            } finally {
+                long end = System.nanoTime();
+                TaskRecord task = new TaskRecord(stage, submittedNanos - startNanos, start - startNanos,
+                    end - startNanos, start - submittedNanos + calls.queuedNanos(), calls.upstreamNanos());
+                taskSpan.setAttribute(QUEUED_MILLIS, toMillis(task.queued));
+                taskSpan.setAttribute(UPSTREAM_MILLIS, toMillis(task.upstream));
+                taskSpan.end();
+                tasks.add(task);
+                clocks.get(stage).add(task);
+            }
+        }
+
+        public void run(Runnable work) {
+            run(() -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    /** Times of a finished task in nanoseconds, relative to the start of the run. */
+    static final class TaskRecord {
+        private final Stage stage;
+        private final long submitted;
+        private final long start;
+        private final long end;
+        private final long queued;
+        private final long upstream;
+
+        TaskRecord(Stage stage, long submitted, long start, long end, long queued, long upstream) {
+            this.stage = stage;
+            this.submitted = submitted;
+            this.start = start;
+            this.end = end;
+            this.queued = queued;
+            this.upstream = upstream;
+        }
+
+        Stage stage() {
+            return stage;
+        }
+    }
+
+    private static class StageClock {
+        private final AtomicInteger tasks = new AtomicInteger();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong busy = new AtomicLong();
+        private final AtomicLong maxTask = new AtomicLong();
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong upstream = new AtomicLong();
+
+        void add(TaskRecord task) {
+            tasks.incrementAndGet();
+            firstStart.accumulateAndGet(task.start, Math::min);
+            lastEnd.accumulateAndGet(task.end, Math::max);
+            busy.addAndGet(task.end - task.start);
+            maxTask.accumulateAndGet(task.end - task.start, Math::max);
+            queued.addAndGet(task.queued);
+            upstream.addAndGet(task.upstream);
+        }
+
+        /** @param critical time on the critical path, of it queued and upstream */
+        StageReport toReport(Stage stage, long[] critical) {
+            int count = tasks.get();
+            if (count == 0) {
+                return new StageReport(stage.name(), 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+            }
+            return new StageReport(stage.name(), count, toMillis(firstStart.get()),
+                toMillis(lastEnd.get() - firstStart.get()), toMillis(busy.get()), toMillis(maxTask.get()),
+                toMillis(queued.get()), toMillis(upstream.get()),
+                toMillis(critical[0]), toMillis(critical[1]), toMillis(critical[2]));
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class Report {
+        private String run;
+        private String traceId;
+        private long startedAt;
+        private long totalMillis;
+        private long criticalPathMillis;
+        private long criticalQueuedMillis;
+        private long criticalUpstreamMillis;
+        private List<StageReport> stages;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class StageReport {
+        private String stage;
+        private int tasks;
+        private long offsetMillis;
+        private long wallMillis;
+        private long busyMillis;
+        private long maxTaskMillis;
+        private long queuedMillis;
+        private long upstreamMillis;
+        private long criticalMillis;
+        private long criticalQueuedMillis;
+        private long criticalUpstreamMillis;
+    }
+}
@@ -2,247 +2,735 @@ package dev.coral.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-
-import com.fasterxml.jackson.databind.JsonNode;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 
-import dev.coral.client.splunk.SplunkO11yHttpClient;
+import dev.coral.client.splunk.CachingSplunkO11yClient;
+import dev.coral.client.splunk.CachingSplunkO11yClient.Operation;
+import dev.coral.client.splunk.SplunkRequestScheduler.Lane;
+import dev.coral.client.splunk.SplunkTarget;
+import dev.coral.client.splunk.SplunkTargets;
+import dev.coral.config.PipelineConfig;
+import dev.coral.config.SnapshotConfig;
+import dev.coral.config.TimeSeriesConfig;
 import dev.coral.model.SplunkMTS;
 import dev.coral.model.SplunkTopology;
 import dev.coral.utils.metrics.MTSQueryGenerator;
 import dev.coral.utils.metrics.TimeSeriesWindowQueryGenerator;
+import dev.coral.utils.traces.ExitSpanExtractor;
+import dev.coral.utils.traces.SpanIndex;
+import dev.coral.service.PipelineTimings.Stage;
+import dev.coral.store.MtsCatalog;
+import dev.coral.store.SplunkSnapshot;
+import dev.coral.store.TimeSeriesColumn;
+import dev.coral.store.TimeSeriesSlice;
+import dev.coral.store.TimeSeriesStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.event.StartupEvent;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.micronaut.runtime.event.annotation.EventListener;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
-
-import static dev.coral.utils.traces.GraphQLGenerator.generateGetTraceIdQuery;
-import static dev.coral.utils.traces.GraphQLGenerator.generateTraceSearchQuery;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Singleton
 public class SplunkO11yDataFetcherService {
 
-    private final SplunkO11yHttpClient splunkO11yHttpClient;
-    private final String SFX_TOKEN;
-    private final String REALM;
-    private SplunkTopology.SplunkTopologyData splunkTopologyData;
-    private Map<String, Set<String>> allMTSs; // Service to MetricName map
-    private Map<String, Map<String, String>> allSplunkData; //Service to metricName to Data map
+    private final SplunkTargets splunkTargets;
+    private final CachingSplunkO11yClient cachingSplunkO11yClient;
+    private final ExemplarTraceSearchPoller exemplarTraceSearchPoller;
+    private final Map<String, SplunkTopology.SplunkTopologyData> topologies = new ConcurrentHashMap<>(); //Org to topology
+    private final MtsCatalog mtsCatalog;
+    private final TimeSeriesStore timeSeriesStore; //Org to service to metricName to tsid to Data
+    private final ExecutorService mtsExecutor;
+    private final ExecutorService timeSeriesExecutor;
+    private final ExecutorService exportExecutor;
+    private final SnapshotConfig snapshotConfig;
+    private final TimeSeriesConfig timeSeriesConfig;
+    private final int mtsPageSize;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final int profileHistory;
+    private final String exportDir;
+    private final Deque<PipelineTimings.Report> profiles = new ConcurrentLinkedDeque<>(); //Newest first
 
     @Inject
-    public SplunkO11yDataFetcherService(SplunkO11yHttpClient splunkO11yHttpClient) {
-        this.splunkO11yHttpClient = splunkO11yHttpClient;
-        this.SFX_TOKEN = System.getenv("SIGNALFX_API_TOKEN");
-        this.REALM = System.getenv("REALM");
-        this.allMTSs = new HashMap<>();
-        this.allSplunkData = new HashMap<>();
+    public SplunkO11yDataFetcherService(SplunkTargets splunkTargets,
+                                        CachingSplunkO11yClient cachingSplunkO11yClient,
+                                        ExemplarTraceSearchPoller exemplarTraceSearchPoller,
+                                        TimeSeriesStore timeSeriesStore,
+                                        MtsCatalog mtsCatalog,
+                                        PipelineConfig pipelineConfig,
+                                        SnapshotConfig snapshotConfig,
+                                        TimeSeriesConfig timeSeriesConfig,
+                                        MeterRegistry meterRegistry,
+                                        OpenTelemetry openTelemetry) {
+        this.splunkTargets = splunkTargets;
+        this.cachingSplunkO11yClient = cachingSplunkO11yClient;
+        this.exemplarTraceSearchPoller = exemplarTraceSearchPoller;
+        this.mtsCatalog = mtsCatalog;
+        this.timeSeriesStore = timeSeriesStore;
+        this.mtsExecutor = newStageExecutor("splunk-mts", pipelineConfig.getMtsConcurrency());
+        this.timeSeriesExecutor = newStageExecutor("splunk-timeseries", pipelineConfig.getTimeSeriesConcurrency());
+        this.exportExecutor = newStageExecutor("splunk-export", pipelineConfig.getExportConcurrency());
+        this.snapshotConfig = snapshotConfig;
+        this.timeSeriesConfig = timeSeriesConfig;
+        this.mtsPageSize = Math.max(1, pipelineConfig.getMtsPageSize());
+        this.meterRegistry = meterRegistry;
+        this.tracer = openTelemetry.getTracer("dev.coral.pipeline");
+        this.profileHistory = Math.max(1, pipelineConfig.getProfileHistory());
+        this.exportDir = pipelineConfig.getExportDir();
     }
 
-    public String getTraceId(String serviceName) {
-
-        String jobId = getJobId(serviceName);
+    /**
+     * Warm-starts from the newest readable snapshot: topologies and MTS catalog are restored and the time-series
+     * columns are served from the mapped snapshot until they are refreshed. A snapshot that cannot be restored is
+     * logged and the service starts empty instead of failing startup.
+     */
+    @EventListener
+    void restoreLatestSnapshot(StartupEvent event) {
+        if (!snapshotConfig.isEnabled()) {
+            return;
+        }
         try {
-            Thread.sleep(25000);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            long start = System.nanoTime();
+            Optional<SplunkSnapshot> latest = SplunkSnapshot.readLatest(Paths.get(snapshotConfig.getDir()));
+            if (latest.isEmpty()) {
+                return;
+            }
+            SplunkSnapshot snapshot = latest.get();
+            topologies.putAll(snapshot.getTopologies());
+            mtsCatalog.addAll(snapshot.getCatalog());
+            timeSeriesStore.restore(snapshot.getSeries());
+            log.info("Restored Splunk snapshot taken at {} in {} ms", snapshot.getCreatedAt(),
+                (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore Splunk snapshot from {}", snapshotConfig.getDir(), e);
         }
-        String body = generateGetTraceIdQuery(jobId);
-        String traceIdResponse = splunkO11yHttpClient.getTraceByService(SFX_TOKEN, "GetExemplarTraceSearchJob", body);
-        log.info("get job response: {}", traceIdResponse);
+    }
 
+    public void exportSnapshot() {
+        if (!snapshotConfig.isEnabled()) {
+            return;
+        }
         try {
-            // Create ObjectMapper instance
-            ObjectMapper objectMapper = new ObjectMapper();
-
-            // Parse JSON payload into JsonNode
-            JsonNode rootNode = objectMapper.readTree(traceIdResponse);
-            JsonNode itemsNode = rootNode.path("data").path("getExemplarSearch").path("results").path("items");
-
-            // Iterate over the items and extract traceId
-            for (JsonNode itemNode : itemsNode) {
-                JsonNode traceItemNode = itemNode.path("item");
-                String traceId = traceItemNode.path("traceId").asText();
-                System.out.println("Trace ID: " + traceId);
-                return traceId;
-            }
+            Path snapshot = SplunkSnapshot.write(Paths.get(snapshotConfig.getDir()), snapshotConfig.getRetain(),
+                new LinkedHashMap<>(topologies), mtsCatalog, timeSeriesStore.view());
+            log.info("Splunk snapshot written to {}", snapshot);
         } catch (IOException e) {
-            log.error("Could not get JobId to get traces");
-            return "Could not get JobId to get traces";
+            log.error("Could not write Splunk snapshot", e);
         }
-        return "Could not find trace";
     }
 
-    public String getJobId(String serviceName) {
+    @PreDestroy
+    void shutdown() {
+        mtsExecutor.shutdownNow();
+        timeSeriesExecutor.shutdownNow();
+        exportExecutor.shutdownNow();
+    }
 
-        String body = generateTraceSearchQuery(serviceName);
-        String jobIdResponse = splunkO11yHttpClient.getTraceByService(SFX_TOKEN, "StartExemplarTraceSearchJob", body);
-        log.info("Get Job response: {}", jobIdResponse);
-        try {
-            // Create ObjectMapper instance
-            ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Finds the trace id of an exemplar trace of the service without blocking a thread while the
+     * search job runs. Methods taking an {@code org} use the default target when it is {@code null}.
+     */
+    public CompletableFuture<String> getTraceIdAsync(String org, String serviceName) {
+        return exemplarTraceSearchPoller.findTraceId(splunkTargets.get(org), serviceName)
+            .handle((traceId, e) -> {
+                if (e != null) {
+                    log.error("Could not get trace for service {}", serviceName, e);
+                    return "Could not get JobId to get traces";
+                }
+                log.info("Trace ID for service {}: {}", serviceName, traceId);
+                return traceId.orElse("Could not find trace");
+            });
+    }
 
-            // Parse JSON payload
-            JsonNode rootNode = objectMapper.readTree(jobIdResponse);
-            JsonNode jobIdNode = rootNode.path("data").path("startExemplarSearch").path("jobID");
+    public String getTraceId(String org, String serviceName) {
+        return getTraceIdAsync(org, serviceName).join();
+    }
 
-            // Get the jobID as a string
-            String jobID = jobIdNode.asText();
+    /**
+     * Exit span of an exemplar trace of the service, or {@code null} when the search finds no trace. A failed search
+     * fails the future; no trace is fetched in either case.
+     */
+    public CompletableFuture<Span> getExitSpanForServiceAsync(String org, String serviceName) {
+        SplunkTarget target = splunkTargets.get(org);
+        Context context = Context.current();
+        return exemplarTraceSearchPoller.findTraceId(target, serviceName)
+            .thenCompose(context.wrapFunction(traceId -> {
+                if (traceId.isEmpty()) {
+                    log.info("No exemplar trace found for service {}", serviceName);
+                    return CompletableFuture.<Span>completedFuture(null);
+                }
+                return cachingSplunkO11yClient.getRawTraceByIdAsync(target, traceId.get())
+                    .thenApply(trace -> extractExitSpan(trace, serviceName));
+            }));
+    }
+
+    public Span getExitSpanForService(String org, String serviceName) {
+        return getExitSpanForServiceAsync(org, serviceName).join();
+    }
 
-            // Print the jobID
-            System.out.println("Job ID: " + jobID);
-            return jobID;
+    public Span getExistSpanFromTraceAPI(String org, String traceId) {
+        return extractExitSpan(cachingSplunkO11yClient.getRawTraceById(splunkTargets.get(org), traceId));
+    }
+
+    public Span getExistSpanFromLocalTrace() throws IOException {
+        return ExitSpanExtractor.findExitSpan(new File("src/main/resources/json/trace.json"));
+    }
+
+    /**
+     * Exit span of an already materialized trace, see {@link SpanIndex#exitSpan()}.
+     */
+    public Span findExitSpanInTrace(List<Span> trace) {
+        return SpanIndex.of(trace).exitSpan();
+    }
+
+    private static Span extractExitSpan(byte[] trace) {
+        try {
+            return ExitSpanExtractor.findExitSpan(trace);
         } catch (IOException e) {
-            log.error("Could not get JobId to get traces");
-            return "Could not get JobId to get traces";
+            throw new IllegalStateException("Could not parse trace", e);
         }
     }
 
-    public Span getExitSpanForService(String serviceName) {
-        String traceId = getTraceId(serviceName);
-        return getExistSpanFromTraceAPI(traceId);
+    /** Exit span of the service in the trace, see {@link SpanIndex#exitSpan(String)}. */
+    private static Span extractExitSpan(byte[] trace, String serviceName) {
+        try {
+            return ExitSpanExtractor.findExitSpan(trace, serviceName);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse trace", e);
+        }
     }
 
-    public Span getExistSpanFromTraceAPI(String traceId) {
-        List<Span> trace = this.getTrace(traceId);
-        return findExitSpanInTrace(trace);
+    /**
+     * All MTS of the service in one response, collected from {@link #getMTSPages(String, String)}. Prefer the pages
+     * where possible; a busy service has more MTS than fit comfortably in memory or in one HTTP response.
+     */
+    public SplunkMTS getMTS(String org, String serviceName) {
+        return mtsPages(splunkTargets.get(org), serviceName, null, Lane.INTERACTIVE)
+            .reduce(new SplunkMTS(0, false, new ArrayList<>()), (all, page) -> {
+                all.setCount(page.getCount());
+                all.setPartialCount(page.isPartialCount());
+                if (page.getResults() != null) {
+                    all.getResults().addAll(page.getResults());
+                }
+                return all;
+            })
+            .toFuture()
+            .join();
     }
 
-    private List<Span> getTrace(String traceID) {
-        return splunkO11yHttpClient.getTraceById(SFX_TOKEN, traceID);
+    /**
+     * The MTS of the service as pages of at most {@code coral.pipeline.mts-page-size} results. Each page is requested
+     * on the MTS stage executor once the previous one has arrived, so discovery holds one page at a time.
+     */
+    public Publisher<SplunkMTS> getMTSPages(String org, String serviceName) {
+        return mtsPages(splunkTargets.get(org), serviceName, null, Lane.INTERACTIVE);
     }
 
-    public Span getExistSpanFromLocalTrace() throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        File file = new File("src/main/resources/json/trace.json");
-        List<Span> traceFromLocal = Arrays.asList(objectMapper.readValue(file, Span[].class));
-        return findExitSpanInTrace(traceFromLocal);
+    private Flux<SplunkMTS> mtsPages(SplunkTarget target, String serviceName, PipelineTimings timings, Lane lane) {
+        return Flux.defer(() -> {
+            String query = MTSQueryGenerator.generateQueryForServiceAt(serviceName, cachingSplunkO11yClient.alignedNow(Operation.MTS));
+            log.info("Query: {}", query);
+            AtomicLong fetched = new AtomicLong();
+            return fetchMTSPage(target, serviceName, query, 0, timings, lane)
+                .expand(page -> {
+                    int size = page.getResults() == null ? 0 : page.getResults().size();
+                    long offset = fetched.addAndGet(size);
+                    boolean more = size == mtsPageSize && (page.getCount() <= 0 || offset < page.getCount());
+                    return more ? fetchMTSPage(target, serviceName, query, offset, timings, lane) : Mono.empty();
+                });
+        });
     }
 
-    private Span findExitSpanInTrace(List<Span> trace) {
-        return trace.stream().max(Comparator.comparing(Span::getStartTime)).get();
+    private Mono<SplunkMTS> fetchMTSPage(SplunkTarget target, String serviceName, String query, long offset,
+                                         PipelineTimings timings, Lane lane) {
+        return Mono.fromFuture(() -> {
+            PipelineTimings.Task task = task(timings, Stage.MTS, target, serviceName, null);
+            return CompletableFuture.supplyAsync(() -> run(task, () -> {
+                SplunkMTS page = cachingSplunkO11yClient.getMtsPage(target, query, offset, mtsPageSize, lane);
+                PipelineTimings.count(PipelineTimings.MTS,
+                    page == null || page.getResults() == null ? 0 : page.getResults().size());
+                return page;
+            }), mtsExecutor);
+        });
     }
 
-    public SplunkMTS getMTS(String serviceName) {
-        String query = MTSQueryGenerator.generateQueryForService(serviceName);
-        log.info("Query: {}", query);
-        SplunkMTS resp = splunkO11yHttpClient.getMts(SFX_TOKEN, query, 1);
-        return splunkO11yHttpClient.getMts(SFX_TOKEN, query, resp.getCount());
+    public SplunkTopology getTopology(String org) {
+        return getTopology(splunkTargets.get(org), Lane.INTERACTIVE);
     }
 
-    public SplunkTopology getTopology() {
-        String body = String.format("{ \"timeRange\": \"%s\"}", MTSQueryGenerator.generateTimeRange(15));
-        SplunkTopology resp = splunkO11yHttpClient.getSplunkTopology(SFX_TOKEN, body);
-        splunkTopologyData = resp.getData();
+    private SplunkTopology getTopology(SplunkTarget target, Lane lane) {
+        String timeRange = MTSQueryGenerator.generateTimeRange(15, cachingSplunkO11yClient.alignedNow(Operation.TOPOLOGY));
+        String body = String.format("{ \"timeRange\": \"%s\"}", timeRange);
+        SplunkTopology resp = cachingSplunkO11yClient.getSplunkTopology(target, body, lane);
+        if (resp != null && resp.getData() != null) {
+            topologies.put(target.getOrg(), resp.getData());
+        }
         return resp;
     }
 
-    public String getTimeSeriesWindow(String serviceName, String metricName) {
+    public String getTimeSeriesWindow(String org, String serviceName, String metricName) {
+        long to = cachingSplunkO11yClient.alignedNow(Operation.TIME_SERIES);
+        return getTimeSeriesWindow(splunkTargets.get(org), serviceName, metricName,
+            to - timeSeriesConfig.getWindow().toMillis(), to, Lane.INTERACTIVE);
+    }
+
+    private String getTimeSeriesWindow(SplunkTarget target, String serviceName, String metricName, long from, long to,
+                                       Lane lane) {
         String query = TimeSeriesWindowQueryGenerator.generateQueryForService(serviceName, metricName);
-        long to = System.currentTimeMillis();
-        long from = to - (60 * 15 * 1000);
-        long resolution = 1000;
-        log.info("Query: {}", query);
-        String resp = splunkO11yHttpClient.getTimeSeriesWindow(SFX_TOKEN, query, from, to, resolution);
-        log.info("Response: {}", resp);
+        long resolution = timeSeriesConfig.getResolution().toMillis();
+        log.info("Query: {} [{}, {}] in org {}", query, from, to, target.getOrg());
+        String resp = cachingSplunkO11yClient.getTimeSeriesWindow(target, query, from, to, resolution, lane);
+        log.debug("Response: {}", resp);
         return resp;
     }
 
+    /**
+     * Fetches the time-series window of a metric and merges it into the store, whose per-MTS rings and rollups
+     * bound how long points are kept. In incremental mode only the points since the last stored one are requested, see
+     * {@link TimeSeriesStore#refreshStart}; the new tsids are those added by the discovery run of {@code generation}.
+     *
+     * @return the number of points received
+     */
+    public int loadTimeSeriesWindow(SplunkTarget target, String serviceName, String metricName, int generation,
+                                    Lane lane) {
+        return loadTimeSeriesWindow(target, serviceName, metricName, generation, lane, null);
+    }
+
+    /**
+     * As {@link #loadTimeSeriesWindow(SplunkTarget, String, String, int, Lane)}. When a fetch starts after the
+     * beginning of the window, the new tsids it started from are recorded in {@code incremental} under the metric
+     * name, so that tsids the discovery adds afterwards can be {@link #backfill backfilled}.
+     */
+    private int loadTimeSeriesWindow(SplunkTarget target, String serviceName, String metricName, int generation,
+                                     Lane lane, Map<String, Set<String>> incremental) {
+        String org = target.getOrg();
+        long to = cachingSplunkO11yClient.alignedNow(Operation.TIME_SERIES);
+        long windowStart = to - timeSeriesConfig.getWindow().toMillis();
+        long from = windowStart;
+        if (timeSeriesConfig.isIncremental()) {
+            Set<String> newTsids = mtsCatalog.newTsids(org, serviceName, metricName, generation);
+            from = timeSeriesStore.refreshStart(org, serviceName, metricName, windowStart, newTsids);
+            if (from > windowStart && incremental != null) {
+                incremental.put(metricName, newTsids);
+            }
+        }
+        return mergeTimeSeriesWindow(target, serviceName, metricName, from, to, lane);
+    }
+
+    /** Fetches the whole time-series window of a metric, whatever is already stored, and merges it into the store. */
+    private int loadWholeTimeSeriesWindow(SplunkTarget target, String serviceName, String metricName, Lane lane) {
+        long to = cachingSplunkO11yClient.alignedNow(Operation.TIME_SERIES);
+        return mergeTimeSeriesWindow(target, serviceName, metricName, to - timeSeriesConfig.getWindow().toMillis(), to,
+            lane);
+    }
+
+    private int mergeTimeSeriesWindow(SplunkTarget target, String serviceName, String metricName, long from, long to,
+                                      Lane lane) {
+        String org = target.getOrg();
+        String resp = getTimeSeriesWindow(target, serviceName, metricName, from, to, lane);
+        if (resp == null) {
+            return 0;
+        }
+        try {
+            int points = timeSeriesStore.mergeWindow(org, serviceName, metricName, resp);
+            PipelineTimings.count(PipelineTimings.POINTS, points);
+            meterRegistry.counter("splunk.timeseries.points", "org", org).increment(points);
+            return points;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not parse time series of " + serviceName + "/" + metricName, e);
+        }
+    }
+
     public String getAllMTS() {
-        if (splunkTopologyData == null) {
+        if (topologies.isEmpty()) {
             return "Fetch topology data first";
         }
 
-        for (SplunkTopology.Node node: splunkTopologyData.getNodes()) {
-            String serviceName = node.getServiceName();
-//            if (!serviceName.equals("analytics")) {
-//                continue;
-//            }
-            try {
-                SplunkMTS splunkMTS = getMTS(serviceName);
-                Set<String> metricsForAService = allMTSs.getOrDefault(serviceName, new HashSet<>());
-                for (SplunkMTS.Result singleMTS: splunkMTS.getResults()) {
-                    metricsForAService.add(singleMTS.getMetric());
-                }
-                allMTSs.put(serviceName, metricsForAService);
-            } catch (Exception e) {
-                log.warn("Continuing while getting exception finding metrics for service {}", serviceName);
+        int generation = mtsCatalog.newGeneration();
+        List<CompletableFuture<Void>> discoveries = new ArrayList<>();
+        Map<String, Set<String>> servicesByOrg = new LinkedHashMap<>();
+        for (SplunkTarget target: splunkTargets.all()) {
+            SplunkTopology.SplunkTopologyData topology = topologies.get(target.getOrg());
+            if (topology == null) {
+                continue;
             }
+            Set<String> failed = ConcurrentHashMap.newKeySet();
+            List<CompletableFuture<Void>> services = new ArrayList<>();
+            for (SplunkTopology.Node node: topology.getNodes()) {
+                services.add(discoverMetrics(target, node.getServiceName(), generation, null, metricName -> { })
+                    .thenAccept(completed -> {
+                        if (!completed) {
+                            failed.add(node.getServiceName());
+                        }
+                    }));
+            }
+            discoveries.add(CompletableFuture.allOf(services.toArray(new CompletableFuture[0]))
+                .thenRun(() -> expireUnseen(target.getOrg(), generation, failed)));
         }
+        CompletableFuture.allOf(discoveries.toArray(new CompletableFuture[0])).join();
 
-        log.info("All MTSs: {}", allMTSs);
-        return allMTSs.keySet().toString();
+        log.info("MTS catalog: {} MTS, {} distinct strings", mtsCatalog.size(), mtsCatalog.dictionarySize());
+        for (SplunkTarget target: splunkTargets.all()) {
+            servicesByOrg.put(target.getOrg(), mtsCatalog.services(target.getOrg()));
+        }
+        return servicesByOrg.toString();
     }
 
     public String getAllTimeSeries() {
-        if (allMTSs.isEmpty()) {
+        if (mtsCatalog.isEmpty()) {
             return "Fetch all MTSs first";
         }
 
-        for (String serviceName: allMTSs.keySet()) {
-            Map<String, String> metricToData = allSplunkData.getOrDefault(serviceName, new HashMap<>());
-            for (String metricName: allMTSs.get(serviceName)) {
-                String timeSeriesData = getTimeSeriesWindow(serviceName, metricName);
-
-                metricToData.put(metricName, timeSeriesData);
+        int generation = mtsCatalog.currentGeneration();
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        for (SplunkTarget target: splunkTargets.all()) {
+            for (Map.Entry<String, Set<String>> entry: mtsCatalog.metricsByService(target.getOrg()).entrySet()) {
+                String serviceName = entry.getKey();
+                for (String metricName: entry.getValue()) {
+                    fetches.add(fetchTimeSeries(target, serviceName, metricName, null,
+                        () -> loadTimeSeriesWindow(target, serviceName, metricName, generation, Lane.BULK)));
+                }
             }
-            allSplunkData.put(serviceName, metricToData);
         }
+        CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0])).join();
 
-        log.info(allSplunkData.toString());
+        log.info("All time series: {}", timeSeriesStore.summary());
         return "All Time Series Data Fetched";
     }
 
+    /**
+     * Discovers the MTS of a service page by page into the {@link MtsCatalog}, as seen in {@code generation}.
+     * {@code onMetric} is called once per metric name, in page order, as soon as the page naming it arrives. Failures
+     * are logged and end the discovery with the metrics found so far, so that one broken service does not stop the
+     * rest of the collection.
+     *
+     * @return whether every page of the service was discovered
+     */
+    private CompletableFuture<Boolean> discoverMetrics(SplunkTarget target, String serviceName, int generation,
+                                                       PipelineTimings timings, Consumer<String> onMetric) {
+        Set<String> discovered = new LinkedHashSet<>();
+        return mtsPages(target, serviceName, timings, Lane.BULK)
+            .filter(page -> page.getResults() != null)
+            .doOnNext(page -> {
+                meterRegistry.counter("splunk.mts.fetched", "org", target.getOrg()).increment(page.getResults().size());
+                for (SplunkMTS.Result singleMTS: page.getResults()) {
+                    mtsCatalog.add(target.getOrg(), serviceName, singleMTS, generation);
+                    String metricName = singleMTS.getMetric();
+                    if (metricName != null && discovered.add(metricName)) {
+                        onMetric.accept(metricName);
+                    }
+                }
+            })
+            .then()
+            .toFuture()
+            .handle((done, e) -> {
+                if (e != null) {
+                    log.warn("Continuing while getting exception finding metrics for service {} in org {}",
+                        serviceName, target.getOrg(), e);
+                }
+                return e == null;
+            });
+    }
+
+    /**
+     * Expires the MTS of the org that a discovery run did not see again, with their stored series. MTS of services
+     * whose discovery failed are kept.
+     */
+    private void expireUnseen(String org, int generation, Set<String> failedServices) {
+        List<MtsCatalog.Mts> expired = mtsCatalog.expire(org, generation, failedServices);
+        for (MtsCatalog.Mts mts : expired) {
+            timeSeriesStore.remove(org, mts.getService(), mts.getMetric(), mts.getTsid());
+        }
+        if (!expired.isEmpty()) {
+            log.info("Expired {} MTS of org {} that were not discovered again", expired.size(), org);
+        }
+    }
+
+    /**
+     * Runs a time-series fetch of a metric on the time-series stage executor.
+     */
+    private CompletableFuture<Void> fetchTimeSeries(SplunkTarget target, String serviceName, String metricName,
+                                                    PipelineTimings timings, Supplier<Integer> load) {
+        PipelineTimings.Task task = task(timings, Stage.TIME_SERIES, target, serviceName, metricName);
+        return CompletableFuture.runAsync(() -> run(task, load), timeSeriesExecutor)
+            .exceptionally(e -> {
+                log.warn("Continuing while getting exception fetching time series {} for service {} in org {}",
+                    metricName, serviceName, target.getOrg(), e);
+                return null;
+            });
+    }
+
+    /**
+     * Fetches the whole window again for the metrics of a service whose incremental fetch started before the discovery
+     * had added all of the metric's new tsids, since those were only fetched from the last stored point on.
+     */
+    private CompletableFuture<Void> backfill(SplunkTarget target, String serviceName, int generation,
+                                             Map<String, Set<String>> incremental, PipelineTimings timings) {
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : incremental.entrySet()) {
+            String metricName = entry.getKey();
+            Set<String> newTsids = mtsCatalog.newTsids(target.getOrg(), serviceName, metricName, generation);
+            if (!entry.getValue().containsAll(newTsids)) {
+                fetches.add(fetchTimeSeries(target, serviceName, metricName, timings,
+                    () -> loadWholeTimeSeriesWindow(target, serviceName, metricName, Lane.BULK)));
+            }
+        }
+        return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]));
+    }
+
+    /** A task of the run submitted now, or {@code null} outside of a run. */
+    private static PipelineTimings.Task task(PipelineTimings timings, Stage stage, SplunkTarget target,
+                                             String serviceName, String metricName) {
+        if (timings == null) {
+            return null;
+        }
+        AttributesBuilder attributes = Attributes.builder().put(PipelineTimings.ORG, target.getOrg());
+        if (serviceName != null) {
+            attributes.put(PipelineTimings.SERVICE, serviceName);
+        }
+        if (metricName != null) {
+            attributes.put(PipelineTimings.METRIC, metricName);
+        }
+        return timings.task(stage, attributes.build());
+    }
+
+    private static <T> T run(PipelineTimings.Task task, Supplier<T> work) {
+        return task == null ? work.get() : task.run(work);
+    }
+
+    public PipelineTimings.Report getLastPipelineTimings() {
+        return profiles.peekFirst();
+    }
+
+    /** Profiles of the last finished collection runs, newest first. */
+    public List<PipelineTimings.Report> getPipelineProfiles(int runs) {
+        List<PipelineTimings.Report> recent = new ArrayList<>();
+        for (PipelineTimings.Report report : profiles) {
+            if (recent.size() >= runs) {
+                break;
+            }
+            recent.add(report);
+        }
+        return recent;
+    }
+
+    private void finish(PipelineTimings timings) {
+        timings.finish();
+        PipelineTimings.Report report = timings.toReport();
+        profiles.addFirst(report);
+        while (profiles.size() > profileHistory) {
+            profiles.pollLast();
+        }
+        log.info("Splunk data pipeline finished: {}", report);
+    }
+
+    /**
+     * Writes the stored time series as {@code {org: {service: {metric: {tsid: [[timestamp, value], ...]}}}}},
+     * streaming straight from the columns.
+     */
     public void exportAllSplunkDataToFile() {
-        File outputFile = new File("src/main/resources/data/allSplunkMetrics.json");
+        File outputFile = exportFile("allSplunkMetrics.json");
         ObjectMapper objectMapper = new ObjectMapper();
-        log.info("All Splunk data: {}", allSplunkData);
-        try {
-            objectMapper.writeValue(outputFile, allSplunkData);
-            System.out.println("Map data exported to " + outputFile.getAbsolutePath());
+        log.info("All Splunk data: {}", timeSeriesStore.summary());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputFile, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> org : timeSeriesStore.view().entrySet()) {
+                generator.writeObjectFieldStart(org.getKey());
+                for (Map.Entry<String, Map<String, Map<String, TimeSeriesColumn>>> service : org.getValue().entrySet()) {
+                    generator.writeObjectFieldStart(service.getKey());
+                    for (Map.Entry<String, Map<String, TimeSeriesColumn>> metric : service.getValue().entrySet()) {
+                        generator.writeObjectFieldStart(metric.getKey());
+                        for (Map.Entry<String, TimeSeriesColumn> mts : metric.getValue().entrySet()) {
+                            TimeSeriesSlice points = mts.getValue().slice(Long.MIN_VALUE, Long.MAX_VALUE);
+                            generator.writeArrayFieldStart(mts.getKey());
+                            for (int i = 0; i < points.size(); i++) {
+                                generator.writeStartArray();
+                                generator.writeNumber(points.getTimestamps()[i]);
+                                generator.writeNumber(points.getValues()[i]);
+                                generator.writeEndArray();
+                            }
+                            generator.writeEndArray();
+                        }
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            log.info("Splunk data exported to {}", outputFile.getAbsolutePath());
         } catch (IOException e) {
-            log.error("Could not write Splunk data to file");
+            log.error("Could not write Splunk data to {}", outputFile.getAbsolutePath(), e);
         }
     }
 
+    /**
+     * Writes the topology of every org as {@code {org: topology}}.
+     */
     public void exportTopologyToFile() {
-        File outputFile = new File("src/main/resources/data/splunkTopology.json");
+        File outputFile = exportFile("splunkTopology.json");
         ObjectMapper objectMapper = new ObjectMapper();
         try {
-            objectMapper.writeValue(outputFile, splunkTopologyData);
-            System.out.println("Map data exported to " + outputFile.getAbsolutePath());
+            objectMapper.writeValue(outputFile, new TreeMap<>(topologies));
+            log.info("Splunk topology exported to {}", outputFile.getAbsolutePath());
         } catch (IOException e) {
-            log.error("Could not write Splunk Topology to file");
+            log.error("Could not write Splunk topology to {}", outputFile.getAbsolutePath(), e);
         }
     }
 
     public void exportExitSpanDataToFile(Span exitSpan) {
-        File outputFile = new File("src/main/resources/data/exitSpan.json");
+        File outputFile = exportFile("exitSpan.json");
         ObjectMapper objectMapper = new ObjectMapper();
         try {
             objectMapper.writeValue(outputFile, exitSpan);
-            System.out.println("Map data exported to " + outputFile.getAbsolutePath());
+            log.info("Exit span exported to {}", outputFile.getAbsolutePath());
         } catch (IOException e) {
-            log.error("Could not write exit span data to file");
+            log.error("Could not write exit span data to {}", outputFile.getAbsolutePath(), e);
+        }
+    }
+
+    /** A file in {@code coral.pipeline.export-dir}, which is created if needed. */
+    private File exportFile(String name) {
+        File directory = new File(exportDir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Could not create export directory {}", directory.getAbsolutePath());
+        }
+        return new File(directory, name);
+    }
+
+    /**
+     * Collects topology, MTS lists and time-series windows as a pipeline: every metric's time-series
+     * fetch starts as soon as the MTS page naming it arrives, with each stage bounded by {@link PipelineConfig}.
+     * Its Splunk calls wait in the bulk lane of the request scheduler, behind interactive requests.
+     * <p>
+     * All {@link SplunkTargets targets} are collected in parallel into the same store, tagged by org. An org whose
+     * topology cannot be fetched is logged and skipped so that the others are still collected.
+     */
+    public Map<String, Map<String, Map<String, Integer>>> fetchAllSplunkData() {
+        PipelineTimings timings = new PipelineTimings(tracer, "fetchAllSplunkData");
+        try {
+            collect(timings);
+        } finally {
+            finish(timings);
         }
+        return timeSeriesStore.summary();
     }
 
-    public Map<String, Map<String, String>> fetchAllSplunkData() {
-        getTopology();
-        exportTopologyToFile();
-        getAllMTS();
-        getAllTimeSeries();
+    private void collect(PipelineTimings timings) {
+        int generation = mtsCatalog.newGeneration();
+        List<CompletableFuture<Void>> topologyFetches = new ArrayList<>();
+        List<CompletableFuture<Void>> targets = new ArrayList<>();
+        for (SplunkTarget target: splunkTargets.all()) {
+            PipelineTimings.Task task = task(timings, Stage.TOPOLOGY, target, null, null);
+            CompletableFuture<SplunkTopology> topology = CompletableFuture.supplyAsync(
+                () -> task.run(() -> getTopology(target, Lane.BULK)), mtsExecutor);
+            topologyFetches.add(topology.handle((resp, e) -> null));
+            targets.add(topology
+                .thenCompose(resp -> collectServices(target, resp.getData(), timings, generation))
+                .exceptionally(e -> {
+                    log.warn("Continuing while getting exception fetching topology of org {}", target.getOrg(), e);
+                    return null;
+                }));
+        }
+        CompletableFuture<Void> topologyExport = CompletableFuture.allOf(topologyFetches.toArray(new CompletableFuture[0]))
+            .thenCompose(done -> export(timings, this::exportTopologyToFile));
+        CompletableFuture.allOf(targets.toArray(new CompletableFuture[0])).join();
 
-        exportAllSplunkDataToFile();
+        CompletableFuture<Void> dataExport = export(timings, this::exportAllSplunkDataToFile);
+        CompletableFuture<Void> snapshotExport = export(timings, this::exportSnapshot);
+        CompletableFuture.allOf(topologyExport, dataExport, snapshotExport).join();
+    }
 
-        return allSplunkData;
+    private CompletableFuture<Void> export(PipelineTimings timings, Runnable export) {
+        PipelineTimings.Task task = timings.task(Stage.EXPORT);
+        return CompletableFuture.runAsync(() -> task.run(export), exportExecutor);
     }
 
-    public String fetchCoralData(String serviceName) {
-        fetchAllSplunkData();
-        Span exitSpan = getExitSpanForService(serviceName);
-        exportExitSpanDataToFile(exitSpan);
+    /**
+     * Discovers the services of an org's topology and fetches their time series. A metric's fetch starts with the page
+     * naming it, and once a service is discovered its metrics that gained tsids after their fetch started are
+     * backfilled. Once all services are done, the MTS of the org that were not discovered again are expired.
+     */
+    private CompletableFuture<Void> collectServices(SplunkTarget target, SplunkTopology.SplunkTopologyData topology,
+                                                    PipelineTimings timings, int generation) {
+        List<CompletableFuture<Void>> services = new ArrayList<>();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        for (SplunkTopology.Node node: topology.getNodes()) {
+            String serviceName = node.getServiceName();
+            List<CompletableFuture<Void>> fetches = Collections.synchronizedList(new ArrayList<>());
+            Map<String, Set<String>> incremental = new ConcurrentHashMap<>();
+            services.add(discoverMetrics(target, serviceName, generation, timings,
+                    metricName -> fetches.add(fetchTimeSeries(target, serviceName, metricName, timings, () ->
+                        loadTimeSeriesWindow(target, serviceName, metricName, generation, Lane.BULK, incremental))))
+                .thenCompose(completed -> {
+                    if (!completed) {
+                        failed.add(serviceName);
+                    }
+                    return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]));
+                })
+                .thenCompose(done -> backfill(target, serviceName, generation, incremental, timings)));
+        }
+        return CompletableFuture.allOf(services.toArray(new CompletableFuture[0]))
+            .thenRun(() -> expireUnseen(target.getOrg(), generation, failed));
+    }
+
+    private static ExecutorService newStageExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory);
+    }
+
+    /**
+     * Collects all Splunk data as {@link #fetchAllSplunkData()} does, then finds the exit span of an exemplar trace of
+     * the service and writes it to disk. The whole chain is profiled as one run.
+     */
+    public String fetchCoralData(String org, String serviceName) {
+        PipelineTimings timings = new PipelineTimings(tracer, "fetchCoralData");
+        try {
+            collect(timings);
+            SplunkTarget target = splunkTargets.get(org);
+            Span exitSpan = task(timings, Stage.TRACE_SEARCH, target, serviceName, null)
+                .run(() -> getExitSpanForService(target.getOrg(), serviceName));
+            if (exitSpan == null) {
+                log.warn("No exit span found for service {}, nothing to export", serviceName);
+            } else {
+                timings.record(Stage.EXPORT, () -> exportExitSpanDataToFile(exitSpan));
+            }
+        } finally {
+            finish(timings);
+        }
         return "All Data has been Fetched";
     }
 }
\ No newline at end of file
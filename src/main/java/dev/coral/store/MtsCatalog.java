@@ -0,0 +1,579 @@
+package dev.coral.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+
+import dev.coral.model.SplunkMTS;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Catalog of discovered MTS, dictionary-encoded. Every string (org, service, metric, tsid, dimension keys and values)
+ * is stored once and referred to by an int id. An MTS is one row of int columns ({@code orgs}, {@code services},
+ * {@code metrics}, {@code tsids}) plus a run of (key, value) id pairs in {@code dimensions}, delimited by
+ * {@code dimensionOffsets}.
+ * <p>
+ * Every (key, value) pair has a postings list of the rows carrying it, and so does the org, the service and the
+ * metric of each row, under reserved keys. A lookup walks the shortest postings list of its filters and checks the
+ * other filters against the row. An MTS is identified by its org and tsid and is only recorded the first time it is
+ * seen, since the dimensions of a tsid do not change.
+ * <p>
+ * Each discovery run starts a new {@link #newGeneration() generation}, and every row remembers the generation it was
+ * added in and last seen in. At the end of a run the MTS that were not seen again are {@link #expire expired} and the
+ * catalog is rebuilt from the remaining rows, so that under pod churn it holds the live MTS rather than every MTS
+ * ever discovered.
+ */
+@Singleton
+public class MtsCatalog {
+
+    private static final String ORG_KEY = "\u0000org";
+    private static final String SERVICE_KEY = "\u0000service";
+    private static final String METRIC_KEY = "\u0000metric";
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<Long, Integer> rowsByTsid = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Long, Set<Integer>> metricsByService = new LinkedHashMap<>();
+    private final int orgKey;
+    private final int serviceKey;
+    private final int metricKey;
+
+    private int[] orgs = new int[INITIAL_CAPACITY];
+    private int[] services = new int[INITIAL_CAPACITY];
+    private int[] metrics = new int[INITIAL_CAPACITY];
+    private int[] tsids = new int[INITIAL_CAPACITY];
+    private int[] added = new int[INITIAL_CAPACITY];
+    private int[] seen = new int[INITIAL_CAPACITY];
+    private int[] dimensionOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] dimensions = new int[INITIAL_CAPACITY * 8];
+    private int size;
+    private int generation;
+
+    public MtsCatalog() {
+        this.orgKey = id(ORG_KEY);
+        this.serviceKey = id(SERVICE_KEY);
+        this.metricKey = id(METRIC_KEY);
+    }
+
+    /**
+     * Records an MTS of an org returned by {@code /v2/metrictimeseries/} under {@code serviceName}, as added or seen in
+     * the given generation.
+     *
+     * @return whether the MTS was not yet in the catalog
+     */
+    public boolean add(String org, String serviceName, SplunkMTS.Result result, int generation) {
+        return add(org, serviceName, result.getMetric(), result.getId(), dimensions(result.getDimensions()),
+            generation);
+    }
+
+    /**
+     * Records an MTS of an org in the {@link #currentGeneration() current generation}; {@code null} dimension values
+     * are left out.
+     *
+     * @return whether the tsid was not yet in the catalog of the org
+     */
+    public boolean add(String org, String serviceName, String metricName, String tsid,
+                       Map<String, String> dimensionValues) {
+        return add(org, serviceName, metricName, tsid, dimensionValues, currentGeneration());
+    }
+
+    /**
+     * Records an MTS of an org as added or seen in the given generation; {@code null} dimension values are left out.
+     * Runs may overlap, so a row keeps the latest generation it was seen in.
+     *
+     * @return whether the tsid was not yet in the catalog of the org
+     */
+    public boolean add(String org, String serviceName, String metricName, String tsid,
+                       Map<String, String> dimensionValues, int generation) {
+        if (org == null || serviceName == null || metricName == null || tsid == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = rowsByTsid.get(pair(id(org), id(tsid)));
+            if (existing != null) {
+                if (seen[existing] - generation < 0) {
+                    seen[existing] = generation;
+                }
+                return false;
+            }
+            addRow(org, serviceName, metricName, tsid, dimensionValues, generation, generation);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addRow(String org, String serviceName, String metricName, String tsid,
+                        Map<String, String> dimensionValues, int addedIn, int seenIn) {
+        int row = size;
+        ensureCapacity(row + 1, dimensionOffsets[row] + 2 * dimensionValues.size());
+        int orgId = id(org);
+        int tsidId = id(tsid);
+        int service = id(serviceName);
+        int metric = id(metricName);
+        orgs[row] = orgId;
+        services[row] = service;
+        metrics[row] = metric;
+        tsids[row] = tsidId;
+        added[row] = addedIn;
+        seen[row] = seenIn;
+        int offset = dimensionOffsets[row];
+        for (Map.Entry<String, String> dimension : dimensionValues.entrySet()) {
+            if (dimension.getKey() == null || dimension.getValue() == null) {
+                continue;
+            }
+            int key = id(dimension.getKey());
+            int value = id(dimension.getValue());
+            dimensions[offset++] = key;
+            dimensions[offset++] = value;
+            posting(key, value).add(row);
+        }
+        dimensionOffsets[row + 1] = offset;
+        posting(orgKey, orgId).add(row);
+        posting(serviceKey, service).add(row);
+        posting(metricKey, metric).add(row);
+        rowsByTsid.put(pair(orgId, tsidId), row);
+        metricsByService.computeIfAbsent(pair(orgId, service), k -> new LinkedHashSet<>()).add(metric);
+        size++;
+    }
+
+    /**
+     * Starts a discovery run. The run passes the returned generation to {@link #add(String, String, SplunkMTS.Result,
+     * int)}, {@link #newTsids} and {@link #expire}.
+     */
+    public int newGeneration() {
+        lock.writeLock().lock();
+        try {
+            return ++generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** The generation of the latest discovery run, {@code 0} before the first one. */
+    public int currentGeneration() {
+        lock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the MTS of the org that were not seen since {@code generation}, except those of
+     * {@code retainedServices}, such as services whose discovery failed in this run. The catalog, dictionary
+     * included, is rebuilt from the remaining MTS.
+     *
+     * @return the removed MTS
+     */
+    public List<Mts> expire(String org, int generation, Set<String> retainedServices) {
+        lock.writeLock().lock();
+        try {
+            Integer orgId = ids.get(org);
+            if (orgId == null) {
+                return List.of();
+            }
+            List<Mts> expired = new ArrayList<>();
+            boolean[] keep = new boolean[size];
+            for (int row = 0; row < size; row++) {
+                keep[row] = orgs[row] != orgId || seen[row] - generation >= 0
+                    || retainedServices.contains(strings.get(services[row]));
+                if (!keep[row]) {
+                    expired.add(decode(row));
+                }
+            }
+            if (!expired.isEmpty()) {
+                rebuild(keep);
+            }
+            return expired;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces every structure of the catalog with one holding only the kept rows, in the same order. */
+    private void rebuild(boolean[] keep) {
+        List<String> oldStrings = new ArrayList<>(strings);
+        int[] oldOrgs = orgs;
+        int[] oldServices = services;
+        int[] oldMetrics = metrics;
+        int[] oldTsids = tsids;
+        int[] oldAdded = added;
+        int[] oldSeen = seen;
+        int[] oldOffsets = dimensionOffsets;
+        int[] oldDimensions = dimensions;
+        int oldSize = size;
+
+        ids.clear();
+        strings.clear();
+        rowsByTsid.clear();
+        postings.clear();
+        metricsByService.clear();
+        id(ORG_KEY);
+        id(SERVICE_KEY);
+        id(METRIC_KEY);
+        orgs = new int[INITIAL_CAPACITY];
+        services = new int[INITIAL_CAPACITY];
+        metrics = new int[INITIAL_CAPACITY];
+        tsids = new int[INITIAL_CAPACITY];
+        added = new int[INITIAL_CAPACITY];
+        seen = new int[INITIAL_CAPACITY];
+        dimensionOffsets = new int[INITIAL_CAPACITY + 1];
+        dimensions = new int[INITIAL_CAPACITY * 8];
+        size = 0;
+
+        for (int row = 0; row < oldSize; row++) {
+            if (!keep[row]) {
+                continue;
+            }
+            Map<String, String> dimensionValues = new LinkedHashMap<>();
+            for (int i = oldOffsets[row]; i < oldOffsets[row + 1]; i += 2) {
+                dimensionValues.put(oldStrings.get(oldDimensions[i]), oldStrings.get(oldDimensions[i + 1]));
+            }
+            addRow(oldStrings.get(oldOrgs[row]), oldStrings.get(oldServices[row]), oldStrings.get(oldMetrics[row]),
+                oldStrings.get(oldTsids[row]), dimensionValues, oldAdded[row], oldSeen[row]);
+        }
+    }
+
+    public void addAll(MtsCatalog other) {
+        other.forEach(mts -> add(mts.getOrg(), mts.getService(), mts.getMetric(), mts.getTsid(), mts.getDimensions()));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Number of distinct strings in the dictionary. */
+    public int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return strings.size() - 3;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Services of the org, in discovery order. */
+    public Set<String> services(String org) {
+        lock.readLock().lock();
+        try {
+            Integer orgId = ids.get(org);
+            Set<String> names = new LinkedHashSet<>();
+            if (orgId != null) {
+                metricsByService.keySet().forEach(orgAndService -> {
+                    if ((int) (orgAndService >>> 32) == orgId) {
+                        names.add(strings.get((int) (long) orgAndService));
+                    }
+                });
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Metric names of a service of the org, in discovery order. */
+    public Set<String> metrics(String org, String serviceName) {
+        lock.readLock().lock();
+        try {
+            Integer orgId = ids.get(org);
+            Integer service = ids.get(serviceName);
+            Set<Integer> metricIds = orgId == null || service == null ? null : metricsByService.get(pair(orgId, service));
+            if (metricIds == null) {
+                return Collections.emptySet();
+            }
+            Set<String> names = new LinkedHashSet<>();
+            metricIds.forEach(metric -> names.add(strings.get(metric)));
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Tsids of the MTS of a metric of a service of the org. */
+    public Set<String> tsids(String org, String serviceName, String metricName) {
+        return tsids(org, serviceName, metricName, null);
+    }
+
+    /** Tsids of the MTS of a metric of a service of the org first added in the given generation. */
+    public Set<String> newTsids(String org, String serviceName, String metricName, int generation) {
+        return tsids(org, serviceName, metricName, generation);
+    }
+
+    private Set<String> tsids(String org, String serviceName, String metricName, Integer addedIn) {
+        lock.readLock().lock();
+        try {
+            Integer orgId = ids.get(org);
+            Integer service = ids.get(serviceName);
+            Integer metric = ids.get(metricName);
+            Postings rows = orgId == null || service == null || metric == null ? null : postings.get(pair(metricKey, metric));
+            if (rows == null) {
+                return Collections.emptySet();
+            }
+            Set<String> names = new LinkedHashSet<>();
+            for (int i = 0; i < rows.size; i++) {
+                int row = rows.rows[i];
+                if (orgs[row] == orgId && services[row] == service && (addedIn == null || added[row] == addedIn)) {
+                    names.add(strings.get(tsids[row]));
+                }
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Metric names per service of the org, decoded into a new map. */
+    public Map<String, Set<String>> metricsByService(String org) {
+        lock.readLock().lock();
+        try {
+            Integer orgId = ids.get(org);
+            Map<String, Set<String>> byService = new LinkedHashMap<>();
+            if (orgId == null) {
+                return byService;
+            }
+            metricsByService.forEach((orgAndService, metricIds) -> {
+                if ((int) (orgAndService >>> 32) != orgId) {
+                    return;
+                }
+                Set<String> names = new LinkedHashSet<>();
+                metricIds.forEach(metric -> names.add(strings.get(metric)));
+                byService.put(strings.get((int) (long) orgAndService), names);
+            });
+            return byService;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * MTS matching every given filter, in discovery order. {@code org}, {@code serviceName} and {@code metricName}
+     * may be {@code null}, and {@code dimensionValues} may be empty, to not filter on them.
+     */
+    public List<Mts> find(String org, String serviceName, String metricName, Map<String, String> dimensionValues,
+                          int limit) {
+        lock.readLock().lock();
+        try {
+            List<int[]> filters = new ArrayList<>();
+            if (!addFilter(filters, orgKey, org) || !addFilter(filters, serviceKey, serviceName)
+                || !addFilter(filters, metricKey, metricName)) {
+                return List.of();
+            }
+            if (dimensionValues != null) {
+                for (Map.Entry<String, String> dimension : dimensionValues.entrySet()) {
+                    Integer key = ids.get(dimension.getKey());
+                    if (key == null || !addFilter(filters, key, dimension.getValue())) {
+                        return List.of();
+                    }
+                }
+            }
+
+            List<Mts> matches = new ArrayList<>();
+            if (filters.isEmpty()) {
+                for (int row = 0; row < size && matches.size() < limit; row++) {
+                    matches.add(decode(row));
+                }
+                return matches;
+            }
+            Postings shortest = null;
+            for (int[] filter : filters) {
+                Postings candidates = postings.get(pair(filter[0], filter[1]));
+                if (candidates == null) {
+                    return List.of();
+                }
+                if (shortest == null || candidates.size < shortest.size) {
+                    shortest = candidates;
+                }
+            }
+            for (int i = 0; i < shortest.size && matches.size() < limit; i++) {
+                int row = shortest.rows[i];
+                if (matches(row, filters)) {
+                    matches.add(decode(row));
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Decodes every MTS, in discovery order. */
+    public void forEach(Consumer<Mts> consumer) {
+        List<Mts> all;
+        lock.readLock().lock();
+        try {
+            all = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                all.add(decode(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        all.forEach(consumer);
+    }
+
+    private boolean matches(int row, List<int[]> filters) {
+        for (int[] filter : filters) {
+            int key = filter[0];
+            int value = filter[1];
+            if (key == orgKey) {
+                if (orgs[row] != value) {
+                    return false;
+                }
+            } else if (key == serviceKey) {
+                if (services[row] != value) {
+                    return false;
+                }
+            } else if (key == metricKey) {
+                if (metrics[row] != value) {
+                    return false;
+                }
+            } else if (!hasDimension(row, key, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasDimension(int row, int key, int value) {
+        for (int i = dimensionOffsets[row]; i < dimensionOffsets[row + 1]; i += 2) {
+            if (dimensions[i] == key) {
+                return dimensions[i + 1] == value;
+            }
+        }
+        return false;
+    }
+
+    /** Adds a filter on an already known key; returns false if the value was never seen, so nothing can match. */
+    private boolean addFilter(List<int[]> filters, int key, String value) {
+        if (value == null) {
+            return true;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            return false;
+        }
+        filters.add(new int[]{key, id});
+        return true;
+    }
+
+    private Mts decode(int row) {
+        Map<String, String> decoded = new LinkedHashMap<>();
+        for (int i = dimensionOffsets[row]; i < dimensionOffsets[row + 1]; i += 2) {
+            decoded.put(strings.get(dimensions[i]), strings.get(dimensions[i + 1]));
+        }
+        return new Mts(strings.get(orgs[row]), strings.get(services[row]), strings.get(metrics[row]),
+            strings.get(tsids[row]), decoded);
+    }
+
+    private int id(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    private Postings posting(int key, int value) {
+        return postings.computeIfAbsent(pair(key, value), k -> new Postings());
+    }
+
+    private static long pair(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private void ensureCapacity(int rows, int dimensionInts) {
+        if (rows > services.length) {
+            int capacity = services.length * 2;
+            orgs = Arrays.copyOf(orgs, capacity);
+            services = Arrays.copyOf(services, capacity);
+            metrics = Arrays.copyOf(metrics, capacity);
+            tsids = Arrays.copyOf(tsids, capacity);
+            added = Arrays.copyOf(added, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            dimensionOffsets = Arrays.copyOf(dimensionOffsets, capacity + 1);
+        }
+        if (dimensionInts > dimensions.length) {
+            dimensions = Arrays.copyOf(dimensions, Math.max(dimensionInts, dimensions.length * 2));
+        }
+    }
+
+    /** Dimension fields of an MTS by name, leaving out missing ones. */
+    static Map<String, String> dimensions(SplunkMTS.Result.Dimensions dimensions) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (dimensions == null) {
+            return values;
+        }
+        values.put("endPoint", dimensions.getEndPoint());
+        values.put("kubernetesNode", dimensions.getKubernetesNode());
+        values.put("kubernetesPodUid", dimensions.getKubernetesPodUid());
+        values.put("method", dimensions.getMethod());
+        values.put("orgId", dimensions.getOrgId());
+        values.put("serviceName", dimensions.getServiceName());
+        values.put("sfMetric", dimensions.getSfMetric());
+        values.put("sfSource", dimensions.getSfSource());
+        values.put("status", dimensions.getStatus());
+        values.put("telemetrySdkLanguage", dimensions.getTelemetrySdkLanguage());
+        values.put("telemetrySdkName", dimensions.getTelemetrySdkName());
+        values.put("telemetrySdkVersion", dimensions.getTelemetrySdkVersion());
+        values.values().removeIf(value -> value == null);
+        return values;
+    }
+
+    /** Ascending row numbers. */
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Introspected
+    @Serdeable
+    public static class Mts {
+        private String org;
+        private String service;
+        private String metric;
+        private String tsid;
+        private Map<String, String> dimensions;
+    }
+}
@@ -0,0 +1,55 @@
+package dev.coral.store;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Copied rollup buckets of one MTS at one resolution, serialized column-wise as
+ * {@code {"timestamps": [...], "min": [...], "max": [...], "sum": [...], "count": [...]}}. Timestamps are bucket
+ * starts.
+ */
+@Introspected
+@Serdeable
+public final class RollupSlice {
+
+    public static final RollupSlice EMPTY = new RollupSlice(new long[0], new double[0], new double[0], new double[0],
+        new long[0]);
+
+    private final long[] timestamps;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final long[] count;
+
+    public RollupSlice(long[] timestamps, double[] min, double[] max, double[] sum, long[] count) {
+        this.timestamps = timestamps;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getMin() {
+        return min;
+    }
+
+    public double[] getMax() {
+        return max;
+    }
+
+    public double[] getSum() {
+        return sum;
+    }
+
+    public long[] getCount() {
+        return count;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+}
@@ -0,0 +1,592 @@
+package dev.coral.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+import dev.coral.model.SplunkTopology;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Versioned binary snapshot of collected Splunk data: topology per org, MTS catalog and time-series columns.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header      int magic "CRLS", short version, short reserved, long createdAt
+ * strings     int count, then per string: int byteLength, UTF-8 bytes
+ * topologies  int orgCount, then per org: int org,
+ *             int nodeCount, then per node: int name, byte inferred, int type
+ *             int edgeCount, then per edge: int from, int to
+ * catalog     int mtsCount, then per MTS: int org, int service, int metric, int tsid, int dimensionCount,
+ *             then per dimension: int key, int value
+ * series      int seriesCount, then per series: int org, int service, int metric, int tsid, int pointCount,
+ *             zero padding to an 8-byte boundary, long[pointCount] timestamps, double[pointCount] values,
+ *             int tierCount, then per rollup tier: long widthMillis, int buckets, int bucketCount,
+ *             long[bucketCount] starts, double[bucketCount] min, max and sum, long[bucketCount] count
+ * </pre>
+ * Strings are referenced by their index in the string table; a missing string is {@code -1}. Snapshots are
+ * read through {@link FileChannel#map}, and the time-series columns are served from the mapped region
+ * without being copied. The rollup tiers are read onto the heap; they reach much further back than the raw points
+ * and would otherwise be lost on a restart. Version 3 snapshots, which have no rollups, are still read. Every count,
+ * length and index is checked against the file before it is used, so a truncated or corrupt snapshot fails with an
+ * {@link IOException}.
+ */
+@Slf4j
+public final class SplunkSnapshot {
+
+    static final int MAGIC = 0x43524C53;
+    static final short VERSION = 4;
+    private static final short VERSION_WITHOUT_ROLLUPS = 3;
+    // A corrupt tier must not make the reader allocate without bound
+    private static final int MAX_ROLLUP_BUCKETS = 1 << 20;
+    private static final String FILE_PREFIX = "splunk-";
+    private static final String FILE_SUFFIX = ".snapshot";
+    private static final int BUFFER_SIZE = 1 << 20;
+    // A single mapping is limited to 2 GB
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+    // Tells apart snapshots written within the same millisecond
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long createdAt;
+    private final Map<String, SplunkTopology.SplunkTopologyData> topologies;
+    private final MtsCatalog catalog;
+    private final Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> series;
+
+    private SplunkSnapshot(long createdAt, Map<String, SplunkTopology.SplunkTopologyData> topologies,
+                           MtsCatalog catalog, Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> series) {
+        this.createdAt = createdAt;
+        this.topologies = topologies;
+        this.catalog = catalog;
+        this.series = series;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** Topology per org. */
+    public Map<String, SplunkTopology.SplunkTopologyData> getTopologies() {
+        return topologies;
+    }
+
+    public MtsCatalog getCatalog() {
+        return catalog;
+    }
+
+    public Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> getSeries() {
+        return series;
+    }
+
+    /**
+     * Writes a snapshot into {@code directory} and removes all but the newest {@code retain} snapshots.
+     * The file is written under a temporary name and atomically renamed once it is complete. A snapshot that would
+     * be larger than can be mapped is not written.
+     */
+    public static Path write(Path directory, int retain, Map<String, SplunkTopology.SplunkTopologyData> topologies,
+                             MtsCatalog catalog,
+                             Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> series) throws IOException {
+        Files.createDirectories(directory);
+        long createdAt = System.currentTimeMillis();
+        Path target = directory.resolve(FILE_PREFIX + createdAt + "-" + SEQUENCE.getAndIncrement() + FILE_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        StringTable strings = new StringTable();
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putShort((short) 0);
+            out.putLong(createdAt);
+
+            // Copy the live maps once so that the string table and the sections see the same contents
+            List<MtsCatalog.Mts> catalogCopy = new ArrayList<>();
+            catalog.forEach(catalogCopy::add);
+            List<SeriesEntry> seriesCopy = new ArrayList<>();
+            series.forEach((org, services) -> services.forEach((service, metrics) ->
+                metrics.forEach((metric, columns) -> columns.forEach((tsid, column) -> seriesCopy.add(
+                    new SeriesEntry(org, service, metric, tsid, column))))));
+            Map<String, SplunkTopology.SplunkTopologyData> topologiesCopy = new LinkedHashMap<>(topologies);
+
+            // Intern every string first so the table can be written ahead of the sections referencing it
+            topologiesCopy.forEach((org, topology) -> {
+                strings.id(org);
+                for (SplunkTopology.Node node : nodes(topology)) {
+                    strings.id(node.getServiceName());
+                    strings.id(node.getType());
+                }
+                for (SplunkTopology.Edge edge : edges(topology)) {
+                    strings.id(edge.getFromNode());
+                    strings.id(edge.getToNode());
+                }
+            });
+            for (MtsCatalog.Mts mts : catalogCopy) {
+                strings.id(mts.getOrg());
+                strings.id(mts.getService());
+                strings.id(mts.getMetric());
+                strings.id(mts.getTsid());
+                mts.getDimensions().forEach((key, value) -> {
+                    strings.id(key);
+                    strings.id(value);
+                });
+            }
+            for (SeriesEntry entry : seriesCopy) {
+                strings.id(entry.org);
+                strings.id(entry.service);
+                strings.id(entry.metric);
+                strings.id(entry.tsid);
+            }
+            strings.writeTo(out);
+
+            out.putInt(topologiesCopy.size());
+            for (Map.Entry<String, SplunkTopology.SplunkTopologyData> topology : topologiesCopy.entrySet()) {
+                out.putInt(strings.id(topology.getKey()));
+                List<SplunkTopology.Node> nodes = nodes(topology.getValue());
+                out.putInt(nodes.size());
+                for (SplunkTopology.Node node : nodes) {
+                    out.putInt(strings.id(node.getServiceName()));
+                    out.put((byte) (node.isInferred() ? 1 : 0));
+                    out.putInt(strings.id(node.getType()));
+                }
+                List<SplunkTopology.Edge> edges = edges(topology.getValue());
+                out.putInt(edges.size());
+                for (SplunkTopology.Edge edge : edges) {
+                    out.putInt(strings.id(edge.getFromNode()));
+                    out.putInt(strings.id(edge.getToNode()));
+                }
+            }
+
+            out.putInt(catalogCopy.size());
+            for (MtsCatalog.Mts mts : catalogCopy) {
+                out.putInt(strings.id(mts.getOrg()));
+                out.putInt(strings.id(mts.getService()));
+                out.putInt(strings.id(mts.getMetric()));
+                out.putInt(strings.id(mts.getTsid()));
+                out.putInt(mts.getDimensions().size());
+                for (Map.Entry<String, String> dimension : mts.getDimensions().entrySet()) {
+                    out.putInt(strings.id(dimension.getKey()));
+                    out.putInt(strings.id(dimension.getValue()));
+                }
+            }
+
+            out.putInt(seriesCopy.size());
+            for (SeriesEntry entry : seriesCopy) {
+                out.putInt(strings.id(entry.org));
+                out.putInt(strings.id(entry.service));
+                out.putInt(strings.id(entry.metric));
+                out.putInt(strings.id(entry.tsid));
+                out.putInt(entry.points.size());
+                out.alignTo(Long.BYTES);
+                for (long timestamp : entry.points.getTimestamps()) {
+                    out.putLong(timestamp);
+                }
+                for (double value : entry.points.getValues()) {
+                    out.putDouble(value);
+                }
+                writeRollups(out, entry.column);
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - Math.max(1, retain); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Reads the newest readable snapshot in {@code directory}, if there is one. Snapshots that cannot be read are
+     * skipped in favour of the next older one.
+     */
+    public static Optional<SplunkSnapshot> readLatest(Path directory) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                return Optional.of(read(snapshots.get(i)));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable Splunk snapshot {}", snapshots.get(i), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static SplunkSnapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_SIZE) {
+                throw new IOException("Splunk snapshot " + file + " of " + channel.size()
+                    + " bytes is too large to map");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a Splunk snapshot: " + file);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION && version != VERSION_WITHOUT_ROLLUPS) {
+            throw new IOException("Unsupported Splunk snapshot version " + version + ": " + file);
+        }
+        buffer.getShort();
+        long createdAt = buffer.getLong();
+        try {
+            return read(buffer, createdAt, version >= VERSION);
+        } catch (IOException e) {
+            throw new IOException("Corrupt Splunk snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static SplunkSnapshot read(ByteBuffer buffer, long createdAt, boolean withRollups) throws IOException {
+        String[] strings = new String[count(buffer, Integer.BYTES, "string")];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[count(buffer, 1, "string byte")];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int orgCount = count(buffer, 3 * Integer.BYTES, "topology");
+        Map<String, SplunkTopology.SplunkTopologyData> topologies = new LinkedHashMap<>();
+        for (int o = 0; o < orgCount; o++) {
+            require(buffer, Integer.BYTES, "topology");
+            String org = string(strings, buffer.getInt());
+            int nodeCount = count(buffer, 2 * Integer.BYTES + 1, "node");
+            List<SplunkTopology.Node> nodes = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                String name = string(strings, buffer.getInt());
+                boolean inferred = buffer.get() != 0;
+                nodes.add(new SplunkTopology.Node(name, inferred, string(strings, buffer.getInt())));
+            }
+            int edgeCount = count(buffer, 2 * Integer.BYTES, "edge");
+            List<SplunkTopology.Edge> edges = new ArrayList<>(edgeCount);
+            for (int i = 0; i < edgeCount; i++) {
+                edges.add(new SplunkTopology.Edge(string(strings, buffer.getInt()), string(strings, buffer.getInt())));
+            }
+            topologies.put(org, new SplunkTopology.SplunkTopologyData(nodes, edges));
+        }
+
+        int mtsCount = count(buffer, 5 * Integer.BYTES, "MTS");
+        MtsCatalog catalog = new MtsCatalog();
+        for (int i = 0; i < mtsCount; i++) {
+            require(buffer, 4 * Integer.BYTES, "MTS");
+            String org = string(strings, buffer.getInt());
+            String service = string(strings, buffer.getInt());
+            String metric = string(strings, buffer.getInt());
+            String tsid = string(strings, buffer.getInt());
+            int dimensionCount = count(buffer, 2 * Integer.BYTES, "dimension");
+            Map<String, String> dimensions = new LinkedHashMap<>();
+            for (int j = 0; j < dimensionCount; j++) {
+                dimensions.put(string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+            }
+            catalog.add(org, service, metric, tsid, dimensions);
+        }
+
+        int seriesCount = count(buffer, 5 * Integer.BYTES, "series");
+        Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> series = new HashMap<>();
+        for (int i = 0; i < seriesCount; i++) {
+            require(buffer, 5 * Integer.BYTES, "series");
+            String org = string(strings, buffer.getInt());
+            String service = string(strings, buffer.getInt());
+            String metric = string(strings, buffer.getInt());
+            String tsid = string(strings, buffer.getInt());
+            int points = buffer.getInt();
+            int start = align(buffer.position(), Long.BYTES);
+            if (points < 0 || start > buffer.limit() || 2L * points * Long.BYTES > buffer.limit() - start) {
+                throw new IOException("Invalid point count " + points + " at " + buffer.position());
+            }
+            buffer.position(start);
+            int bytes = points * Long.BYTES;
+            LongBuffer timestamps = buffer.slice(buffer.position(), bytes).asLongBuffer();
+            DoubleBuffer values = buffer.slice(buffer.position() + bytes, bytes).asDoubleBuffer();
+            buffer.position(buffer.position() + 2 * bytes);
+            TimeSeriesRollups rollups = withRollups ? readRollups(buffer) : null;
+            TimeSeriesColumn column = rollups == null
+                ? TimeSeriesColumn.mapped(timestamps, values)
+                : TimeSeriesColumn.mapped(timestamps, values, rollups);
+            series.computeIfAbsent(org, k -> new HashMap<>())
+                .computeIfAbsent(service, k -> new HashMap<>())
+                .computeIfAbsent(metric, k -> new HashMap<>())
+                .put(tsid, column);
+        }
+
+        return new SplunkSnapshot(createdAt, topologies, catalog, series);
+    }
+
+    private static void writeRollups(Output out, TimeSeriesColumn column) throws IOException {
+        List<TimeSeriesRollups.Tier> tiers = column.rollupTiers();
+        out.putInt(tiers.size());
+        for (TimeSeriesRollups.Tier tier : tiers) {
+            RollupSlice buckets = column.rollup(tier.getWidthMillis(), Long.MIN_VALUE, Long.MAX_VALUE);
+            if (buckets == null) {
+                buckets = RollupSlice.EMPTY;
+            }
+            out.putLong(tier.getWidthMillis());
+            out.putInt(tier.getBuckets());
+            out.putInt(buckets.size());
+            for (long start : buckets.getTimestamps()) {
+                out.putLong(start);
+            }
+            for (double min : buckets.getMin()) {
+                out.putDouble(min);
+            }
+            for (double max : buckets.getMax()) {
+                out.putDouble(max);
+            }
+            for (double sum : buckets.getSum()) {
+                out.putDouble(sum);
+            }
+            for (long count : buckets.getCount()) {
+                out.putLong(count);
+            }
+        }
+    }
+
+    /** Reads the rollup tiers of a series, or {@code null} if it has none. */
+    private static TimeSeriesRollups readRollups(ByteBuffer buffer) throws IOException {
+        int tierCount = count(buffer, Long.BYTES + 2 * Integer.BYTES, "rollup tier");
+        if (tierCount == 0) {
+            return null;
+        }
+        List<TimeSeriesRollups.Tier> tiers = new ArrayList<>(tierCount);
+        List<RollupSlice> buckets = new ArrayList<>(tierCount);
+        for (int t = 0; t < tierCount; t++) {
+            require(buffer, Long.BYTES + Integer.BYTES, "rollup tier");
+            long width = buffer.getLong();
+            int capacity = buffer.getInt();
+            if (width <= 0 || capacity <= 0 || capacity > MAX_ROLLUP_BUCKETS || capacity > Long.MAX_VALUE / width) {
+                throw new IOException("Invalid rollup tier of " + capacity + " buckets of " + width + " ms");
+            }
+            tiers.add(new TimeSeriesRollups.Tier(Duration.ofMillis(width), Duration.ofMillis(width * capacity)));
+            int size = count(buffer, 5 * Long.BYTES, "rollup bucket");
+            if (size > capacity) {
+                throw new IOException("Invalid rollup bucket count " + size + " for " + capacity + " buckets");
+            }
+            long[] starts = new long[size];
+            double[] min = new double[size];
+            double[] max = new double[size];
+            double[] sum = new double[size];
+            long[] counts = new long[size];
+            buffer.asLongBuffer().get(starts);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            for (double[] column : new double[][]{min, max, sum}) {
+                buffer.asDoubleBuffer().get(column);
+                buffer.position(buffer.position() + size * Double.BYTES);
+            }
+            buffer.asLongBuffer().get(counts);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            buckets.add(new RollupSlice(starts, min, max, sum, counts));
+        }
+        TimeSeriesRollups rollups = new TimeSeriesRollups(tiers);
+        for (int t = 0; t < tierCount; t++) {
+            rollups.load(t, buckets.get(t));
+        }
+        return rollups;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                })
+                .sorted(Comparator.comparingLong((Path path) -> nameField(path, 0))
+                    .thenComparingLong(path -> nameField(path, 1)))
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Field {@code index} of a {@code splunk-<createdAt>-<sequence>.snapshot} name: 0 for the creation time, 1 for the
+     * sequence. Names of older snapshots have no sequence, which counts as 0; an unparseable field is -1.
+     */
+    private static long nameField(Path snapshot, int index) {
+        String name = snapshot.getFileName().toString();
+        String[] fields = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()).split("-", -1);
+        if (index >= fields.length) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(fields[index]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static List<SplunkTopology.Node> nodes(SplunkTopology.SplunkTopologyData topology) {
+        return topology == null || topology.getNodes() == null ? List.of() : topology.getNodes();
+    }
+
+    private static List<SplunkTopology.Edge> edges(SplunkTopology.SplunkTopologyData topology) {
+        return topology == null || topology.getEdges() == null ? List.of() : topology.getEdges();
+    }
+
+    /** Reads the count of a section whose entries take at least {@code minBytes} each. */
+    private static int count(ByteBuffer buffer, int minBytes, String entry) throws IOException {
+        require(buffer, Integer.BYTES, entry + " count");
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * minBytes > buffer.remaining()) {
+            throw new IOException("Invalid " + entry + " count " + count + " with " + buffer.remaining()
+                + " bytes left");
+        }
+        return count;
+    }
+
+    private static void require(ByteBuffer buffer, int bytes, String entry) throws IOException {
+        if (buffer.remaining() < bytes) {
+            throw new IOException("Truncated " + entry + " at " + buffer.position());
+        }
+    }
+
+    private static String string(String[] strings, int id) throws IOException {
+        if (id < -1 || id >= strings.length) {
+            throw new IOException("Invalid string index " + id);
+        }
+        return id < 0 ? null : strings[id];
+    }
+
+    private static int align(int position, int alignment) {
+        return (position + alignment - 1) & -alignment;
+    }
+
+    private static class SeriesEntry {
+        private final String org;
+        private final String service;
+        private final String metric;
+        private final String tsid;
+        private final TimeSeriesColumn column;
+        private final TimeSeriesSlice points;
+
+        SeriesEntry(String org, String service, String metric, String tsid, TimeSeriesColumn column) {
+            this.org = org;
+            this.service = service;
+            this.metric = metric;
+            this.tsid = tsid;
+            this.column = column;
+            this.points = column.slice(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int id(String value) {
+            if (value == null) {
+                return -1;
+            }
+            return ids.computeIfAbsent(value, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        void writeTo(Output out) throws IOException {
+            out.putInt(strings.size());
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+        }
+    }
+
+    /** Buffered big-endian writer that tracks the file position for alignment. */
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void put(byte value) throws IOException {
+            ensure(Byte.BYTES).put(value);
+            position += Byte.BYTES;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, BUFFER_SIZE);
+                ensure(length).put(bytes, offset, length);
+                offset += length;
+                position += length;
+            }
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(Short.BYTES).putShort(value);
+            position += Short.BYTES;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES).putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES).putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES).putDouble(value);
+            position += Double.BYTES;
+        }
+
+        void alignTo(int alignment) throws IOException {
+            while (position % alignment != 0) {
+                put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (position + bytes > MAX_SIZE) {
+                throw new IOException("Splunk snapshot would be larger than the " + MAX_SIZE
+                    + " bytes that can be mapped");
+            }
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+    }
+}
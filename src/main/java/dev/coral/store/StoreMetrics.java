@@ -0,0 +1,30 @@
+package dev.coral.store;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Context;
+import jakarta.inject.Singleton;
+
+/**
+ * Gauges of the in-memory Splunk data: the MTS and points held by the {@link TimeSeriesStore} and the size of the
+ * {@link MtsCatalog}. They are read on every publish, so they are registered eagerly at startup.
+ */
+@Context
+@Singleton
+public class StoreMetrics {
+
+    public StoreMetrics(MeterRegistry meterRegistry, TimeSeriesStore timeSeriesStore, MtsCatalog mtsCatalog) {
+        Gauge.builder("coral.store.mts", timeSeriesStore, TimeSeriesStore::mtsCount)
+            .description("MTS with stored points")
+            .register(meterRegistry);
+        Gauge.builder("coral.store.points", timeSeriesStore, TimeSeriesStore::pointCount)
+            .description("Raw points held in the time-series store")
+            .register(meterRegistry);
+        Gauge.builder("coral.catalog.mts", mtsCatalog, MtsCatalog::size)
+            .description("MTS known to the catalog")
+            .register(meterRegistry);
+        Gauge.builder("coral.catalog.dictionary.size", mtsCatalog, MtsCatalog::dictionarySize)
+            .description("Distinct strings in the catalog's dictionary")
+            .register(meterRegistry);
+    }
+}
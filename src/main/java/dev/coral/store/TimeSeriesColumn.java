@@ -0,0 +1,290 @@
+package dev.coral.store;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Timestamps and values of one MTS held as parallel primitive columns, kept sorted by timestamp.
+ * Appends grow the columns geometrically; a point whose timestamp is already present replaces the
+ * stored value.
+ * <p>
+ * A {@link #bounded} column is a ring of at most {@code maxSize} points: once full, a newer point
+ * overwrites the oldest one, so memory per series stays constant however long it runs. Such a column
+ * can also fold every new point into {@link TimeSeriesRollups}, which outlive the raw points.
+ * <p>
+ * A column restored from a snapshot reads straight from the mapped file until its first write, which
+ * copies it onto the heap.
+ * <p>
+ * Methods synchronize on the column but never block while holding the monitor, so virtual threads reading
+ * or writing a column are not pinned for longer than the copy itself.
+ */
+public final class TimeSeriesColumn {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Ring of points; logical point i lives at (head + i) % timestamps.length
+    private long[] timestamps;
+    private double[] values;
+    private int head;
+    private LongBuffer mappedTimestamps;
+    private DoubleBuffer mappedValues;
+    private int size;
+    private int maxSize = Integer.MAX_VALUE;
+    private TimeSeriesRollups rollups;
+
+    public TimeSeriesColumn() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TimeSeriesColumn(int capacity) {
+        this.timestamps = new long[Math.max(1, capacity)];
+        this.values = new double[Math.max(1, capacity)];
+    }
+
+    private TimeSeriesColumn(LongBuffer mappedTimestamps, DoubleBuffer mappedValues) {
+        this.mappedTimestamps = mappedTimestamps;
+        this.mappedValues = mappedValues;
+        this.size = mappedTimestamps.remaining();
+    }
+
+    /** Creates a read-through column over buffers holding {@code remaining()} sorted points. */
+    public static TimeSeriesColumn mapped(LongBuffer timestamps, DoubleBuffer values) {
+        if (timestamps.remaining() != values.remaining()) {
+            throw new IllegalArgumentException("Timestamp and value columns differ in length");
+        }
+        return new TimeSeriesColumn(timestamps, values);
+    }
+
+    /** Creates a read-through column like {@link #mapped(LongBuffer, DoubleBuffer)} with restored rollups. */
+    public static TimeSeriesColumn mapped(LongBuffer timestamps, DoubleBuffer values, TimeSeriesRollups rollups) {
+        TimeSeriesColumn column = mapped(timestamps, values);
+        column.rollups = rollups;
+        return column;
+    }
+
+    /** Creates a column keeping the newest {@code maxSize} points, folding every point into {@code rollups} if set. */
+    public static TimeSeriesColumn bounded(int maxSize, TimeSeriesRollups rollups) {
+        TimeSeriesColumn column = new TimeSeriesColumn(Math.min(INITIAL_CAPACITY, Math.max(1, maxSize)));
+        column.maxSize = Math.max(1, maxSize);
+        column.rollups = rollups;
+        return column;
+    }
+
+    /**
+     * Bounds an existing column like {@link #bounded}: the oldest points beyond {@code maxSize} are dropped. Tiers of
+     * {@code rollups} whose width the column's current rollups also have take over their buckets, which reach further
+     * back than the raw points; the other tiers are rebuilt from the remaining points. A mapped column stays mapped.
+     */
+    public synchronized void bound(int maxSize, TimeSeriesRollups rollups) {
+        this.maxSize = Math.max(1, maxSize);
+        if (size > this.maxSize) {
+            dropOldest(size - this.maxSize);
+        }
+        TimeSeriesRollups previous = this.rollups;
+        this.rollups = rollups;
+        if (rollups != null) {
+            boolean[] restored = previous == null ? null : rollups.restoreFrom(previous);
+            for (int i = 0; i < size; i++) {
+                rollups.add(timestampAt(i), valueAt(i), restored);
+            }
+        }
+    }
+
+    public synchronized void append(long timestamp, double value) {
+        if (mappedTimestamps != null) {
+            copyToHeap();
+        }
+        insert(timestamp, value);
+    }
+
+    /** Appends all points of the slice, replacing the values of timestamps that are already present. */
+    public synchronized void merge(TimeSeriesSlice points) {
+        if (points.size() == 0) {
+            return;
+        }
+        if (mappedTimestamps != null) {
+            copyToHeap();
+        }
+        ensureCapacity((int) Math.min(maxSize, (long) size + points.size()));
+        long[] newTimestamps = points.getTimestamps();
+        double[] newValues = points.getValues();
+        for (int i = 0; i < newTimestamps.length; i++) {
+            insert(newTimestamps[i], newValues[i]);
+        }
+    }
+
+    private void insert(long timestamp, double value) {
+        if (size == 0 || timestamp > timestampAt(size - 1)) {
+            if (size == maxSize) {
+                dropOldest(1);
+            }
+            ensureCapacity(size + 1);
+            int slot = slot(size);
+            timestamps[slot] = timestamp;
+            values[slot] = value;
+            size++;
+            addToRollups(timestamp, value);
+            return;
+        }
+        int index = lowerBound(timestamp);
+        if (index < size && timestampAt(index) == timestamp) {
+            int slot = slot(index);
+            if (rollups != null) {
+                rollups.replace(timestamp, values[slot], value);
+            }
+            values[slot] = value;
+            return;
+        }
+        if (size == maxSize) {
+            if (index == 0) {
+                // Older than every retained point
+                return;
+            }
+            dropOldest(1);
+            index--;
+        }
+        addToRollups(timestamp, value);
+        ensureCapacity(size + 1);
+        linearize(timestamps.length);
+        System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        timestamps[index] = timestamp;
+        values[index] = value;
+        size++;
+    }
+
+    private void addToRollups(long timestamp, double value) {
+        if (rollups != null) {
+            rollups.add(timestamp, value);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Returns the latest timestamp, or {@link Long#MIN_VALUE} when the column is empty. */
+    public synchronized long lastTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : timestampAt(size - 1);
+    }
+
+    /** Copies the points with {@code from <= timestamp <= to}. */
+    public synchronized TimeSeriesSlice slice(long from, long to) {
+        int start = lowerBound(from);
+        int end = to == Long.MAX_VALUE ? size : lowerBound(to + 1);
+        if (start >= end) {
+            return TimeSeriesSlice.EMPTY;
+        }
+        long[] sliceTimestamps = new long[end - start];
+        double[] sliceValues = new double[end - start];
+        if (mappedTimestamps != null) {
+            mappedTimestamps.get(start, sliceTimestamps);
+            mappedValues.get(start, sliceValues);
+        } else {
+            copy(start, end - start, sliceTimestamps, sliceValues);
+        }
+        return new TimeSeriesSlice(sliceTimestamps, sliceValues);
+    }
+
+    /**
+     * Copies the rollup buckets of the given width that start in {@code [from, to]}; {@code null} if the column keeps
+     * no rollups of that width.
+     */
+    public synchronized RollupSlice rollup(long widthMillis, long from, long to) {
+        return rollups == null ? null : rollups.slice(widthMillis, from, to);
+    }
+
+    /** The tiers of the column's rollups, finest first; empty if it keeps none. */
+    public synchronized List<TimeSeriesRollups.Tier> rollupTiers() {
+        return rollups == null ? List.of() : rollups.tiers();
+    }
+
+    public synchronized void trimToSize() {
+        if (timestamps != null && timestamps.length > size) {
+            linearize(Math.max(1, size));
+        }
+    }
+
+    private long timestampAt(int index) {
+        return mappedTimestamps != null ? mappedTimestamps.get(index) : timestamps[slot(index)];
+    }
+
+    private double valueAt(int index) {
+        return mappedValues != null ? mappedValues.get(index) : values[slot(index)];
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return slot >= timestamps.length ? slot - timestamps.length : slot;
+    }
+
+    private void dropOldest(int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (mappedTimestamps != null) {
+            mappedTimestamps = mappedTimestamps.slice(count, size - count);
+            mappedValues = mappedValues.slice(count, size - count);
+        } else {
+            head = slot(count);
+        }
+        size -= count;
+    }
+
+    /** Copies points {@code [start, start + length)} of the heap ring to the start of the arrays. */
+    private void copy(int start, int length, long[] toTimestamps, double[] toValues) {
+        int first = slot(start);
+        int firstPart = Math.min(length, timestamps.length - first);
+        System.arraycopy(timestamps, first, toTimestamps, 0, firstPart);
+        System.arraycopy(values, first, toValues, 0, firstPart);
+        System.arraycopy(timestamps, 0, toTimestamps, firstPart, length - firstPart);
+        System.arraycopy(values, 0, toValues, firstPart, length - firstPart);
+    }
+
+    /** Moves the points to the start of new arrays of the given capacity, so that {@code head} is 0. */
+    private void linearize(int capacity) {
+        if (head == 0 && capacity == timestamps.length) {
+            return;
+        }
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+        copy(0, size, newTimestamps, newValues);
+        timestamps = newTimestamps;
+        values = newValues;
+        head = 0;
+    }
+
+    private void copyToHeap() {
+        timestamps = new long[Math.min(maxSize, Math.max(INITIAL_CAPACITY, size + (size >> 1)))];
+        values = new double[timestamps.length];
+        head = 0;
+        mappedTimestamps.get(0, timestamps, 0, size);
+        mappedValues.get(0, values, 0, size);
+        mappedTimestamps = null;
+        mappedValues = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            int newCapacity = (int) Math.min(maxSize, Math.max(capacity, timestamps.length + (timestamps.length >> 1)));
+            linearize(newCapacity);
+        }
+    }
+
+    /** Index of the first point with a timestamp {@code >= timestamp}, or {@code size} if there is none. */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,268 @@
+package dev.coral.store;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Pre-aggregated min/max/sum/count of one MTS at several resolutions. Each tier is a ring of fixed-width buckets
+ * covering its retention, so a tier holds a constant number of buckets however long the series runs. A point is
+ * folded into the bucket of every tier in O(1). A bucket slot still holding an older bucket is reset when a newer
+ * point lands on it, and a point older than the bucket in its slot is outside the tier's retention and is ignored.
+ * <p>
+ * Not thread-safe; {@link TimeSeriesColumn} calls it while holding its own monitor.
+ */
+public final class TimeSeriesRollups {
+
+    private final Tier[] tiers;
+    private final long[][] starts;
+    private final double[][] mins;
+    private final double[][] maxs;
+    private final double[][] sums;
+    private final long[][] counts;
+    private final long[] newest;
+
+    public TimeSeriesRollups(List<Tier> tiers) {
+        int size = tiers.size();
+        this.tiers = tiers.toArray(new Tier[0]);
+        this.starts = new long[size][];
+        this.mins = new double[size][];
+        this.maxs = new double[size][];
+        this.sums = new double[size][];
+        this.counts = new long[size][];
+        this.newest = new long[size];
+        for (int t = 0; t < size; t++) {
+            int buckets = this.tiers[t].getBuckets();
+            starts[t] = new long[buckets];
+            Arrays.fill(starts[t], Long.MIN_VALUE);
+            mins[t] = new double[buckets];
+            maxs[t] = new double[buckets];
+            sums[t] = new double[buckets];
+            counts[t] = new long[buckets];
+            newest[t] = Long.MIN_VALUE;
+        }
+    }
+
+    public void add(long timestamp, double value) {
+        add(timestamp, value, null);
+    }
+
+    /** Folds a point into the tiers {@code skip} does not mark, or into every tier if it is {@code null}. */
+    void add(long timestamp, double value, boolean[] skip) {
+        for (int t = 0; t < tiers.length; t++) {
+            if (skip != null && skip[t]) {
+                continue;
+            }
+            int slot = slot(t, timestamp);
+            if (slot < 0) {
+                continue;
+            }
+            if (counts[t][slot] == 0) {
+                mins[t][slot] = value;
+                maxs[t][slot] = value;
+            } else {
+                mins[t][slot] = Math.min(mins[t][slot], value);
+                maxs[t][slot] = Math.max(maxs[t][slot], value);
+            }
+            sums[t][slot] += value;
+            counts[t][slot]++;
+        }
+    }
+
+    /**
+     * Replaces the value of an already counted point. The sum is corrected exactly; min and max can only widen,
+     * since the bucket does not know whether the old value was its extreme.
+     */
+    public void replace(long timestamp, double oldValue, double newValue) {
+        for (int t = 0; t < tiers.length; t++) {
+            long bucket = Math.floorDiv(timestamp, tiers[t].getWidthMillis());
+            long start = bucket * tiers[t].getWidthMillis();
+            int slot = (int) Math.floorMod(bucket, (long) tiers[t].getBuckets());
+            if (starts[t][slot] != start || counts[t][slot] == 0) {
+                continue;
+            }
+            sums[t][slot] += newValue - oldValue;
+            mins[t][slot] = Math.min(mins[t][slot], newValue);
+            maxs[t][slot] = Math.max(maxs[t][slot], newValue);
+        }
+    }
+
+    /**
+     * Copies the buckets of every tier of {@code other} into the tier of this one with the same width, as far as this
+     * tier's retention reaches.
+     *
+     * @return per tier of this one, whether it was restored from {@code other}
+     */
+    boolean[] restoreFrom(TimeSeriesRollups other) {
+        boolean[] restored = new boolean[tiers.length];
+        for (int t = 0; t < tiers.length; t++) {
+            RollupSlice buckets = other.slice(tiers[t].getWidthMillis(), Long.MIN_VALUE, Long.MAX_VALUE);
+            if (buckets != null) {
+                load(t, buckets);
+                restored[t] = true;
+            }
+        }
+        return restored;
+    }
+
+    /** Adds whole buckets, e.g. read from a snapshot, to tier {@code t}; buckets must be in ascending order. */
+    void load(int t, RollupSlice buckets) {
+        for (int i = 0; i < buckets.size(); i++) {
+            if (buckets.getCount()[i] <= 0) {
+                continue;
+            }
+            int slot = slot(t, buckets.getTimestamps()[i]);
+            if (slot < 0) {
+                continue;
+            }
+            if (counts[t][slot] == 0) {
+                mins[t][slot] = buckets.getMin()[i];
+                maxs[t][slot] = buckets.getMax()[i];
+            } else {
+                mins[t][slot] = Math.min(mins[t][slot], buckets.getMin()[i]);
+                maxs[t][slot] = Math.max(maxs[t][slot], buckets.getMax()[i]);
+            }
+            sums[t][slot] += buckets.getSum()[i];
+            counts[t][slot] += buckets.getCount()[i];
+        }
+    }
+
+    /** The tiers, finest first as configured. */
+    public List<Tier> tiers() {
+        return List.of(tiers);
+    }
+
+    /** Resolutions of the tiers, finest first as configured. */
+    public long[] widthsMillis() {
+        long[] widths = new long[tiers.length];
+        for (int t = 0; t < tiers.length; t++) {
+            widths[t] = tiers[t].getWidthMillis();
+        }
+        return widths;
+    }
+
+    /**
+     * Copies the non-empty buckets of the tier with the given width whose start lies in {@code [from, to]}, or
+     * {@code null} if there is no such tier.
+     */
+    public RollupSlice slice(long widthMillis, long from, long to) {
+        for (int t = 0; t < tiers.length; t++) {
+            if (tiers[t].getWidthMillis() == widthMillis) {
+                return slice(t, from, to);
+            }
+        }
+        return null;
+    }
+
+    private RollupSlice slice(int t, long from, long to) {
+        if (newest[t] == Long.MIN_VALUE) {
+            return RollupSlice.EMPTY;
+        }
+        long width = tiers[t].getWidthMillis();
+        int buckets = tiers[t].getBuckets();
+        long last = Math.min(Math.floorDiv(to, width), Math.floorDiv(newest[t], width));
+        long first = Math.max(Math.floorDiv(from, width) + (Math.floorMod(from, width) == 0 ? 0 : 1),
+            Math.floorDiv(newest[t], width) - buckets + 1);
+        List<Integer> slots = new ArrayList<>();
+        for (long bucket = first; bucket <= last; bucket++) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets);
+            if (starts[t][slot] == bucket * width && counts[t][slot] > 0) {
+                slots.add(slot);
+            }
+        }
+        int size = slots.size();
+        long[] timestamps = new long[size];
+        double[] min = new double[size];
+        double[] max = new double[size];
+        double[] sum = new double[size];
+        long[] count = new long[size];
+        for (int i = 0; i < size; i++) {
+            int slot = slots.get(i);
+            timestamps[i] = starts[t][slot];
+            min[i] = mins[t][slot];
+            max[i] = maxs[t][slot];
+            sum[i] = sums[t][slot];
+            count[i] = counts[t][slot];
+        }
+        return new RollupSlice(timestamps, min, max, sum, count);
+    }
+
+    /** Slot of the point's bucket in tier {@code t}, reset if it held an older bucket; -1 if the point is too old. */
+    private int slot(int t, long timestamp) {
+        long width = tiers[t].getWidthMillis();
+        long bucket = Math.floorDiv(timestamp, width);
+        long start = bucket * width;
+        int slot = (int) Math.floorMod(bucket, (long) tiers[t].getBuckets());
+        if (starts[t][slot] != start) {
+            if (starts[t][slot] > start) {
+                return -1;
+            }
+            starts[t][slot] = start;
+            sums[t][slot] = 0;
+            counts[t][slot] = 0;
+        }
+        newest[t] = Math.max(newest[t], start);
+        return slot;
+    }
+
+    /** One resolution: buckets of {@code widthMillis}, {@code buckets} of them retained. */
+    public static final class Tier {
+        private final long widthMillis;
+        private final int buckets;
+
+        public Tier(Duration width, Duration retention) {
+            if (width.isZero() || width.isNegative() || retention.compareTo(width) < 0) {
+                throw new IllegalArgumentException("Invalid rollup tier " + width + " retained for " + retention);
+            }
+            this.widthMillis = width.toMillis();
+            this.buckets = (int) Math.min(Integer.MAX_VALUE, retention.toMillis() / widthMillis);
+        }
+
+        /** Parses {@code <width>:<retention>}, e.g. {@code 5m:1d}, with s, m, h or d units. */
+        public static Tier parse(String spec) {
+            int separator = spec.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected <width>:<retention> but got " + spec);
+            }
+            return new Tier(parseDuration(spec.substring(0, separator)), parseDuration(spec.substring(separator + 1)));
+        }
+
+        public static List<Tier> parseAll(List<String> specs) {
+            List<Tier> tiers = new ArrayList<>(specs.size());
+            for (String spec : specs) {
+                tiers.add(parse(spec.trim()));
+            }
+            return tiers;
+        }
+
+        public long getWidthMillis() {
+            return widthMillis;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public static Duration parseDuration(String value) {
+            String trimmed = value.trim().toLowerCase(Locale.ROOT);
+            if (trimmed.length() < 2) {
+                throw new IllegalArgumentException("Invalid duration " + value);
+            }
+            long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+            switch (trimmed.charAt(trimmed.length() - 1)) {
+                case 's':
+                    return Duration.ofSeconds(amount);
+                case 'm':
+                    return Duration.ofMinutes(amount);
+                case 'h':
+                    return Duration.ofHours(amount);
+                case 'd':
+                    return Duration.ofDays(amount);
+                default:
+                    throw new IllegalArgumentException("Invalid duration " + value);
+            }
+        }
+    }
+}
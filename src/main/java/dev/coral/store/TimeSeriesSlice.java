@@ -0,0 +1,35 @@
+package dev.coral.store;
+
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * A copied range of one MTS, serialized column-wise as {@code {"timestamps": [...], "values": [...]}}.
+ */
+@Introspected
+@Serdeable
+public final class TimeSeriesSlice {
+
+    public static final TimeSeriesSlice EMPTY = new TimeSeriesSlice(new long[0], new double[0]);
+
+    private final long[] timestamps;
+    private final double[] values;
+
+    public TimeSeriesSlice(long[] timestamps, double[] values) {
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+}
@@ -0,0 +1,245 @@
+package dev.coral.store;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.coral.config.TimeSeriesConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * In-memory time-series data keyed by org -> service -> metric -> tsid, each MTS held as a
+ * {@link TimeSeriesColumn}. Reads are range scans over the columns and never re-parse JSON.
+ * <p>
+ * Every column is a ring of at most {@code rawPoints} points that also maintains the configured
+ * {@link TimeSeriesRollups}, so memory per MTS is fixed regardless of uptime.
+ */
+@Singleton
+public class TimeSeriesStore {
+
+    private static final int DEFAULT_RAW_POINTS = 3600;
+    private static final List<String> DEFAULT_ROLLUPS = List.of("1m:2h", "5m:1d", "1h:7d");
+
+    private final Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> series = new ConcurrentHashMap<>();
+    private final int rawPoints;
+    private final List<TimeSeriesRollups.Tier> tiers;
+
+    public TimeSeriesStore() {
+        this(DEFAULT_RAW_POINTS, TimeSeriesRollups.Tier.parseAll(DEFAULT_ROLLUPS));
+    }
+
+    @Inject
+    public TimeSeriesStore(TimeSeriesConfig config) {
+        this(config.getRawPoints(), TimeSeriesRollups.Tier.parseAll(config.getRollups()));
+    }
+
+    public TimeSeriesStore(int rawPoints, List<TimeSeriesRollups.Tier> tiers) {
+        this.rawPoints = rawPoints;
+        this.tiers = List.copyOf(tiers);
+    }
+
+    /**
+     * Merges the points of a {@code /v1/timeserieswindow} response into the stored series of a metric. Series not
+     * yet stored are added; the rings of full series drop their oldest points. The columns of the metric are
+     * resolved and written inside {@code compute}, so that a concurrent {@link #remove} cannot drop the metric's map
+     * while points are merged into it.
+     *
+     * @return the number of points received
+     */
+    public int mergeWindow(String org, String serviceName, String metricName, String timeSeriesWindowJson)
+        throws IOException {
+        Map<String, TimeSeriesColumn> received = TimeSeriesWindowParser.parse(timeSeriesWindowJson);
+        int points = 0;
+        for (TimeSeriesColumn column : received.values()) {
+            points += column.size();
+        }
+        metrics(org, serviceName).compute(metricName, (k, existing) -> {
+            Map<String, TimeSeriesColumn> columns = existing == null ? new ConcurrentHashMap<>() : existing;
+            for (Map.Entry<String, TimeSeriesColumn> entry : received.entrySet()) {
+                columns.computeIfAbsent(entry.getKey(), tsid -> newColumn())
+                    .merge(entry.getValue().slice(Long.MIN_VALUE, Long.MAX_VALUE));
+            }
+            return columns;
+        });
+        return points;
+    }
+
+    /** Latest stored timestamp per tsid of a metric. */
+    public Map<String, Long> lastTimestamps(String org, String serviceName, String metricName) {
+        Map<String, Long> lastTimestamps = new LinkedHashMap<>();
+        columns(org, serviceName, metricName).forEach((tsid, column) -> {
+            long lastTimestamp = column.lastTimestamp();
+            if (lastTimestamp != Long.MIN_VALUE) {
+                lastTimestamps.put(tsid, lastTimestamp);
+            }
+        });
+        return lastTimestamps;
+    }
+
+    /**
+     * Start of an incremental refresh of a metric. A window query covers every MTS of the metric, so it starts at
+     * the oldest of their last stored timestamps. That last point is fetched again, in case it was still being
+     * filled. The whole window is fetched if nothing is stored yet or if one of {@code newTsids}, the MTS first
+     * discovered in the current run, has no stored points. MTS that were catalogued earlier but never reported do
+     * not count, so a dead MTS does not force the whole window on every run.
+     */
+    public long refreshStart(String org, String serviceName, String metricName, long windowStart,
+                             Set<String> newTsids) {
+        Map<String, Long> lastTimestamps = lastTimestamps(org, serviceName, metricName);
+        if (lastTimestamps.isEmpty() || !lastTimestamps.keySet().containsAll(newTsids)) {
+            return windowStart;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (long lastTimestamp : lastTimestamps.values()) {
+            oldest = Math.min(oldest, lastTimestamp);
+        }
+        return Math.max(windowStart, oldest);
+    }
+
+    public void append(String org, String serviceName, String metricName, String tsid, long timestamp, double value) {
+        metrics(org, serviceName).compute(metricName, (k, existing) -> {
+            Map<String, TimeSeriesColumn> columns = existing == null ? new ConcurrentHashMap<>() : existing;
+            columns.computeIfAbsent(tsid, id -> newColumn()).append(timestamp, value);
+            return columns;
+        });
+    }
+
+    /** Points of every MTS of a metric with {@code from <= timestamp <= to}, keyed by tsid. */
+    public Map<String, TimeSeriesSlice> scan(String org, String serviceName, String metricName, long from, long to) {
+        Map<String, TimeSeriesSlice> slices = new LinkedHashMap<>();
+        for (Map.Entry<String, TimeSeriesColumn> entry : columns(org, serviceName, metricName).entrySet()) {
+            slices.put(entry.getKey(), entry.getValue().slice(from, to));
+        }
+        return slices;
+    }
+
+    public TimeSeriesSlice scan(String org, String serviceName, String metricName, String tsid, long from, long to) {
+        TimeSeriesColumn column = columns(org, serviceName, metricName).get(tsid);
+        return column == null ? TimeSeriesSlice.EMPTY : column.slice(from, to);
+    }
+
+    /**
+     * Rollup buckets of the given width of every MTS of a metric whose start lies in {@code [from, to]}, keyed by
+     * tsid; {@code null} if no tier has that width.
+     */
+    public Map<String, RollupSlice> rollups(String org, String serviceName, String metricName, long widthMillis,
+                                            long from, long to) {
+        if (tiers.stream().noneMatch(tier -> tier.getWidthMillis() == widthMillis)) {
+            return null;
+        }
+        Map<String, RollupSlice> slices = new LinkedHashMap<>();
+        for (Map.Entry<String, TimeSeriesColumn> entry : columns(org, serviceName, metricName).entrySet()) {
+            RollupSlice slice = entry.getValue().rollup(widthMillis, from, to);
+            slices.put(entry.getKey(), slice == null ? RollupSlice.EMPTY : slice);
+        }
+        return slices;
+    }
+
+    /** Number of stored points per org, service and metric. */
+    public Map<String, Map<String, Map<String, Integer>>> summary() {
+        Map<String, Map<String, Map<String, Integer>>> summary = new LinkedHashMap<>();
+        series.forEach((org, services) -> {
+            Map<String, Map<String, Integer>> byService = new LinkedHashMap<>();
+            services.forEach((serviceName, metrics) -> {
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                metrics.forEach((metricName, columns) -> {
+                    int points = 0;
+                    for (TimeSeriesColumn column : columns.values()) {
+                        points += column.size();
+                    }
+                    counts.put(metricName, points);
+                });
+                byService.put(serviceName, counts);
+            });
+            summary.put(org, byService);
+        });
+        return summary;
+    }
+
+    /**
+     * Drops the series of an MTS, e.g. one expired from the {@link MtsCatalog}, and the metric once it has no series
+     * left. Both happen in one {@code computeIfPresent}, atomically with merges and appends to the metric.
+     */
+    public void remove(String org, String serviceName, String metricName, String tsid) {
+        Map<String, Map<String, Map<String, TimeSeriesColumn>>> services = series.get(org);
+        Map<String, Map<String, TimeSeriesColumn>> metrics = services == null ? null : services.get(serviceName);
+        if (metrics == null) {
+            return;
+        }
+        metrics.computeIfPresent(metricName, (k, columns) -> {
+            columns.remove(tsid);
+            return columns.isEmpty() ? null : columns;
+        });
+    }
+
+    /** Number of stored MTS across all orgs. */
+    public int mtsCount() {
+        int count = 0;
+        for (Map<String, Map<String, Map<String, TimeSeriesColumn>>> services : series.values()) {
+            for (Map<String, Map<String, TimeSeriesColumn>> metrics : services.values()) {
+                for (Map<String, TimeSeriesColumn> columns : metrics.values()) {
+                    count += columns.size();
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Number of raw points held across all orgs. */
+    public long pointCount() {
+        long count = 0;
+        for (Map<String, Map<String, Map<String, TimeSeriesColumn>>> services : series.values()) {
+            for (Map<String, Map<String, TimeSeriesColumn>> metrics : services.values()) {
+                for (Map<String, TimeSeriesColumn> columns : metrics.values()) {
+                    for (TimeSeriesColumn column : columns.values()) {
+                        count += column.size();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Read-only view of the stored columns, keyed by org -> service -> metric -> tsid. */
+    public Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> view() {
+        return Collections.unmodifiableMap(series);
+    }
+
+    /**
+     * Replaces all stored series, e.g. with the mapped columns of a snapshot. The columns are bounded to the ring
+     * capacity. Rollup tiers the snapshot kept are taken over for tiers of the same width; any other tier is rebuilt
+     * from the raw points the columns hold.
+     */
+    public void restore(Map<String, Map<String, Map<String, Map<String, TimeSeriesColumn>>>> restored) {
+        series.clear();
+        restored.forEach((org, services) -> services.forEach((serviceName, metrics) ->
+            metrics.forEach((metricName, columns) -> {
+                columns.values().forEach(column -> column.bound(rawPoints, new TimeSeriesRollups(tiers)));
+                metrics(org, serviceName).put(metricName, new ConcurrentHashMap<>(columns));
+            })));
+    }
+
+    public boolean isEmpty() {
+        return series.isEmpty();
+    }
+
+    private TimeSeriesColumn newColumn() {
+        return TimeSeriesColumn.bounded(rawPoints, new TimeSeriesRollups(tiers));
+    }
+
+    private Map<String, TimeSeriesColumn> columns(String org, String serviceName, String metricName) {
+        return series.getOrDefault(org, Collections.emptyMap())
+            .getOrDefault(serviceName, Collections.emptyMap())
+            .getOrDefault(metricName, Collections.emptyMap());
+    }
+
+    private Map<String, Map<String, TimeSeriesColumn>> metrics(String org, String serviceName) {
+        return series.computeIfAbsent(org, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,68 @@
+package dev.coral.store;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+
+import dev.coral.utils.JsonFactories;
+
+/**
+ * Streams a {@code /v1/timeserieswindow} response of the form
+ * {@code {"data": {"<tsid>": [[timestamp, value], ...]}, "errors": [...]}} straight into columns,
+ * without building a tree. Points with a {@code null} value are dropped.
+ */
+public final class TimeSeriesWindowParser {
+
+    private static final JsonFactory JSON_FACTORY = JsonFactories.newJsonFactory();
+
+    private TimeSeriesWindowParser() {
+    }
+
+    public static Map<String, TimeSeriesColumn> parse(String json) throws IOException {
+        Map<String, TimeSeriesColumn> columns = new LinkedHashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a time series window object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("data".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    readData(parser, columns);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static void readData(JsonParser parser, Map<String, TimeSeriesColumn> columns) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String tsid = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            TimeSeriesColumn column = columns.computeIfAbsent(tsid, k -> new TimeSeriesColumn());
+            while (parser.nextToken() == JsonToken.START_ARRAY) {
+                parser.nextToken();
+                long timestamp = parser.getLongValue();
+                JsonToken valueToken = parser.nextToken();
+                if (valueToken != JsonToken.VALUE_NULL) {
+                    column.append(timestamp, parser.getDoubleValue());
+                }
+                // Skip anything after [timestamp, value]
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+            column.trimToSize();
+        }
+    }
+}
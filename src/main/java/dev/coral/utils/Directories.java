@@ -0,0 +1,20 @@
+package dev.coral.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Resolves the configured data directories ({@code coral.file-writer.dir}, {@code coral.alert-log.dir}). Absolute
+ * directories are used as they are; relative ones are resolved against the user's home directory, so that the same
+ * value means the same place whichever component reads it.
+ */
+public final class Directories {
+
+    private Directories() {
+    }
+
+    public static Path resolve(String dir) {
+        Path path = Paths.get(dir);
+        return path.isAbsolute() ? path : Paths.get(System.getProperty("user.home")).resolve(path);
+    }
+}
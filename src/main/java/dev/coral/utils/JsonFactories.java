@@ -0,0 +1,22 @@
+package dev.coral.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+
+/**
+ * Jackson factories for parsing on request threads. Jackson's default buffer recycling keeps one buffer set per
+ * thread in a {@code ThreadLocal}; with a virtual thread per request every request would allocate fresh buffers
+ * and never reuse them. These factories recycle buffers through a shared pool instead, which works the same on
+ * platform and virtual threads.
+ */
+public final class JsonFactories {
+
+    private JsonFactories() {
+    }
+
+    public static JsonFactory newJsonFactory() {
+        return JsonFactory.builder()
+            .recyclerPool(JsonRecyclerPools.sharedConcurrentDequePool())
+            .build();
+    }
+}
@@ -1,48 +1,260 @@
 package dev.coral.utils.metrics;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 
+import dev.coral.config.FileWriterConfig;
+import dev.coral.utils.Directories;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Saves objects as pretty-printed JSON files named {@code <name>_<timestamp>.json} on a background thread.
+ * {@link #save} only enqueues; when the bounded queue is full callers wait up to the enqueue timeout and are then
+ * rejected. The writer drains up to a batch of records at a time, streams each one straight into its file channel,
+ * and forces the whole batch to disk together before completing the returned futures (group commit). A name that
+ * is already taken within the same second gets a {@code -<n>} suffix instead of overwriting the earlier file.
+ * Pending records are written before shutdown completes.
+ */
 @Slf4j
+@Singleton
 public class LocalFileWriter {
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter WRITER = new ObjectMapper()
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .writerWithDefaultPrettyPrinter();
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd_hh-mm-ss-a")
+        .withZone(ZoneId.systemDefault());
+    private static final Record SHUTDOWN = new Record(null, null, 0);
 
-    public static void save(String fileName, Object content) {
-        String userHome = System.getProperty("user.home");
-        Path folderPath = Paths.get(userHome, ".coral");
+    private final Path directory;
+    private final BlockingQueue<Record> queue;
+    private final int maxBatchSize;
+    private final Duration enqueueTimeout;
+    private final boolean fsync;
+    private final Thread writer;
+    private volatile boolean closed;
 
-        File directory = folderPath.toFile();
-        if (!directory.exists()) {
-            directory.mkdirs();
+    @Inject
+    public LocalFileWriter(FileWriterConfig config) {
+        this(Directories.resolve(config.getDir()), config.getQueueCapacity(), config.getMaxBatchSize(),
+            config.getEnqueueTimeout(), config.isFsync());
+    }
+
+    public LocalFileWriter(Path directory, int queueCapacity, int maxBatchSize, Duration enqueueTimeout, boolean fsync) {
+        this.directory = directory;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.enqueueTimeout = enqueueTimeout;
+        this.fsync = fsync;
+        this.writer = new Thread(this::run, "coral-file-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues {@code content} to be written; strings are written as they are, anything else as JSON.
+     *
+     * @return completes with the written file once it is on disk
+     * @throws RejectedExecutionException if the writer is closed or the queue stays full for the enqueue timeout
+     */
+    public CompletableFuture<Path> save(String fileName, Object content) {
+        Record record = new Record(fileName, content, System.currentTimeMillis());
+        if (closed) {
+            throw new RejectedExecutionException("File writer is closed");
+        }
+        try {
+            if (!queue.offer(record, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("File writer queue is full, dropping " + fileName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while queueing " + fileName, e);
         }
+        // close() may have stopped the writer and drained the queue since the check above; a record still queued
+        // then would never complete. If close() has not started by now, its final drain will see the record.
+        if (closed && queue.remove(record)) {
+            throw new RejectedExecutionException("File writer is closed");
+        }
+        return record.written;
+    }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_hh-mm-ss-a");
-        String timestamp = LocalDateTime.now().format(formatter);
-        fileName = fileName + "_" + timestamp + ".json";
+    public int pending() {
+        return queue.size();
+    }
 
-        Path filePath = folderPath.resolve(fileName);
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.put(SHUTDOWN);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // Saves that raced with close() and landed behind the shutdown marker
+        Record record;
+        while ((record = queue.poll()) != null) {
+            record.written.completeExceptionally(new RejectedExecutionException("File writer is closed"));
+        }
+    }
 
-        try (FileWriter writer = new FileWriter(filePath.toFile())) {
-            writer.write(getContentAsString(content));
-        } catch (Exception e) {
-            log.error("Error writing file {}", fileName, e);
+    private void run() {
+        List<Record> batch = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, so that queued records are not lost
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            if (batch.remove(SHUTDOWN)) {
+                running = false;
+                // Records queued just before the shutdown marker still need writing
+                queue.drainTo(batch);
+            }
+            writeBatch(batch);
+            batch.clear();
         }
+        log.info("File writer stopped");
     }
 
-    private static String getContentAsString(Object content) throws Exception {
+    private void writeBatch(List<Record> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.error("Could not create {}", directory, e);
+            batch.forEach(record -> record.written.completeExceptionally(e));
+            return;
+        }
+        List<OpenFile> files = new ArrayList<>(batch.size());
+        for (Record record : batch) {
+            OpenFile file = null;
+            try {
+                file = open(record);
+                write(file.channel, record.content);
+                files.add(file);
+            } catch (Exception e) {
+                log.error("Error writing file {}", record.fileName, e);
+                record.written.completeExceptionally(e);
+                if (file != null) {
+                    file.discard();
+                }
+            }
+        }
+        for (OpenFile file : files) {
+            try (FileChannel channel = file.channel) {
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                log.error("Error syncing file {}", file.path, e);
+                file.record.written.completeExceptionally(e);
+            }
+        }
+        if (fsync && !files.isEmpty()) {
+            syncDirectory();
+        }
+        for (OpenFile file : files) {
+            file.record.written.complete(file.path);
+        }
+    }
+
+    /** Creates a new file for the record, adding a {@code -<n>} suffix while the name is taken. */
+    private OpenFile open(Record record) throws IOException {
+        String base = record.fileName + "_" + TIMESTAMP.format(Instant.ofEpochMilli(record.createdAt));
+        for (int attempt = 0; ; attempt++) {
+            Path path = directory.resolve(attempt == 0 ? base + ".json" : base + "-" + attempt + ".json");
+            try {
+                return new OpenFile(record, path,
+                    FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            } catch (FileAlreadyExistsException e) {
+                // Same name within the same second, try the next suffix
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, Object content) throws IOException {
         if (content instanceof String) {
-            return (String) content;
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode((String) content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return;
+        }
+        // The target stream is left open, the channel is closed after the batch is synced
+        WRITER.writeValue(Channels.newOutputStream(channel), content);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the files themselves are already synced
+            log.debug("Could not sync directory {}", directory, e);
+        }
+    }
+
+    private static final class OpenFile {
+        private final Record record;
+        private final Path path;
+        private final FileChannel channel;
+
+        OpenFile(Record record, Path path, FileChannel channel) {
+            this.record = record;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        void discard() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not remove partially written file {}", path, e);
+            }
+        }
+    }
+
+    private static final class Record {
+        private final String fileName;
+        private final Object content;
+        private final long createdAt;
+        private final CompletableFuture<Path> written = new CompletableFuture<>();
+
+        Record(String fileName, Object content, long createdAt) {
+            this.fileName = fileName;
+            this.content = content;
+            this.createdAt = createdAt;
         }
-        return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(content);
     }
 }
@@ -18,13 +18,20 @@ public class MTSQueryGenerator {
         return String.format("service.name:%s AND created:[%d TO %d]", serviceName, anHourAgoTime, currentTime);
     }
 
+    public static String generateQueryForServiceAt(String serviceName, long currentTime) {
+        long fifteenMinutesAgo = currentTime - 60 * 15 * 1000;
+        return String.format("service.name:%s AND created:[%d TO %d]", serviceName, fifteenMinutesAgo, currentTime);
+    }
+
     public static String appendCountToQuery(String query, int count) {
         return String.format(query+"&limit=%d", count);
     }
 
     public static String generateTimeRange(long minutesInPast) {
-        long currentTime = System.currentTimeMillis();
+        return generateTimeRange(minutesInPast, System.currentTimeMillis());
+    }
 
+    public static String generateTimeRange(long minutesInPast, long currentTime) {
       // Format to the desired output
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
             .withZone(ZoneOffset.UTC);
@@ -0,0 +1,258 @@
+package dev.coral.utils.traces;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+
+import dev.coral.service.Span;
+import dev.coral.utils.JsonFactories;
+
+/**
+ * Reads a trace in a single streaming pass over its JSON array of spans, as returned by
+ * {@code /v2/apm/trace/{traceId}/latest}, into a {@link SpanIndex}. Only the scalar span fields and the
+ * {@code span.kind} tag are read; the rest of {@code tags}, {@code processTags}, {@code logs} and any other
+ * nested value are skipped at token level without being built. Start times are parsed to epoch microseconds.
+ * <p>
+ * Unlike a scan for the latest span, telling an exit span apart needs the children of every span, so the whole trace
+ * is held in the index: memory grows with the number of spans (their scalar fields only), not with the size of the
+ * JSON. Malformed {@code startTime} or {@code durationMicros} values are read as unknown rather than failing the trace.
+ */
+public final class ExitSpanExtractor {
+
+    private static final JsonFactory JSON_FACTORY = JsonFactories.newJsonFactory();
+
+    private ExitSpanExtractor() {
+    }
+
+    /**
+     * @return the exit span of the trace as defined by {@link SpanIndex#exitSpan()}, or {@code null} for an
+     * empty trace
+     */
+    public static Span findExitSpan(byte[] trace) throws IOException {
+        return readIndex(trace).exitSpan();
+    }
+
+    public static Span findExitSpan(File trace) throws IOException {
+        return readIndex(trace).exitSpan();
+    }
+
+    /**
+     * @return the exit span of the service in the trace as defined by {@link SpanIndex#exitSpan(String)}, or
+     * {@code null} if the service has no span in it
+     */
+    public static Span findExitSpan(byte[] trace, String serviceName) throws IOException {
+        return readIndex(trace).exitSpan(serviceName);
+    }
+
+    public static SpanIndex readIndex(byte[] trace) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(trace)) {
+            return readIndex(parser);
+        }
+    }
+
+    public static SpanIndex readIndex(File trace) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(trace)) {
+            return readIndex(parser);
+        }
+    }
+
+    public static SpanIndex readIndex(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a JSON array of spans");
+        }
+        SpanIndex.Builder builder = SpanIndex.builder();
+        SpanFields fields = new SpanFields();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            fields.read(parser);
+            builder.add(fields.toSpan(), fields.startMicros, SpanIndex.Kind.of(fields.spanKind));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses an ISO-8601 UTC timestamp such as {@code 2024-10-24T22:02:22.594381Z} into epoch microseconds.
+     * Timestamps with an offset or an unexpected shape fall back to {@link OffsetDateTime#parse}.
+     *
+     * @return the epoch microseconds, or {@link Long#MIN_VALUE} for a missing or unparseable timestamp
+     */
+    public static long epochMicros(String timestamp) {
+        if (timestamp == null) {
+            return Long.MIN_VALUE;
+        }
+        int length = timestamp.length();
+        if (length >= 20 && timestamp.charAt(length - 1) == 'Z' && timestamp.charAt(4) == '-'
+            && timestamp.charAt(7) == '-' && timestamp.charAt(10) == 'T' && timestamp.charAt(13) == ':'
+            && timestamp.charAt(16) == ':') {
+            int year = digits(timestamp, 0, 4);
+            int month = digits(timestamp, 5, 2);
+            int day = digits(timestamp, 8, 2);
+            int hour = digits(timestamp, 11, 2);
+            int minute = digits(timestamp, 14, 2);
+            int second = digits(timestamp, 17, 2);
+            if ((year | month | day | hour | minute | second) >= 0) {
+                long micros = 0;
+                int end = length - 1;
+                if (end > 19) {
+                    if (timestamp.charAt(19) != '.') {
+                        return parseSlow(timestamp);
+                    }
+                    int scale = 100_000;
+                    for (int i = 20; i < end; i++) {
+                        int digit = timestamp.charAt(i) - '0';
+                        if (digit < 0 || digit > 9) {
+                            return parseSlow(timestamp);
+                        }
+                        micros += digit * scale;
+                        scale /= 10;
+                    }
+                }
+                long seconds = epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+                return seconds * 1_000_000L + micros;
+            }
+        }
+        return parseSlow(timestamp);
+    }
+
+    private static long parseSlow(String timestamp) {
+        try {
+            return ChronoUnit.MICROS.between(Instant.EPOCH, OffsetDateTime.parse(timestamp));
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /** Parses {@code count} decimal digits, or returns -1 if any character is not a digit. */
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date. */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /** The scalar fields and {@code span.kind} of one span, reused across spans. */
+    private static final class SpanFields {
+        private String traceId;
+        private String spanId;
+        private String parentId;
+        private String serviceName;
+        private String operationName;
+        private String startTime;
+        private Integer durationMicros;
+        private String objectType;
+        private String spanKind;
+        private long startMicros;
+
+        void read(JsonParser parser) throws IOException {
+            traceId = null;
+            spanId = null;
+            parentId = null;
+            serviceName = null;
+            operationName = null;
+            startTime = null;
+            durationMicros = null;
+            objectType = null;
+            spanKind = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT && "tags".equals(field)) {
+                    readSpanKind(parser);
+                    continue;
+                }
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "traceId":
+                        traceId = text(parser, value);
+                        break;
+                    case "spanId":
+                        spanId = text(parser, value);
+                        break;
+                    case "parentId":
+                        parentId = text(parser, value);
+                        break;
+                    case "serviceName":
+                        serviceName = text(parser, value);
+                        break;
+                    case "operationName":
+                        operationName = text(parser, value);
+                        break;
+                    case "startTime":
+                        startTime = text(parser, value);
+                        break;
+                    case "durationMicros":
+                        durationMicros = duration(parser, value);
+                        break;
+                    case "objectType":
+                        objectType = text(parser, value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            startMicros = epochMicros(startTime);
+        }
+
+        private void readSpanKind(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String tag = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("span.kind".equals(tag) && value == JsonToken.VALUE_STRING) {
+                    spanKind = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        Span toSpan() {
+            return new Span(traceId, spanId, parentId, serviceName, operationName, startTime, durationMicros, objectType);
+        }
+
+        private static String text(JsonParser parser, JsonToken value) throws IOException {
+            return value == JsonToken.VALUE_NULL ? null : parser.getText();
+        }
+
+        /** A duration given as a number or a numeric string, truncated to whole microseconds; otherwise null. */
+        private static Integer duration(JsonParser parser, JsonToken value) throws IOException {
+            double micros;
+            if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+                micros = parser.getDoubleValue();
+            } else if (value == JsonToken.VALUE_STRING) {
+                try {
+                    micros = Double.parseDouble(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+            return micros >= Integer.MIN_VALUE && micros <= Integer.MAX_VALUE ? (int) micros : null;
+        }
+    }
+}
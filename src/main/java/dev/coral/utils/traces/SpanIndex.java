@@ -0,0 +1,366 @@
+package dev.coral.utils.traces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+import dev.coral.service.Span;
+
+/**
+ * Index over the spans of one trace, built once and then queried without rescanning the spans.
+ * Span ids are packed into longs and resolved through a primitive open-addressing map; the parent -> children
+ * adjacency is kept in compressed int arrays ({@code childOffsets}/{@code children}). Spans whose parent is not
+ * part of the trace are treated as roots.
+ * <p>
+ * An exit span is a {@link Kind#CLIENT} or {@link Kind#PRODUCER} span none of whose children belong to its own
+ * service, i.e. the last span of a service before the call leaves it.
+ */
+public final class SpanIndex {
+
+    public enum Kind {
+        SERVER, CLIENT, PRODUCER, CONSUMER, INTERNAL, UNKNOWN;
+
+        public static Kind of(String spanKind) {
+            if (spanKind == null) {
+                return UNKNOWN;
+            }
+            switch (spanKind.toLowerCase(Locale.ROOT)) {
+                case "server":
+                    return SERVER;
+                case "client":
+                    return CLIENT;
+                case "producer":
+                    return PRODUCER;
+                case "consumer":
+                    return CONSUMER;
+                case "internal":
+                    return INTERNAL;
+                default:
+                    return UNKNOWN;
+            }
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final Span[] spans;
+    private final long[] startMicros;
+    private final byte[] kinds;
+    private final int[] parents;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final int[] depths;
+    private final SpanIdMap ids;
+
+    private SpanIndex(Span[] spans, long[] startMicros, byte[] kinds) {
+        int size = spans.length;
+        this.spans = spans;
+        this.startMicros = startMicros;
+        this.kinds = kinds;
+        this.ids = new SpanIdMap(size);
+        for (int i = 0; i < size; i++) {
+            if (spans[i].getSpanId() != null) {
+                ids.putIfAbsent(spanKey(spans[i].getSpanId()), i);
+            }
+        }
+
+        this.parents = new int[size];
+        this.childOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            Object parentId = spans[i].getParentId();
+            int parent = parentId == null ? -1 : ids.get(spanKey(parentId.toString()));
+            parents[i] = parent == i ? -1 : parent;
+            if (parents[i] >= 0) {
+                childOffsets[parents[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        this.children = new int[childOffsets[size]];
+        int[] next = Arrays.copyOf(childOffsets, size);
+        for (int i = 0; i < size; i++) {
+            if (parents[i] >= 0) {
+                children[next[parents[i]]++] = i;
+            }
+        }
+
+        this.depths = new int[size];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (parents[i] < 0) {
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int span = queue[head++];
+            for (int c = childOffsets[span]; c < childOffsets[span + 1]; c++) {
+                depths[children[c]] = depths[span] + 1;
+                queue[tail++] = children[c];
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Indexes already materialized spans; their kind is unknown, so exit spans fall back to leaves. */
+    public static SpanIndex of(List<Span> trace) {
+        Builder builder = new Builder();
+        for (Span span : trace) {
+            builder.add(span, ExitSpanExtractor.epochMicros(span.getStartTime()), Kind.UNKNOWN);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return spans.length;
+    }
+
+    public Span span(int index) {
+        return spans[index];
+    }
+
+    /** Index of the span with the given id, or -1 if it is not part of the trace. */
+    public int indexOf(String spanId) {
+        return spanId == null ? -1 : ids.get(spanKey(spanId));
+    }
+
+    public int parent(int index) {
+        return parents[index];
+    }
+
+    public int childCount(int index) {
+        return childOffsets[index + 1] - childOffsets[index];
+    }
+
+    public int child(int index, int n) {
+        return children[childOffsets[index] + n];
+    }
+
+    public int depth(int index) {
+        return depths[index];
+    }
+
+    public Kind kind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    public long startMicros(int index) {
+        return startMicros[index];
+    }
+
+    public boolean isLeaf(int index) {
+        return childCount(index) == 0;
+    }
+
+    public boolean isExitSpan(int index) {
+        Kind kind = kind(index);
+        if (kind != Kind.CLIENT && kind != Kind.PRODUCER) {
+            return false;
+        }
+        String serviceName = spans[index].getServiceName();
+        for (int c = childOffsets[index]; c < childOffsets[index + 1]; c++) {
+            if (serviceName != null && serviceName.equals(spans[children[c]].getServiceName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Span> roots() {
+        List<Span> roots = new ArrayList<>();
+        for (int i = 0; i < spans.length; i++) {
+            if (parents[i] < 0) {
+                roots.add(spans[i]);
+            }
+        }
+        return roots;
+    }
+
+    public List<Span> exitSpans() {
+        List<Span> exitSpans = new ArrayList<>();
+        for (int i = 0; i < spans.length; i++) {
+            if (isExitSpan(i)) {
+                exitSpans.add(spans[i]);
+            }
+        }
+        return exitSpans;
+    }
+
+    public Map<String, List<Span>> exitSpansByService() {
+        Map<String, List<Span>> byService = new LinkedHashMap<>();
+        for (int i = 0; i < spans.length; i++) {
+            if (isExitSpan(i)) {
+                byService.computeIfAbsent(spans[i].getServiceName(), k -> new ArrayList<>()).add(spans[i]);
+            }
+        }
+        return byService;
+    }
+
+    /** The span furthest from its root, latest start first on ties; {@code null} for an empty trace. */
+    public Span deepestSpan() {
+        int best = -1;
+        for (int i = 0; i < spans.length; i++) {
+            if (isDeeperOrLater(i, best)) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : spans[best];
+    }
+
+    /**
+     * The deepest exit span of the trace, i.e. the furthest downstream outgoing call. Traces without span kinds
+     * fall back to the deepest leaf span. Ties are broken by the latest start time.
+     */
+    public Span exitSpan() {
+        int best = -1;
+        for (int i = 0; i < spans.length; i++) {
+            if (isExitSpan(i) && isDeeperOrLater(i, best)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            for (int i = 0; i < spans.length; i++) {
+                if (isLeaf(i) && isDeeperOrLater(i, best)) {
+                    best = i;
+                }
+            }
+        }
+        return best < 0 ? null : spans[best];
+    }
+
+    /**
+     * The deepest exit span of the given service, i.e. its furthest downstream outgoing call, chosen as
+     * {@link #exitSpan()} does among the spans of that service only. Services without span kinds fall back to their
+     * deepest leaf span; {@code null} if the service has no span in the trace.
+     */
+    public Span exitSpan(String serviceName) {
+        int best = -1;
+        for (int i = 0; i < spans.length; i++) {
+            if (isOfService(i, serviceName) && isExitSpan(i) && isDeeperOrLater(i, best)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            for (int i = 0; i < spans.length; i++) {
+                if (isOfService(i, serviceName) && isLeaf(i) && isDeeperOrLater(i, best)) {
+                    best = i;
+                }
+            }
+        }
+        return best < 0 ? null : spans[best];
+    }
+
+    private boolean isOfService(int index, String serviceName) {
+        return serviceName != null && serviceName.equals(spans[index].getServiceName());
+    }
+
+    private boolean isDeeperOrLater(int candidate, int best) {
+        return best < 0 || depths[candidate] > depths[best]
+            || (depths[candidate] == depths[best] && startMicros[candidate] > startMicros[best]);
+    }
+
+    /**
+     * Packs a 16-digit hex span id into a long. Other ids are hashed instead, including shorter hex ids, which
+     * would otherwise collide with the same id with leading zeros.
+     */
+    static long spanKey(String spanId) {
+        int length = spanId.length();
+        if (length == 16) {
+            long key = 0;
+            for (int i = 0; i < length; i++) {
+                int digit = Character.digit(spanId.charAt(i), 16);
+                if (digit < 0) {
+                    return hash(spanId);
+                }
+                key = (key << 4) | digit;
+            }
+            return key;
+        }
+        return hash(spanId);
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static final class Builder {
+        private Span[] spans = new Span[16];
+        private long[] startMicros = new long[16];
+        private byte[] kinds = new byte[16];
+        private int size;
+
+        public Builder add(Span span, long startMicros, Kind kind) {
+            if (size == spans.length) {
+                int capacity = size * 2;
+                this.spans = Arrays.copyOf(this.spans, capacity);
+                this.startMicros = Arrays.copyOf(this.startMicros, capacity);
+                this.kinds = Arrays.copyOf(this.kinds, capacity);
+            }
+            spans[size] = span;
+            this.startMicros[size] = startMicros;
+            kinds[size] = (byte) kind.ordinal();
+            size++;
+            return this;
+        }
+
+        public SpanIndex build() {
+            return new SpanIndex(Arrays.copyOf(spans, size), Arrays.copyOf(startMicros, size), Arrays.copyOf(kinds, size));
+        }
+    }
+
+    /** Open-addressing long -> int map with linear probing; absent keys map to -1. */
+    private static final class SpanIdMap {
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        SpanIdMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(2, expected * 2 - 1)) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(values, -1);
+        }
+
+        void putIfAbsent(long key, int value) {
+            int slot = slot(key);
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        int get(long key) {
+            int slot = slot(key);
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
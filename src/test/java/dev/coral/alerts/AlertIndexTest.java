@@ -0,0 +1,112 @@
+package dev.coral.alerts;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import dev.coral.alerts.AlertIndex.AlertQuery;
+import dev.coral.alerts.AlertIndex.AlertQueryResult;
+import dev.coral.model.SplunkAlert;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertIndexTest {
+
+  private static final long T0 = Instant.parse("2024-10-24T22:00:00Z").toEpochMilli();
+
+  @Test
+  void testFiltersNewestFirst() {
+    AlertIndex index = new AlertIndex(1000, Duration.ofDays(365_000));
+    for (int i = 0; i < 100; i++) {
+      index.add(alert(i, "d" + (i % 4), i % 2 == 0 ? "Critical" : "Minor", "svc" + (i % 5)), T0);
+    }
+
+    AlertQueryResult result = index.query(query(q -> {
+      q.setDetectorId("d0");
+      q.setSeverity("Critical");
+      q.setDimensions(Map.of("service", "svc0"));
+    }));
+    assertFalse(result.isTruncated());
+    assertEquals(List.of("i80", "i60", "i40", "i20", "i0"), ids(result));
+
+    result = index.query(query(q -> {
+      q.setDetectorId("d1");
+      q.setLimit(3);
+    }));
+    assertTrue(result.isTruncated());
+    assertEquals(List.of("i97", "i93", "i89"), ids(result));
+
+    assertEquals(List.of(), ids(index.query(query(q -> q.setStatus("ok")))));
+    assertEquals(List.of(), ids(index.query(query(q -> {
+      q.setDetectorId("d0");
+      q.setSeverity("Minor");
+    }))));
+  }
+
+  @Test
+  void testTimeRange() {
+    AlertIndex index = new AlertIndex(1000, Duration.ofDays(365_000));
+    for (int i = 0; i < 100; i++) {
+      index.add(alert(i, "d", "Critical", "svc"), T0);
+    }
+    // Out of order arrival
+    index.add(alert(5, "late", "Critical", "svc"), T0);
+
+    AlertQueryResult result = index.query(query(q -> {
+      q.setFrom(T0 + 3 * 60_000);
+      q.setTo(T0 + 6 * 60_000);
+    }));
+    assertEquals(List.of("i5", "i6", "i5", "i4", "i3"), ids(result));
+
+    result = index.query(query(q -> {
+      q.setFrom(T0 + 3 * 60_000);
+      q.setTo(T0 + 6 * 60_000);
+      q.setDetectorId("late");
+    }));
+    assertEquals(List.of("i5"), ids(result));
+  }
+
+  @Test
+  void testEvictsBySizeAndAge() {
+    AlertIndex index = new AlertIndex(10, Duration.ofDays(365_000));
+    for (int i = 0; i < 25; i++) {
+      index.add(alert(i, "d", "Critical", "svc"), T0);
+    }
+    assertEquals(10, index.size());
+    AlertQueryResult result = index.query(query(q -> q.setDetectorId("d")));
+    assertEquals(10, result.getAlerts().size());
+    assertEquals("i15", result.getAlerts().get(9).getIncidentId());
+
+    AlertIndex aged = new AlertIndex(1000, Duration.ofMinutes(1));
+    long now = System.currentTimeMillis();
+    aged.add(alert(0, "d", "Critical", "svc"), now - 120_000);
+    aged.add(alert(1, "d", "Critical", "svc"), now);
+    assertEquals(List.of("i1"), ids(aged.query(query(q -> q.setDetectorId("d")))));
+    assertEquals(1, aged.size());
+  }
+
+  private static AlertQuery query(java.util.function.Consumer<AlertQuery> customizer) {
+    AlertQuery query = new AlertQuery();
+    customizer.accept(query);
+    return query;
+  }
+
+  private static List<String> ids(AlertQueryResult result) {
+    return result.getAlerts().stream().map(SplunkAlert::getIncidentId).toList();
+  }
+
+  private static SplunkAlert alert(int minute, String detectorId, String severity, String service) {
+    SplunkAlert alert = new SplunkAlert();
+    alert.setIncidentId("i" + minute);
+    alert.setDetectorId(detectorId);
+    alert.setSeverity(severity);
+    alert.setStatus("anomalous");
+    alert.setTimestamp(Instant.ofEpochMilli(T0 + minute * 60_000L).toString());
+    alert.setDimensions(Map.of("service", service));
+    return alert;
+  }
+}
@@ -0,0 +1,94 @@
+package dev.coral.alerts;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import dev.coral.config.AlertLogConfig.Durability;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertIngestionServiceTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testDeduplicatesOnIncidentAndStatus() throws Exception {
+    AlertIngestionService service = service(Durability.WRITTEN);
+    AlertIngestionService.IngestResult first = service.ingest(bytes(
+        "[" + alert("i1", "anomalous") + "," + alert("i2", "anomalous") + "," + alert("i1", "anomalous") + "]")).join();
+    assertEquals(3, first.getReceived());
+    assertEquals(2, first.getAccepted());
+    assertEquals(1, first.getDuplicates());
+    assertEquals(0L, first.getFirstOffset());
+
+    AlertIngestionService.IngestResult second = service.ingest(bytes(alert("i1", "ok"))).join();
+    assertEquals(1, second.getAccepted());
+    assertEquals(2L, second.getFirstOffset());
+
+    AlertIngestionService.IngestResult repeated = service.ingest(bytes(alert("i2", "anomalous"))).join();
+    assertEquals(0, repeated.getAccepted());
+    assertEquals(3, service.nextOffset());
+
+    String logged = new String(service.read(0, 10).get(2), StandardCharsets.UTF_8);
+    assertTrue(logged.contains("\"incidentId\":\"i1\"") && logged.contains("\"status\":\"ok\""), logged);
+    service.close();
+  }
+
+  @Test
+  void testAcceptedDurabilityAcknowledgesBeforeWrite() throws Exception {
+    AlertIngestionService service = service(Durability.ACCEPTED);
+    AlertIngestionService.IngestResult result = service.ingest(bytes(alert("i1", "anomalous"))).join();
+    assertEquals(1, result.getAccepted());
+    assertNull(result.getFirstOffset());
+    service.close();
+    assertEquals(1, service.nextOffset());
+  }
+
+  @Test
+  void testIndexesOnlyLoggedAlerts() throws Exception {
+    AlertLog alertLog = AlertLog.open(directory, 1 << 20, 10);
+    AlertIndex alertIndex = new AlertIndex(1000, Duration.ofHours(1));
+    AlertIngestionService service = new AlertIngestionService(alertLog, alertIndex, Durability.WRITTEN, 64, 16,
+        Duration.ofSeconds(5), Duration.ofHours(1), 1000);
+    service.ingest(bytes(alert("i1", "anomalous"))).join();
+    assertEquals(1, alertIndex.size());
+
+    alertLog.close();
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> service.ingest(bytes(alert("i2", "anomalous"))).join());
+    assertNotNull(e.getCause());
+    assertEquals(1, alertIndex.size());
+  }
+
+  @Test
+  void testRejectsMalformedPayloads() throws Exception {
+    AlertIngestionService service = service(Durability.WRITTEN);
+    assertThrows(java.io.IOException.class, () -> service.ingest(bytes("\"alert\"")));
+    assertThrows(java.io.IOException.class, () -> service.ingest(bytes("[1, 2]")));
+    service.close();
+  }
+
+  private AlertIngestionService service(Durability durability) throws Exception {
+    return new AlertIngestionService(AlertLog.open(directory, 1 << 20, 10),
+        new AlertIndex(1000, Duration.ofHours(1)), durability, 64, 16,
+        Duration.ofSeconds(5), Duration.ofHours(1), 1000);
+  }
+
+  private static String alert(String incidentId, String status) {
+    return "{\"incidentId\":\"" + incidentId + "\",\"status\":\"" + status + "\",\"severity\":\"Critical\","
+        + "\"detector\":\"latency\",\"unknownField\":1}";
+  }
+
+  private static byte[] bytes(String payload) {
+    return payload.getBytes(StandardCharsets.UTF_8);
+  }
+}
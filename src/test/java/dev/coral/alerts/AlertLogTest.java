@@ -0,0 +1,86 @@
+package dev.coral.alerts;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertLogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testReadsRecordsByOffsetAcrossSegments() throws Exception {
+    try (AlertLog alertLog = AlertLog.open(directory, 64, 100)) {
+      assertEquals(0, alertLog.append(records(0, 10)));
+      assertEquals(10, alertLog.append(records(10, 10)));
+      assertEquals(20, alertLog.nextOffset());
+      assertTrue(alertLog.segmentCount() > 1);
+
+      assertEquals(strings(0, 20), strings(alertLog.read(0, 100)));
+      assertEquals(strings(7, 5), strings(alertLog.read(7, 5)));
+      assertEquals(List.of(), strings(alertLog.read(20, 5)));
+    }
+  }
+
+  @Test
+  void testRetainsNewestSegments() throws Exception {
+    try (AlertLog alertLog = AlertLog.open(directory, 64, 2)) {
+      for (int i = 0; i < 50; i++) {
+        alertLog.append(records(i, 1));
+      }
+      assertEquals(2, alertLog.segmentCount());
+      List<String> tail = strings(alertLog.read(0, 100));
+      assertEquals(alertLog.nextOffset() - alertLog.firstOffset(), tail.size());
+      assertEquals("{\"n\":49}", tail.get(tail.size() - 1));
+    }
+  }
+
+  @Test
+  void testReopensAndTruncatesPartialRecord() throws Exception {
+    try (AlertLog alertLog = AlertLog.open(directory, 1 << 20, 10)) {
+      alertLog.append(records(0, 5));
+    }
+    Path segment = directory.resolve(String.format("%020d", 0) + AlertLog.DATA_SUFFIX);
+    Files.write(segment, "{\"n\":5".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    try (AlertLog alertLog = AlertLog.open(directory, 1 << 20, 10)) {
+      assertEquals(5, alertLog.nextOffset());
+      assertEquals(5, alertLog.append(records(5, 2)));
+      assertEquals(strings(0, 7), strings(alertLog.read(0, 100)));
+    }
+  }
+
+  private static List<byte[]> records(int from, int count) {
+    List<byte[]> records = new ArrayList<>();
+    for (String record : strings(from, count)) {
+      records.add(record.getBytes(StandardCharsets.UTF_8));
+    }
+    return records;
+  }
+
+  private static List<String> strings(int from, int count) {
+    List<String> strings = new ArrayList<>();
+    for (int i = from; i < from + count; i++) {
+      strings.add("{\"n\":" + i + "}");
+    }
+    return strings;
+  }
+
+  private static List<String> strings(List<byte[]> records) {
+    List<String> strings = new ArrayList<>();
+    for (byte[] record : records) {
+      strings.add(new String(record, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,198 @@
+package dev.coral.client.splunk;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import dev.coral.client.splunk.CachingSplunkO11yClient.Operation;
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Lane;
+import dev.coral.client.splunk.SplunkRequestScheduler.Limits;
+import dev.coral.config.SplunkCacheConfig;
+import dev.coral.model.SplunkMTS;
+import dev.coral.model.SplunkTopology;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingSplunkO11yClientTest {
+
+  private final List<String> calls = new ArrayList<>();
+  private final SplunkTarget target = target("org");
+  private final SplunkTarget other = target("other");
+  private boolean answerNull;
+
+  @Test
+  void testAlignsNowToTheOperationsBucket() {
+    CachingSplunkO11yClient client = client(cacheConfig(true, Duration.ofMinutes(1), Duration.ofHours(1)));
+
+    long before = System.currentTimeMillis();
+    long mts = client.alignedNow(Operation.MTS);
+    long timeSeries = client.alignedNow(Operation.TIME_SERIES);
+    long trace = client.alignedNow(Operation.TRACE);
+    long after = System.currentTimeMillis();
+
+    assertEquals(0, mts % Duration.ofMinutes(1).toMillis());
+    assertTrue(mts > before - Duration.ofMinutes(1).toMillis() && mts <= after);
+    assertEquals(0, timeSeries % Duration.ofSeconds(10).toMillis());
+    assertTrue(timeSeries > before - Duration.ofSeconds(10).toMillis() && timeSeries <= after);
+    // Traces are not cached, so their time is not aligned
+    assertTrue(trace >= before && trace <= after);
+  }
+
+  @Test
+  void testRepeatedQueriesHitTheCache() {
+    CachingSplunkO11yClient client = client(cacheConfig(true, Duration.ofMinutes(1), Duration.ofHours(1)));
+
+    SplunkMTS first = client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    SplunkMTS second = client.getMtsPage(target, "query", 0, 10, Lane.INTERACTIVE);
+    client.getMtsPage(target, "query", 10, 10, Lane.BULK);
+    client.getMtsPage(other, "query", 0, 10, Lane.BULK);
+
+    assertSame(first, second);
+    assertEquals(List.of("mts:org:0", "mts:org:10", "mts:other:0"), calls);
+  }
+
+  @Test
+  void testEachOperationExpiresAfterItsOwnTtl() throws Exception {
+    CachingSplunkO11yClient client = client(cacheConfig(true, Duration.ofMillis(50), Duration.ofHours(1)));
+
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getSplunkTopology(target, "body", Lane.BULK);
+    Thread.sleep(150);
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getSplunkTopology(target, "body", Lane.BULK);
+
+    assertEquals(List.of("mts:org:0", "topology:org", "mts:org:0"), calls);
+  }
+
+  @Test
+  void testNullResponsesAreNotCached() {
+    CachingSplunkO11yClient client = client(cacheConfig(true, Duration.ofMinutes(1), Duration.ofHours(1)));
+    answerNull = true;
+
+    assertNull(client.getSplunkTopology(target, "body", Lane.BULK));
+    assertNull(client.getSplunkTopology(target, "body", Lane.BULK));
+
+    assertEquals(List.of("topology:org", "topology:org"), calls);
+  }
+
+  @Test
+  void testDisabledCacheCallsUpstreamEveryTime() {
+    CachingSplunkO11yClient client = client(cacheConfig(false, Duration.ofMinutes(1), Duration.ofHours(1)));
+
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+
+    assertEquals(List.of("mts:org:0", "mts:org:0"), calls);
+    assertEquals(2L, client.stats().get("MTS").get("upstreamCalls"));
+    assertEquals(0L, client.stats().get("MTS").get("hits"));
+  }
+
+  @Test
+  void testStatsCountHitsMissesAndUpstreamCallsPerOperation() {
+    CachingSplunkO11yClient client = client(cacheConfig(true, Duration.ofMinutes(1), Duration.ofHours(1)));
+
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    client.getSplunkTopology(target, "body", Lane.BULK);
+
+    Map<String, Object> mts = client.stats().get("MTS");
+    assertEquals(1L, mts.get("size"));
+    assertEquals(2L, mts.get("hits"));
+    assertEquals(1L, mts.get("misses"));
+    assertEquals(1L, mts.get("upstreamCalls"));
+    assertEquals(0L, mts.get("joinedCalls"));
+    Map<String, Object> topology = client.stats().get("TOPOLOGY");
+    assertEquals(0L, topology.get("hits"));
+    assertEquals(1L, topology.get("misses"));
+    assertEquals(1L, topology.get("upstreamCalls"));
+    assertEquals(0L, client.stats().get("TIME_SERIES").get("upstreamCalls"));
+    assertFalse(client.stats().get("TRACE").containsKey("hits"));
+
+    client.invalidateAll();
+    client.getMtsPage(target, "query", 0, 10, Lane.BULK);
+    assertEquals(2L, client.stats().get("MTS").get("upstreamCalls"));
+  }
+
+  private static CachingSplunkO11yClient client(SplunkCacheConfig config) {
+    Map<Family, Limits> limits = new EnumMap<>(Family.class);
+    for (Family family : Family.values()) {
+      limits.put(family, new Limits(1000, 1000, 1, 1, 1, Duration.ofSeconds(5)));
+    }
+    return new CachingSplunkO11yClient(new SplunkRequestScheduler(false, limits, 0, Duration.ofMillis(20)), config);
+  }
+
+  private static SplunkCacheConfig cacheConfig(boolean enabled, Duration mtsTtl, Duration topologyTtl) {
+    return new SplunkCacheConfig() {
+      @Override
+      public boolean isEnabled() {
+        return enabled;
+      }
+
+      @Override
+      public long getMaximumSize() {
+        return 100;
+      }
+
+      @Override
+      public Duration getMtsBucket() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getMtsTtl() {
+        return mtsTtl;
+      }
+
+      @Override
+      public Duration getTopologyBucket() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getTopologyTtl() {
+        return topologyTtl;
+      }
+
+      @Override
+      public Duration getTimeSeriesBucket() {
+        return Duration.ofSeconds(10);
+      }
+
+      @Override
+      public Duration getTimeSeriesTtl() {
+        return Duration.ofSeconds(10);
+      }
+    };
+  }
+
+  private SplunkTarget target(String org) {
+    return new SplunkTarget(org, "us1", "token", "http://localhost", false, client(org));
+  }
+
+  /** Records every upstream call as {@code operation:org[:offset]}. */
+  private SplunkO11yHttpClient client(String org) {
+    return (SplunkO11yHttpClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{SplunkO11yHttpClient.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getMtsPage")) {
+            calls.add("mts:" + org + ":" + args[2]);
+            return answerNull ? null : new SplunkMTS(0, false, new ArrayList<>());
+          }
+          if (method.getName().equals("getSplunkTopology")) {
+            calls.add("topology:" + org);
+            return answerNull ? null : new SplunkTopology();
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
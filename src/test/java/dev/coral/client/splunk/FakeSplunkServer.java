@@ -0,0 +1,413 @@
+package dev.coral.client.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in for the Splunk Observability API, serving the endpoints {@link SplunkO11yHttpClient} calls from the bundled
+ * {@code splunk-topology.json}, {@code splunk-mts.json} and {@code trace.json} fixtures:
+ * <ul>
+ *     <li>{@code POST /v2/apm/topology}: the fixture topology, copied {@code topology-copies} times;</li>
+ *     <li>{@code GET /v2/metrictimeseries/}: {@code mts-per-service} MTS per service, cloned from the fixture MTS and
+ *     paged by {@code offset} and {@code limit};</li>
+ *     <li>{@code GET /v1/timeserieswindow}: one point per {@code resolution} in {@code [startMS, endMS]} for every
+ *     MTS of the queried service and metric;</li>
+ *     <li>{@code GET /v2/apm/trace/{id}/latest}: the fixture trace;</li>
+ *     <li>{@code POST /v2/apm/graphql}: exemplar trace search jobs that finish after {@code search-polls} polls.</li>
+ * </ul>
+ * Every response is delayed by {@code latency} plus up to {@code jitter} milliseconds on a timer, so slow responses do
+ * not hold server threads, and fails with a 429 or a 500 at {@code throttle-rate} and {@code error-rate}.
+ * <p>
+ * Run it with {@code ./gradlew fakeSplunk -PfakeSplunkArgs="--port=8089 --mts-per-service=200"} and point a
+ * {@code coral.splunk.targets} entry at it with {@code url}, e.g. with {@code MICRONAUT_ENVIRONMENTS=fake}.
+ */
+public final class FakeSplunkServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern MTS_SERVICE = Pattern.compile("service\\.name:(\\S+)");
+    private static final Pattern WINDOW_QUERY = Pattern.compile("sf_metric:(\\S+) AND sf_service:([^)\\s]+)");
+    private static final Pattern TRACE_PATH = Pattern.compile("/v2/apm/trace/([^/]+)/latest");
+    private static final int MAX_POINTS_PER_MTS = 10_000;
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService timer;
+    private final byte[] topology;
+    private final byte[] trace;
+    private final String traceId;
+    private final List<JsonNode> mtsTemplates = new ArrayList<>();
+    private final Map<String, List<ObjectNode>> mtsByService = new ConcurrentHashMap<>();
+    private final Map<String, Integer> searchPolls = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private FakeSplunkServer(Options options) throws IOException {
+        this.options = options;
+        this.topology = MAPPER.writeValueAsBytes(scaleTopology(readFixture("splunk-topology.json"), options.topologyCopies));
+        JsonNode traceNode = readFixture("trace.json");
+        this.trace = MAPPER.writeValueAsBytes(traceNode);
+        this.traceId = traceNode.path(0).path("traceId").asText("0");
+        readFixture("splunk-mts.json").path("results").forEach(mtsTemplates::add);
+        this.timer = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "fake-splunk-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(options.port), 512);
+        this.handlers = Executors.newFixedThreadPool(options.threads);
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+    }
+
+    /** Starts a server with the given options, on an ephemeral port if {@code port} is 0. */
+    public static FakeSplunkServer start(Options options) throws IOException {
+        FakeSplunkServer fake = new FakeSplunkServer(options);
+        fake.server.start();
+        return fake;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args);
+        FakeSplunkServer fake = start(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Fake Splunk served " + fake.stats());
+            fake.close();
+        }));
+        System.out.printf("Fake Splunk listening on %s with %s%n", fake.url(), options);
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /** Requests per endpoint, and the throttled and failed responses injected. */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        requests.forEach((endpoint, count) -> stats.put(endpoint, count.sum()));
+        stats.put("throttled", throttled.sum());
+        stats.put("errors", errors.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        timer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI());
+        byte[] requestBody;
+        try (InputStream in = exchange.getRequestBody()) {
+            requestBody = in.readAllBytes();
+        }
+
+        Response response;
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < options.throttleRate) {
+            throttled.increment();
+            response = new Response(429, "{\"message\":\"Too Many Requests\"}".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseHeaders().add("Retry-After", Long.toString(options.retryAfterSeconds));
+        } else if (roll < options.throttleRate + options.errorRate) {
+            errors.increment();
+            response = new Response(500, "{\"message\":\"Injected failure\"}".getBytes(StandardCharsets.UTF_8));
+        } else {
+            try {
+                response = route(path, query, requestBody);
+            } catch (RuntimeException e) {
+                response = new Response(400, json(MAPPER.createObjectNode().put("message", String.valueOf(e.getMessage()))));
+            }
+        }
+        long delay = options.latencyMillis
+            + (options.jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(options.jitterMillis + 1) : 0);
+        Response reply = response;
+        if (delay <= 0) {
+            send(exchange, reply);
+        } else {
+            timer.schedule(() -> send(exchange, reply), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Response route(String path, Map<String, String> query, byte[] body) {
+        Matcher traceMatcher = TRACE_PATH.matcher(path);
+        if (path.startsWith("/v2/metrictimeseries")) {
+            count("metrictimeseries");
+            return new Response(200, metricTimeSeries(query));
+        } else if (path.equals("/v1/timeserieswindow")) {
+            count("timeserieswindow");
+            return new Response(200, timeSeriesWindow(query));
+        } else if (path.equals("/v2/apm/topology")) {
+            count("topology");
+            return new Response(200, topology);
+        } else if (path.equals("/v2/apm/graphql")) {
+            count("graphql");
+            return new Response(200, graphql(query.get("op"), body));
+        } else if (traceMatcher.matches()) {
+            count("trace");
+            return new Response(200, trace);
+        }
+        count("unknown");
+        return new Response(404, "{\"message\":\"Not Found\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] metricTimeSeries(Map<String, String> query) {
+        Matcher matcher = MTS_SERVICE.matcher(query.getOrDefault("query", ""));
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("No service.name in MTS query");
+        }
+        List<ObjectNode> all = mtsOf(matcher.group(1));
+        int offset = (int) Math.min(all.size(), Long.parseLong(query.getOrDefault("offset", "0")));
+        int limit = (int) Math.min(all.size() - offset, Long.parseLong(query.getOrDefault("limit", "1000")));
+        ObjectNode page = MAPPER.createObjectNode();
+        page.put("count", all.size());
+        page.put("partialCount", false);
+        ArrayNode results = page.putArray("results");
+        all.subList(offset, offset + limit).forEach(results::add);
+        return json(page);
+    }
+
+    private byte[] timeSeriesWindow(Map<String, String> query) {
+        Matcher matcher = WINDOW_QUERY.matcher(query.getOrDefault("query", ""));
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("No sf_metric and sf_service in time series window query");
+        }
+        String metric = matcher.group(1);
+        long start = Long.parseLong(query.getOrDefault("startMS", "0"));
+        long end = Long.parseLong(query.getOrDefault("endMS", "0"));
+        long resolution = Math.max(1, Long.parseLong(query.getOrDefault("resolution", "1000")));
+        long first = start + Math.floorMod(-start, resolution);
+        first = Math.max(first, end - (MAX_POINTS_PER_MTS - 1) * resolution);
+
+        ObjectNode window = MAPPER.createObjectNode();
+        ObjectNode data = window.putObject("data");
+        for (ObjectNode mts : mtsOf(matcher.group(2))) {
+            if (!metric.equals(mts.path("metric").asText())) {
+                continue;
+            }
+            String tsid = mts.path("id").asText();
+            double phase = (tsid.hashCode() & 0xffff) / 1000.0;
+            ArrayNode points = data.putArray(tsid);
+            for (long timestamp = first; timestamp <= end; timestamp += resolution) {
+                points.addArray().add(timestamp).add(100 + 50 * Math.sin(timestamp / 60_000.0 + phase));
+            }
+        }
+        window.putArray("errors");
+        return json(window);
+    }
+
+    private byte[] graphql(String op, byte[] body) {
+        ObjectNode response = MAPPER.createObjectNode();
+        ObjectNode data = response.putObject("data");
+        if ("StartExemplarTraceSearchJob".equals(op)) {
+            String jobId = "job-" + jobIds.incrementAndGet();
+            searchPolls.put(jobId, 0);
+            data.putObject("startExemplarSearch").put("jobID", jobId);
+        } else if ("GetExemplarTraceSearchJob".equals(op)) {
+            String jobId = readTree(body).path("variables").path("jobID").asText();
+            int polls = searchPolls.merge(jobId, 1, Integer::sum);
+            int total = Math.max(1, options.searchPolls);
+            ObjectNode job = data.putObject("getExemplarSearch");
+            job.put("jobID", jobId);
+            job.put("completedProcessingItems", Math.min(polls, total));
+            job.put("totalItemsToProcess", total);
+            ArrayNode items = job.putObject("results").putArray("items");
+            if (polls >= total) {
+                items.addObject().putObject("item").put("traceId", traceId);
+                searchPolls.remove(jobId);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown graphql op " + op);
+        }
+        return json(response);
+    }
+
+    /** MTS of a service: the fixture MTS cloned with the service's name and a tsid of their own. */
+    private List<ObjectNode> mtsOf(String serviceName) {
+        return mtsByService.computeIfAbsent(serviceName, name -> {
+            List<ObjectNode> mts = new ArrayList<>(options.mtsPerService);
+            for (int i = 0; i < options.mtsPerService; i++) {
+                ObjectNode clone = mtsTemplates.get(i % mtsTemplates.size()).deepCopy();
+                String tsid = String.format("F%s%05d", Integer.toHexString(name.hashCode()), i);
+                clone.put("id", tsid);
+                clone.put("source", name + "-" + i);
+                ObjectNode dimensions = clone.get("dimensions") instanceof ObjectNode existing
+                    ? existing : clone.putObject("dimensions");
+                dimensions.put("service.name", name);
+                dimensions.put("sf_service", name);
+                dimensions.put("sf_source", name + "-" + i);
+                mts.add(clone);
+            }
+            return mts;
+        });
+    }
+
+    private void count(String endpoint) {
+        requests.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+    }
+
+    private static void send(HttpExchange exchange, Response response) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            out.write(response.body);
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Topology with every node and edge repeated {@code copies} times; copy {@code k > 0} names end in {@code ~k}. */
+    static JsonNode scaleTopology(JsonNode topology, int copies) {
+        ObjectNode scaled = MAPPER.createObjectNode();
+        ObjectNode data = scaled.putObject("data");
+        ArrayNode nodes = data.putArray("nodes");
+        ArrayNode edges = data.putArray("edges");
+        for (int copy = 0; copy < Math.max(1, copies); copy++) {
+            String suffix = copy == 0 ? "" : "~" + copy;
+            for (JsonNode node : topology.path("data").path("nodes")) {
+                ObjectNode clone = node.deepCopy();
+                clone.put("serviceName", node.path("serviceName").asText() + suffix);
+                nodes.add(clone);
+            }
+            for (JsonNode edge : topology.path("data").path("edges")) {
+                ObjectNode clone = edge.deepCopy();
+                clone.put("fromNode", edge.path("fromNode").asText() + suffix);
+                clone.put("toNode", edge.path("toNode").asText() + suffix);
+                edges.add(clone);
+            }
+        }
+        return scaled;
+    }
+
+    private static JsonNode readFixture(String name) throws IOException {
+        try (InputStream in = FakeSplunkServer.class.getResourceAsStream("/json/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing fixture json/" + name);
+            }
+            return MAPPER.readTree(in);
+        }
+    }
+
+    private static JsonNode readTree(byte[] body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON body", e);
+        }
+    }
+
+    private static byte[] json(JsonNode node) {
+        try {
+            return MAPPER.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new LinkedHashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** Server settings, parsed from {@code --name=value} arguments. */
+    public static final class Options {
+        int port = 8089;
+        int threads = 16;
+        int topologyCopies = 1;
+        int mtsPerService = 20;
+        int searchPolls = 2;
+        long latencyMillis = 20;
+        long jitterMillis = 30;
+        double errorRate = 0;
+        double throttleRate = 0;
+        long retryAfterSeconds = 1;
+
+        public static Options parse(String... args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (arg.isBlank()) {
+                    continue;
+                }
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (name) {
+                    case "port" -> options.port = Integer.parseInt(value);
+                    case "threads" -> options.threads = Integer.parseInt(value);
+                    case "topology-copies" -> options.topologyCopies = Integer.parseInt(value);
+                    case "mts-per-service" -> options.mtsPerService = Integer.parseInt(value);
+                    case "search-polls" -> options.searchPolls = Integer.parseInt(value);
+                    case "latency" -> options.latencyMillis = Long.parseLong(value);
+                    case "jitter" -> options.jitterMillis = Long.parseLong(value);
+                    case "error-rate" -> options.errorRate = Double.parseDouble(value);
+                    case "throttle-rate" -> options.throttleRate = Double.parseDouble(value);
+                    case "retry-after" -> options.retryAfterSeconds = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            return options;
+        }
+
+        @Override
+        public String toString() {
+            return "topology-copies=" + topologyCopies + ", mts-per-service=" + mtsPerService
+                + ", latency=" + latencyMillis + "+" + jitterMillis + "ms, error-rate=" + errorRate
+                + ", throttle-rate=" + throttleRate;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package dev.coral.client.splunk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.coral.utils.traces.GraphQLGenerator;
+import org.junit.jupiter.api.Test;
+
+class FakeSplunkServerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  @Test
+  void testPagesMtsOfService() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(options("--mts-per-service=25"))) {
+      JsonNode first = get(fake, "/v2/metrictimeseries/?query=" + encode("service.name:matt AND created:[0 TO 1]")
+          + "&offset=0&limit=20");
+      JsonNode second = get(fake, "/v2/metrictimeseries/?query=" + encode("service.name:matt AND created:[0 TO 1]")
+          + "&offset=20&limit=20");
+
+      assertEquals(25, first.path("count").asInt());
+      assertEquals(20, first.path("results").size());
+      assertEquals(5, second.path("results").size());
+      assertEquals("matt", second.path("results").path(0).path("dimensions").path("sf_service").asText());
+    }
+  }
+
+  @Test
+  void testServesWindowOfQueriedMetric() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(options("--mts-per-service=20"))) {
+      JsonNode mts = get(fake, "/v2/metrictimeseries/?query=" + encode("service.name:svc") + "&offset=0&limit=20");
+      String metric = mts.path("results").path(0).path("metric").asText();
+      String query = encode("(sf_metric:" + metric + " AND sf_service:svc)");
+
+      JsonNode window = get(fake, "/v1/timeserieswindow?query=" + query
+          + "&startMS=1000&endMS=10000&resolution=1000");
+
+      JsonNode points = window.path("data").path(mts.path("results").path(0).path("id").asText());
+      assertEquals(10, points.size());
+      assertEquals(1000, points.path(0).path(0).asLong());
+      window.path("data").fieldNames().forEachRemaining(tsid -> assertTrue(tsid.startsWith("F")));
+    }
+  }
+
+  @Test
+  void testScalesTopology() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(options("--topology-copies=3"))) {
+      JsonNode topology = post(fake, "/v2/apm/topology", "{}").body;
+      assertEquals(345 * 3, topology.path("data").path("nodes").size());
+      assertEquals(461 * 3, topology.path("data").path("edges").size());
+    }
+  }
+
+  @Test
+  void testExemplarSearchFinishesAfterPolls() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(options("--search-polls=2"))) {
+      String jobId = post(fake, "/v2/apm/graphql?op=StartExemplarTraceSearchJob",
+          GraphQLGenerator.generateTraceSearchQuery("matt")).body
+          .path("data").path("startExemplarSearch").path("jobID").asText();
+
+      JsonNode firstPoll = post(fake, "/v2/apm/graphql?op=GetExemplarTraceSearchJob",
+          GraphQLGenerator.generateGetTraceIdQuery(jobId)).body.path("data").path("getExemplarSearch");
+      JsonNode secondPoll = post(fake, "/v2/apm/graphql?op=GetExemplarTraceSearchJob",
+          GraphQLGenerator.generateGetTraceIdQuery(jobId)).body.path("data").path("getExemplarSearch");
+
+      assertEquals(0, firstPoll.path("results").path("items").size());
+      assertEquals("b2ccbe5fa7aa0dffe0baf469789125db",
+          secondPoll.path("results").path("items").path(0).path("item").path("traceId").asText());
+    }
+  }
+
+  @Test
+  void testInjectsThrottling() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(options("--throttle-rate=1", "--retry-after=7"))) {
+      Response response = post(fake, "/v2/apm/topology", "{}");
+      assertEquals(429, response.status);
+      assertEquals("7", response.retryAfter);
+      assertEquals(1L, (long) fake.stats().get("throttled"));
+    }
+  }
+
+  private static FakeSplunkServer.Options options(String... args) {
+    FakeSplunkServer.Options options = FakeSplunkServer.Options.parse(args);
+    options.port = 0;
+    options.latencyMillis = 0;
+    options.jitterMillis = 0;
+    return options;
+  }
+
+  private JsonNode get(FakeSplunkServer fake, String path) throws IOException, InterruptedException {
+    HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(fake.url() + path)).build(),
+        HttpResponse.BodyHandlers.ofByteArray());
+    assertEquals(200, response.statusCode());
+    return MAPPER.readTree(response.body());
+  }
+
+  private Response post(FakeSplunkServer fake, String path, String body) throws IOException, InterruptedException {
+    HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(fake.url() + path))
+        .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofByteArray());
+    return new Response(response.statusCode(), response.headers().firstValue("Retry-After").orElse(null),
+        MAPPER.readTree(response.body()));
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  private static final class Response {
+    private final int status;
+    private final String retryAfter;
+    private final JsonNode body;
+
+    Response(int status, String retryAfter, JsonNode body) {
+      this.status = status;
+      this.retryAfter = retryAfter;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package dev.coral.client.splunk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private static final int JOINERS = 4;
+
+  private final SingleFlight<String> flight = new SingleFlight<>();
+  private final ExecutorService threads = Executors.newFixedThreadPool(JOINERS + 1);
+
+  @AfterEach
+  void tearDown() {
+    threads.shutdownNow();
+  }
+
+  @Test
+  void testJoinersShareTheLeadersCall() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger runs = new AtomicInteger();
+    List<Future<String>> results = new ArrayList<>();
+
+    results.add(threads.submit(() -> flight.execute("key", () -> {
+      runs.incrementAndGet();
+      started.countDown();
+      await(release);
+      return "value";
+    })));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < JOINERS; i++) {
+      results.add(threads.submit(() -> flight.execute("key", () -> "joiner ran " + runs.incrementAndGet())));
+    }
+    awaitJoined(JOINERS);
+    release.countDown();
+
+    for (Future<String> result : results) {
+      assertEquals("value", result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, runs.get());
+    assertEquals(1, flight.calls());
+    assertEquals(JOINERS, flight.joined());
+    assertEquals(0, flight.inFlight());
+  }
+
+  @Test
+  void testFailureReachesEveryJoiner() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    IllegalStateException failure = new IllegalStateException("upstream failed");
+    List<Future<String>> results = new ArrayList<>();
+
+    results.add(threads.submit(() -> flight.execute("key", () -> {
+      started.countDown();
+      await(release);
+      throw failure;
+    })));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < JOINERS; i++) {
+      results.add(threads.submit(() -> flight.execute("key", () -> "joiner ran")));
+    }
+    awaitJoined(JOINERS);
+    release.countDown();
+
+    for (Future<String> result : results) {
+      ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+      assertSame(failure, e.getCause());
+    }
+    assertEquals(1, flight.calls());
+    assertEquals(0, flight.inFlight());
+  }
+
+  @Test
+  void testKeyIsReleasedAfterSuccessAndFailure() {
+    assertEquals("first", flight.execute("key", () -> "first"));
+    assertEquals(0, flight.inFlight());
+    assertThrows(IllegalStateException.class, () -> flight.execute("key", () -> {
+      throw new IllegalStateException("upstream failed");
+    }));
+    assertEquals(0, flight.inFlight());
+    assertEquals("third", flight.execute("key", () -> "third"));
+
+    assertEquals(3, flight.calls());
+    assertEquals(0, flight.joined());
+  }
+
+  @Test
+  void testAsyncJoinersShareTheLeadersCall() throws Exception {
+    CompletableFuture<String> call = new CompletableFuture<>();
+    AtomicInteger runs = new AtomicInteger();
+    List<Future<CompletableFuture<String>>> submitted = new ArrayList<>();
+    CountDownLatch ready = new CountDownLatch(JOINERS + 1);
+    CountDownLatch go = new CountDownLatch(1);
+
+    for (int i = 0; i <= JOINERS; i++) {
+      submitted.add(threads.submit(() -> {
+        ready.countDown();
+        await(go);
+        return flight.executeAsync("key", () -> {
+          runs.incrementAndGet();
+          return call;
+        });
+      }));
+    }
+    assertTrue(ready.await(5, TimeUnit.SECONDS));
+    go.countDown();
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (Future<CompletableFuture<String>> future : submitted) {
+      results.add(future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, flight.inFlight());
+    for (CompletableFuture<String> result : results) {
+      assertFalse(result.isDone());
+    }
+    call.complete("value");
+
+    for (CompletableFuture<String> result : results) {
+      assertEquals("value", result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, runs.get());
+    assertEquals(1, flight.calls());
+    assertEquals(JOINERS, flight.joined());
+    assertEquals(0, flight.inFlight());
+  }
+
+  @Test
+  void testAsyncFailureReachesEveryJoinerAndReleasesTheKey() throws Exception {
+    CompletableFuture<String> call = new CompletableFuture<>();
+    CompletableFuture<String> leader = flight.executeAsync("key", () -> call);
+    List<CompletableFuture<String>> joiners = new ArrayList<>();
+    for (int i = 0; i < JOINERS; i++) {
+      joiners.add(threads.submit(() -> flight.<String>executeAsync("key", () -> null)).get(5, TimeUnit.SECONDS));
+    }
+    IllegalStateException failure = new IllegalStateException("upstream failed");
+    call.completeExceptionally(failure);
+
+    assertSame(failure, assertThrows(ExecutionException.class, leader::get).getCause());
+    for (CompletableFuture<String> joiner : joiners) {
+      assertSame(failure, assertThrows(ExecutionException.class, joiner::get).getCause());
+    }
+    assertEquals(0, flight.inFlight());
+    assertEquals("again", flight.executeAsync("key", () -> CompletableFuture.completedFuture("again")).get());
+    assertEquals(2, flight.calls());
+    assertEquals(JOINERS, flight.joined());
+  }
+
+  @Test
+  void testAsyncReleasesTheKeyAfterSuccess() throws Exception {
+    assertEquals("first", flight.executeAsync("key", () -> CompletableFuture.completedFuture("first")).get());
+    assertEquals(0, flight.inFlight());
+    assertEquals("second", flight.executeAsync("key", () -> CompletableFuture.completedFuture("second")).get());
+    assertEquals(2, flight.calls());
+    assertEquals(0, flight.joined());
+  }
+
+  @Test
+  void testAsyncSupplierThrowingFailsTheFuture() throws Exception {
+    IllegalStateException failure = new IllegalStateException("could not build request");
+
+    CompletableFuture<String> result = flight.executeAsync("key", () -> {
+      throw failure;
+    });
+
+    assertTrue(result.isCompletedExceptionally());
+    assertSame(failure, assertThrows(ExecutionException.class, result::get).getCause());
+    assertEquals(0, flight.inFlight());
+    assertEquals("value", flight.executeAsync("key", () -> CompletableFuture.completedFuture("value")).get());
+  }
+
+  private void awaitJoined(int joiners) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (flight.joined() < joiners) {
+      assertTrue(System.nanoTime() < deadline, "Only " + flight.joined() + " callers joined");
+      Thread.sleep(1);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package dev.coral.client.splunk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Lane;
+import dev.coral.client.splunk.SplunkRequestScheduler.Limits;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import org.junit.jupiter.api.Test;
+
+class SplunkRequestSchedulerTest {
+
+  @Test
+  void testInteractiveLaneIsAdmittedFirst() {
+    SplunkRequestScheduler scheduler = scheduler(new Limits(1000, 1000, 1, 1, 1, Duration.ofSeconds(5)), 0);
+    CompletableFuture<String> running = new CompletableFuture<>();
+    List<String> started = new CopyOnWriteArrayList<>();
+
+    CompletableFuture<String> first = scheduler.executeAsync("prod", Family.TIME_SERIES_WINDOW, Lane.BULK,
+        () -> running);
+    CompletableFuture<String> bulk = scheduler.executeAsync("prod", Family.TIME_SERIES_WINDOW, Lane.BULK,
+        () -> started(started, "bulk"));
+    CompletableFuture<String> interactive = scheduler.executeAsync("prod", Family.TIME_SERIES_WINDOW,
+        Lane.INTERACTIVE, () -> started(started, "interactive"));
+    assertEquals(List.of(), started);
+
+    running.complete("first");
+    CompletableFuture.allOf(first, bulk, interactive).join();
+    assertEquals(List.of("interactive", "bulk"), started);
+  }
+
+  @Test
+  void testOrgsAreLimitedIndependently() {
+    SplunkRequestScheduler scheduler = scheduler(new Limits(1000, 1000, 1, 1, 1, Duration.ofSeconds(5)), 0);
+    CompletableFuture<String> running = new CompletableFuture<>();
+
+    CompletableFuture<String> prod = scheduler.executeAsync("prod", Family.TOPOLOGY, Lane.BULK, () -> running);
+    CompletableFuture<String> staging = scheduler.executeAsync("staging", Family.TOPOLOGY, Lane.BULK,
+        () -> CompletableFuture.completedFuture("staging"));
+
+    assertEquals("staging", staging.join());
+    assertEquals(1, scheduler.stats().get("prod").get(Family.TOPOLOGY.name()).get("inFlight"));
+    running.complete("prod");
+    assertEquals("prod", prod.join());
+  }
+
+  @Test
+  void testTokenBucketCapsRate() {
+    SplunkRequestScheduler scheduler = scheduler(new Limits(20, 1, 4, 1, 4, Duration.ofSeconds(5)), 0);
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      scheduler.execute("prod", Family.METRIC_TIME_SERIES, Lane.BULK, () -> "page");
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    // One token up front, then one every 50 ms
+    assertTrue(elapsedMillis >= 190, "took " + elapsedMillis + " ms");
+  }
+
+  @Test
+  void testThrottledCallIsRetriedAndShrinksLimit() {
+    SplunkRequestScheduler scheduler = scheduler(new Limits(1000, 1000, 8, 1, 8, Duration.ofSeconds(5)), 2);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = scheduler.execute("prod", Family.TOPOLOGY, Lane.INTERACTIVE, () -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw tooManyRequests();
+      }
+      return "topology";
+    });
+
+    assertEquals("topology", result);
+    assertEquals(2, attempts.get());
+    Map<String, Object> stats = scheduler.stats().get("prod").get(Family.TOPOLOGY.name());
+    assertEquals(1L, stats.get("throttled"));
+    assertEquals(1L, stats.get("retries"));
+    assertEquals(4, stats.get("concurrencyLimit"));
+
+    assertThrows(HttpClientResponseException.class,
+        () -> scheduler.execute("prod", Family.TOPOLOGY, Lane.INTERACTIVE, () -> { throw tooManyRequests(); }));
+    assertEquals(4L, scheduler.stats().get("prod").get(Family.TOPOLOGY.name()).get("throttled"));
+  }
+
+  @Test
+  void testParsesRetryAfter() {
+    assertEquals(Duration.ofSeconds(3), SplunkRequestScheduler.parseRetryAfter("3", 0));
+    assertEquals(Duration.ofSeconds(10),
+        SplunkRequestScheduler.parseRetryAfter("Thu, 01 Jan 1970 00:00:10 GMT", 0));
+    assertEquals(Duration.ZERO, SplunkRequestScheduler.parseRetryAfter("soon", 0));
+    assertEquals(Duration.ZERO, SplunkRequestScheduler.parseRetryAfter(null, 0));
+  }
+
+  private static SplunkRequestScheduler scheduler(Limits limits, int maxRetries) {
+    Map<Family, Limits> allLimits = new EnumMap<>(Family.class);
+    for (Family family : Family.values()) {
+      allLimits.put(family, limits);
+    }
+    return new SplunkRequestScheduler(true, allLimits, maxRetries, Duration.ofMillis(20));
+  }
+
+  private static CompletableFuture<String> started(List<String> started, String name) {
+    started.add(name);
+    return CompletableFuture.completedFuture(name);
+  }
+
+  private static HttpClientResponseException tooManyRequests() {
+    return new HttpClientResponseException("Too Many Requests",
+        HttpResponse.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "0"));
+  }
+}
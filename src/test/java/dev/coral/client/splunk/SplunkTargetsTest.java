@@ -0,0 +1,47 @@
+package dev.coral.client.splunk;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dev.coral.config.SplunkTargetsConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SplunkTargetsTest {
+
+  @Test
+  void testRejectsTargetWithoutToken() {
+    for (String token : new String[]{null, " "}) {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> targets(token));
+      assertEquals("No API token for Splunk org prod", e.getMessage());
+    }
+  }
+
+  @Test
+  void testBuildsTargetWithToken() {
+    SplunkTargets targets = targets("token");
+    try {
+      assertEquals("token", targets.get("prod").getToken());
+    } finally {
+      targets.close();
+    }
+  }
+
+  private static SplunkTargets targets(String token) {
+    Map<String, Object> target = new HashMap<>(Map.of("org", "prod", "url", "http://localhost:1"));
+    if (token != null) {
+      target.put("token", token);
+    }
+    SplunkTargetsConfig.Target configured = new SplunkTargetsConfig.MapToTargetConverter().convert(
+        target, SplunkTargetsConfig.Target.class, null).orElseThrow();
+    SplunkTargetsConfig config = () -> List.of(configured);
+    return new SplunkTargets(config, new DefaultHttpClientConfiguration(), new SimpleMeterRegistry(),
+        OpenTelemetry.noop());
+  }
+}
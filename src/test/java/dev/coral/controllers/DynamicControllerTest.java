@@ -0,0 +1,107 @@
+package dev.coral.controllers;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import dev.coral.config.OrdersConfig;
+import io.micronaut.http.client.HttpClient;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DynamicControllerTest {
+
+  private static final String CHECKOUT = "http://checkout";
+  private static final String PAYMENTS = "http://payments";
+
+  private final List<String> requested = new CopyOnWriteArrayList<>();
+  private final Map<String, CompletableFuture<String>> responses = new ConcurrentHashMap<>();
+
+  @Test
+  void testOrdersCallsBothDownstreamsConcurrentlyAndKeepsTheirOrder() throws Exception {
+    DynamicController controller = controller(Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+    CompletableFuture<String> order = controller.getSplunkMTS();
+    assertEquals(List.of(CHECKOUT, PAYMENTS), requested);
+    responses.get(PAYMENTS).complete("payments-processed");
+    assertFalse(order.isDone());
+    responses.get(CHECKOUT).complete("check-complete");
+
+    assertEquals("check-completepayments-processed", order.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testSlowDownstreamIsLeftOutAfterItsTimeout() throws Exception {
+    DynamicController controller = controller(Duration.ofSeconds(5), Duration.ofMillis(50));
+
+    CompletableFuture<String> order = controller.getSplunkMTS();
+    responses.get(CHECKOUT).complete("check-complete");
+
+    assertEquals("check-complete", order.get(5, TimeUnit.SECONDS));
+    assertEquals(List.of(CHECKOUT, PAYMENTS), requested);
+  }
+
+  @Test
+  void testFailingDownstreamFailsTheOrder() {
+    DynamicController controller = controller(Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+    CompletableFuture<String> order = controller.getSplunkMTS();
+    responses.get(CHECKOUT).completeExceptionally(new IllegalStateException("connection refused"));
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> order.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+  private DynamicController controller(Duration checkoutTimeout, Duration paymentsTimeout) {
+    OrdersConfig config = new OrdersConfig() {
+      @Override
+      public String getCheckoutUrl() {
+        return CHECKOUT;
+      }
+
+      @Override
+      public Duration getCheckoutTimeout() {
+        return checkoutTimeout;
+      }
+
+      @Override
+      public String getPaymentsUrl() {
+        return PAYMENTS;
+      }
+
+      @Override
+      public Duration getPaymentsTimeout() {
+        return paymentsTimeout;
+      }
+    };
+    return new DynamicController(httpClient(), config, null, null, null, null, null, null, null);
+  }
+
+  /** Records when each retrieve is subscribed to and answers it with a response the test completes. */
+  private HttpClient httpClient() {
+    return (HttpClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpClient.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("retrieve") && args.length == 1 && args[0] instanceof String) {
+            String url = (String) args[0];
+            CompletableFuture<String> response = new CompletableFuture<>();
+            responses.put(url, response);
+            return Mono.defer(() -> {
+              requested.add(url);
+              return Mono.fromFuture(response);
+            });
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
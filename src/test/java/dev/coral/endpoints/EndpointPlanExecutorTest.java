@@ -0,0 +1,135 @@
+package dev.coral.endpoints;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import dev.coral.config.EndpointConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.scheduling.TaskScheduler;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndpointPlanExecutorTest {
+
+  private final Map<String, CompletableFuture<String>> responses = new LinkedHashMap<>();
+  private final List<Duration> delays = new ArrayList<>();
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final EndpointPlanExecutor executor = new EndpointPlanExecutor(httpClient(), taskScheduler());
+
+  @Test
+  void testAppendsParallelResponsesInConfigurationOrder() throws Exception {
+    EndpointPlan plan = plan(Map.of("parallel", List.of("request|http://a", "request|http://b")), "request|http://c");
+
+    CompletableFuture<String> result = executor.execute(plan);
+    assertEquals(List.of("http://a", "http://b"), List.copyOf(responses.keySet()));
+    responses.get("http://b").complete("B");
+    responses.get("http://a").complete("A");
+    assertEquals(List.of("http://a", "http://b", "http://c"), List.copyOf(responses.keySet()));
+    assertFalse(result.isDone());
+    responses.get("http://c").complete("C");
+
+    assertEquals("ABC", result.get());
+  }
+
+  @Test
+  void testSchedulesRandomWaits() throws Exception {
+    EndpointPlan plan = plan("wait_random|1000ms", "request|http://a");
+
+    CompletableFuture<String> result = executor.execute(plan);
+    assertFalse(result.isDone());
+    assertEquals(1, delays.size());
+    assertTrue(delays.get(0).toMillis() >= 0 && delays.get(0).toMillis() < 1000);
+    assertTrue(responses.isEmpty());
+
+    scheduled.get(0).run();
+    responses.get("http://a").complete("A");
+    assertEquals("A", result.get());
+  }
+
+  @Test
+  void testFailingRequestStopsThePlan() {
+    EndpointPlan plan = plan("request|http://a", "wait_random|10", "request|http://b");
+
+    CompletableFuture<String> result = executor.execute(plan);
+    responses.get("http://a").completeExceptionally(new IllegalStateException("connection refused"));
+
+    assertTrue(result.isCompletedExceptionally());
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertTrue(e.getCause() instanceof IllegalStateException);
+    assertEquals(List.of("http://a"), List.copyOf(responses.keySet()));
+    assertTrue(delays.isEmpty());
+    assertEquals(1, meterRegistry.get("coral.endpoint.action")
+        .tags("endpoint", "test", "action", "request", "outcome", "error").timer().count());
+  }
+
+  private EndpointPlan plan(Object... actions) {
+    EndpointConfig.Endpoint endpoint = new EndpointConfig.Endpoint() {
+      @Override
+      public String getName() {
+        return "test";
+      }
+
+      @Override
+      public String getUrl() {
+        return "test";
+      }
+
+      @Override
+      public List<Object> getActions() {
+        return List.of(actions);
+      }
+    };
+    return new EndpointRegistry(List.of(endpoint), meterRegistry).find("test");
+  }
+
+  /** Answers every retrieve with a response the test completes. */
+  private HttpClient httpClient() {
+    return (HttpClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpClient.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("retrieve") && args.length == 1 && args[0] instanceof String) {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            responses.put((String) args[0], response);
+            return Mono.fromFuture(response);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  /** Keeps scheduled tasks for the test to run instead of running them after their delay. */
+  private TaskScheduler taskScheduler() {
+    return (TaskScheduler) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{TaskScheduler.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("schedule") && args.length == 2 && args[0] instanceof Duration) {
+            delays.add((Duration) args[0]);
+            if (args[1] instanceof Callable) {
+              Callable<?> task = (Callable<?>) args[1];
+              scheduled.add(() -> {
+                try {
+                  task.call();
+                } catch (Exception e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+            } else {
+              scheduled.add((Runnable) args[1]);
+            }
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,110 @@
+package dev.coral.endpoints;
+
+import java.util.List;
+import java.util.Map;
+
+import dev.coral.config.EndpointConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EndpointRegistryTest {
+
+  @Test
+  void testCompilesActions() {
+    EndpointRegistry registry = registry(
+        endpoint("health", "myHealth", "request|http://localhost:8080/dynamic/health", "wait_random|1000ms"));
+
+    EndpointPlan plan = registry.find("myHealth");
+    assertEquals(2, plan.actionCount());
+    assertEquals(EndpointAction.Type.REQUEST, plan.action(0).getType());
+    assertEquals("http://localhost:8080/dynamic/health", plan.action(0).getUrl());
+    assertEquals(EndpointAction.Type.WAIT_RANDOM, plan.action(1).getType());
+    assertEquals(1000, plan.action(1).getMaxWaitMillis());
+  }
+
+  @Test
+  void testLookupIsCaseInsensitive() {
+    EndpointRegistry registry = registry(
+        endpoint("health", "myHealth", "wait_random|10"),
+        endpoint("duplicate", "MYHEALTH", "wait_random|20"));
+
+    EndpointPlan plan = registry.find("myHealth");
+    assertEquals("health", plan.getName());
+    assertSame(plan, registry.find("myhealth"));
+    assertSame(plan, registry.find("MYHEALTH"));
+    assertNull(registry.find("unknown"));
+  }
+
+  @Test
+  void testCompilesParallelGroups() {
+    EndpointRegistry registry = registry(
+        endpoint("fanout", "fanout",
+            Map.of("parallel", List.of("request|http://a", List.of("wait_random|10", "request|http://b"))),
+            "request|http://c"));
+
+    EndpointPlan plan = registry.find("fanout");
+    assertEquals(2, plan.actionCount());
+    EndpointAction parallel = plan.action(0);
+    assertEquals(EndpointAction.Type.PARALLEL, parallel.getType());
+    assertEquals(2, parallel.branchCount());
+    assertEquals("http://a", parallel.branch(0)[0].getUrl());
+    assertEquals(2, parallel.branch(1).length);
+    assertEquals("http://b", parallel.branch(1)[1].getUrl());
+  }
+
+  @Test
+  void testRegistersActionTimersWhenCompiling() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    EndpointPlan plan = new EndpointRegistry(List.of(
+        endpoint("fanout", "fanout", Map.of("parallel", List.of("request|http://a", "wait_random|10")))), meterRegistry)
+        .find("fanout");
+
+    EndpointAction request = plan.action(0).branch(0)[0];
+    assertSame(meterRegistry.get("coral.endpoint.action")
+        .tags("endpoint", "fanout", "action", "request", "outcome", "error").timer(), request.timer(false));
+    assertSame(meterRegistry.get("coral.endpoint.action")
+        .tags("endpoint", "fanout", "action", "parallel", "outcome", "success").timer(), plan.action(0).timer(true));
+    assertEquals(6, meterRegistry.get("coral.endpoint.action").timers().size());
+    assertNull(EndpointAction.request("http://a").timer(true));
+  }
+
+  @Test
+  void testRejectsInvalidActions() {
+    assertThrows(IllegalArgumentException.class,
+        () -> registry(endpoint("bad", "bad", "sleep|10")));
+    assertThrows(IllegalArgumentException.class,
+        () -> registry(endpoint("bad", "bad", "wait_random|soon")));
+    assertThrows(IllegalArgumentException.class,
+        () -> registry(endpoint("bad", "bad", "request")));
+    assertThrows(IllegalArgumentException.class,
+        () -> registry(endpoint("bad", "bad", Map.of("parallel", List.of()))));
+  }
+
+  private static EndpointRegistry registry(EndpointConfig.Endpoint... endpoints) {
+    return new EndpointRegistry(List.of(endpoints), new SimpleMeterRegistry());
+  }
+
+  private static EndpointConfig.Endpoint endpoint(String name, String url, Object... actions) {
+    return new EndpointConfig.Endpoint() {
+      @Override
+      public String getName() {
+        return name;
+      }
+
+      @Override
+      public String getUrl() {
+        return url;
+      }
+
+      @Override
+      public List<Object> getActions() {
+        return List.of(actions);
+      }
+    };
+  }
+}
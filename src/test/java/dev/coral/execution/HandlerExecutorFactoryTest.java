@@ -0,0 +1,40 @@
+package dev.coral.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HandlerExecutorFactoryTest {
+
+  @Test
+  void testVirtualThreadsAreNamed() throws Exception {
+    ExecutorService virtual = HandlerExecutorFactory.newVirtualThreadExecutor("test-handler-").orElse(null);
+    assumeTrue(virtual != null, "Virtual threads need Java 21+");
+    try {
+      String name = virtual.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+      assertTrue(name.startsWith("test-handler-"), name);
+    } finally {
+      virtual.shutdownNow();
+    }
+  }
+
+  @Test
+  void testPlatformThreadPoolIsBoundedAndNamed() throws Exception {
+    ExecutorService platform = HandlerExecutorFactory.newPlatformThreadExecutor("test-handler-", 2);
+    try {
+      assertEquals(2, ((ThreadPoolExecutor) platform).getMaximumPoolSize());
+      Thread thread = platform.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+      assertTrue(thread.getName().startsWith("test-handler-"), thread.getName());
+      assertTrue(thread.isDaemon());
+      assertEquals(Thread.class, thread.getClass()); // virtual threads are a subclass
+    } finally {
+      platform.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package dev.coral.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+import dev.coral.client.splunk.FakeSplunkServer;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+
+/**
+ * Drives load against the app's Splunk endpoints and reports throughput and latency percentiles per endpoint.
+ * <p>
+ * By default the driver starts a {@link FakeSplunkServer} and the app itself in-process, with a single
+ * {@code coral.splunk.targets} entry pointing at the fake, so the whole collection path runs without a Splunk org.
+ * With {@code --url=<app url>} it drives an app that is already running instead.
+ * <p>
+ * {@code ./gradlew loadTest -PloadTestArgs="--paths=/splunk/loadAllSplunkData,/splunk/topology --requests=20
+ * --concurrency=4 --latency=50 --throttle-rate=0.01"}. Arguments the driver does not know are passed to the fake
+ * server, see {@link FakeSplunkServer.Options}.
+ */
+public final class LoadTestDriver {
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String baseUrl;
+    private final Duration timeout;
+
+    LoadTestDriver(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        List<String> paths = List.of("/splunk/loadAllSplunkData");
+        int requests = 10;
+        int concurrency = 1;
+        int warmup = 1;
+        Duration timeout = Duration.ofMinutes(10);
+        List<String> fakeArgs = new ArrayList<>(List.of("--port=0"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (name) {
+                case "--url" -> url = value;
+                case "--paths" -> paths = Arrays.asList(value.split(","));
+                case "--requests" -> requests = Integer.parseInt(value);
+                case "--concurrency" -> concurrency = Integer.parseInt(value);
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--timeout" -> timeout = Duration.ofSeconds(Long.parseLong(value));
+                default -> fakeArgs.add(arg);
+            }
+        }
+
+        FakeSplunkServer fake = null;
+        ApplicationContext app = null;
+        try {
+            if (url == null) {
+                fake = FakeSplunkServer.start(FakeSplunkServer.Options.parse(fakeArgs.toArray(new String[0])));
+                EmbeddedServer server = startApp(fake, Map.of());
+                app = server.getApplicationContext();
+                url = server.getURL().toString();
+                System.out.printf("Fake Splunk at %s, app at %s%n", fake.url(), url);
+            }
+            LoadTestDriver driver = new LoadTestDriver(url, timeout);
+            for (String path : paths) {
+                driver.run(path, warmup, 1);
+                System.out.println(driver.run(path, requests, concurrency));
+            }
+            System.out.println("Last pipeline timings: " + driver.get("/splunk/pipeline/timings").body());
+            if (fake != null) {
+                System.out.println("Fake Splunk served " + fake.stats());
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (fake != null) {
+                fake.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the app on a random port with a single {@code coral.splunk.targets} entry pointing at the fake.
+     * {@code properties} are added to or override the defaults.
+     */
+    static EmbeddedServer startApp(FakeSplunkServer fake, Map<String, Object> properties) {
+        Map<String, Object> appProperties = new LinkedHashMap<>(Map.of(
+            "micronaut.server.port", -1,
+            "coral.snapshot.enabled", false,
+            "micronaut.metrics.export.signalfx.enabled", false,
+            "otel.traces.exporter", "none",
+            "coral.splunk.targets", List.of(Map.of("org", "fake", "token", "fake", "url", fake.url()))));
+        appProperties.putAll(properties);
+        return ApplicationContext.run(EmbeddedServer.class, appProperties);
+    }
+
+    /** Sends {@code requests} GETs of the path from {@code concurrency} threads. */
+    Report run(String path, int requests, int concurrency) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int worker = 0; worker < Math.max(1, concurrency); worker++) {
+                running.add(workers.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        long sent = System.nanoTime();
+                        try {
+                            if (get(path).statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                }));
+            }
+            for (Future<?> worker : running) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new Report(path, latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Value at the given percentile of sorted values, by nearest rank. */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    static final class Report {
+        private final String path;
+        private final int requests;
+        private final int errors;
+        private final double throughput;
+        private final Map<String, Double> latencyMillis = new LinkedHashMap<>();
+
+        Report(String path, long[] latencies, int errors, long elapsedNanos) {
+            this.path = path;
+            this.requests = latencies.length;
+            this.errors = errors;
+            this.throughput = latencies.length / Math.max(1e-9, elapsedNanos / 1e9);
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            latencyMillis.put("p50", percentile(sorted, 50) / 1e6);
+            latencyMillis.put("p90", percentile(sorted, 90) / 1e6);
+            latencyMillis.put("p99", percentile(sorted, 99) / 1e6);
+            latencyMillis.put("max", percentile(sorted, 100) / 1e6);
+        }
+
+        int getRequests() {
+            return requests;
+        }
+
+        int getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder()
+                .append(String.format("%s: %d requests, %d errors, %.2f req/s", path, requests, errors, throughput));
+            latencyMillis.forEach((name, millis) -> report.append(String.format(", %s %.1f ms", name, millis)));
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.coral.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import dev.coral.client.splunk.FakeSplunkServer;
+import dev.coral.store.MtsCatalog;
+import dev.coral.store.TimeSeriesStore;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.runtime.server.EmbeddedServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoadTestDriverTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testLoadsAllSplunkDataFromFakeSplunk() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(FakeSplunkServer.Options.parse("--port=0"))) {
+      EmbeddedServer server = LoadTestDriver.startApp(fake, Map.of(
+          "coral.file-writer.dir", directory.toString(),
+          "coral.pipeline.export-dir", directory.resolve("data").toString(),
+          "coral.alert-log.dir", directory.resolve("alerts").toString()));
+      ApplicationContext app = server.getApplicationContext();
+      try {
+        LoadTestDriver driver = new LoadTestDriver(server.getURL().toString(), Duration.ofMinutes(2));
+        LoadTestDriver.Report report = driver.run("/splunk/loadAllSplunkData", 2, 1);
+
+        assertEquals(2, report.getRequests());
+        assertEquals(0, report.getErrors(), report.toString());
+        assertTrue(app.getBean(MtsCatalog.class).size() > 0);
+        assertTrue(app.getBean(TimeSeriesStore.class).mtsCount() > 0);
+        assertTrue(app.getBean(TimeSeriesStore.class).pointCount() > 0);
+        assertTrue(directory.resolve("data").resolve("allSplunkMetrics.json").toFile().isFile());
+      } finally {
+        app.close();
+      }
+    }
+  }
+
+  @Test
+  void testPercentileByNearestRank() {
+    long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+    assertEquals(50, LoadTestDriver.percentile(sorted, 50));
+    assertEquals(90, LoadTestDriver.percentile(sorted, 90));
+    assertEquals(100, LoadTestDriver.percentile(sorted, 99));
+    assertEquals(100, LoadTestDriver.percentile(sorted, 100));
+    assertEquals(10, LoadTestDriver.percentile(sorted, 0));
+    assertEquals(0, LoadTestDriver.percentile(new long[0], 50));
+  }
+}
@@ -0,0 +1,203 @@
+package dev.coral.service;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import dev.coral.client.splunk.SplunkO11yHttpClient;
+import dev.coral.client.splunk.SplunkRequestScheduler;
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Limits;
+import dev.coral.client.splunk.SplunkTarget;
+import dev.coral.config.TraceSearchConfig;
+import io.micronaut.scheduling.TaskScheduler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExemplarTraceSearchPollerTest {
+
+  private final List<CompletableFuture<String>> starts = new ArrayList<>();
+  private final Deque<String> polls = new ArrayDeque<>();
+  private final List<Duration> delays = new ArrayList<>();
+  private final List<Runnable> scheduled = new ArrayList<>();
+  private final SplunkTarget target = new SplunkTarget("org", "us1", "token", "http://localhost", false, client());
+
+  @Test
+  void testBacksOffWhileStalledAndResetsOnProgress() throws Exception {
+    ExemplarTraceSearchPoller poller = poller(config(100, 300, 60_000));
+
+    CompletableFuture<Optional<String>> result = poller.findTraceId(target, "checkout");
+    starts.get(0).complete(jobStarted("job-1"));
+    poll(progress(0, 10));
+    poll(progress(0, 10));
+    poll(progress(0, 10));
+    poll(progress(3, 10));
+    poll(progress(3, 10));
+    assertFalse(result.isDone());
+    poll(found("trace-1"));
+
+    assertEquals(Optional.of("trace-1"), result.get());
+    assertEquals(List.of(100L, 100L, 200L, 300L, 100L, 200L), millis(delays));
+  }
+
+  @Test
+  void testCompletesEmptyOnceEveryItemIsProcessed() throws Exception {
+    ExemplarTraceSearchPoller poller = poller(config(100, 300, 60_000));
+
+    CompletableFuture<Optional<String>> result = poller.findTraceId(target, "checkout");
+    starts.get(0).complete(jobStarted("job-1"));
+    poll(progress(4, 10));
+    assertFalse(result.isDone());
+    poll(progress(10, 10));
+
+    assertEquals(Optional.empty(), result.get());
+    assertEquals(2, delays.size());
+  }
+
+  @Test
+  void testTimesOutWhenTheNextPollWouldPassTheDeadline() {
+    ExemplarTraceSearchPoller poller = poller(config(100, 10_000, 1_000));
+
+    CompletableFuture<Optional<String>> result = poller.findTraceId(target, "checkout");
+    starts.get(0).complete(jobStarted("job-1"));
+    for (int i = 0; i < 10 && !result.isDone(); i++) {
+      poll(progress(0, 10));
+    }
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertTrue(e.getCause() instanceof TimeoutException);
+    for (Duration delay : delays) {
+      assertTrue(delay.toMillis() <= 1_000, "Scheduled a poll after the deadline: " + delay);
+    }
+  }
+
+  @Test
+  void testMissingJobIdFailsTheSearch() {
+    ExemplarTraceSearchPoller poller = poller(config(100, 300, 60_000));
+
+    CompletableFuture<Optional<String>> result = poller.findTraceId(target, "checkout");
+    starts.get(0).complete("{\"data\":{\"startExemplarSearch\":{}}}");
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertTrue(e.getCause() instanceof IllegalStateException);
+    assertTrue(delays.isEmpty());
+  }
+
+  @Test
+  void testConcurrentSearchesForTheSameServiceShareOneJob() throws Exception {
+    ExemplarTraceSearchPoller poller = poller(config(100, 300, 60_000));
+
+    CompletableFuture<Optional<String>> first = poller.findTraceId(target, "checkout");
+    CompletableFuture<Optional<String>> second = poller.findTraceId(target, "checkout");
+    assertEquals(1, starts.size());
+    CompletableFuture<Optional<String>> other = poller.findTraceId(target, "payment");
+    assertEquals(2, starts.size());
+
+    starts.get(0).complete(jobStarted("job-1"));
+    poll(found("trace-1"));
+
+    assertEquals(Optional.of("trace-1"), first.get());
+    assertEquals(Optional.of("trace-1"), second.get());
+    assertFalse(other.isDone());
+  }
+
+  private ExemplarTraceSearchPoller poller(TraceSearchConfig config) {
+    Map<Family, Limits> limits = new EnumMap<>(Family.class);
+    for (Family family : Family.values()) {
+      limits.put(family, new Limits(1000, 1000, 1, 1, 1, Duration.ofSeconds(5)));
+    }
+    SplunkRequestScheduler requestScheduler = new SplunkRequestScheduler(false, limits, 0, Duration.ofMillis(20));
+    return new ExemplarTraceSearchPoller(requestScheduler, taskScheduler(), config);
+  }
+
+  /** Runs the last scheduled poll, which is answered with {@code body}. */
+  private void poll(String body) {
+    assertFalse(scheduled.isEmpty(), "No poll scheduled");
+    polls.add(body);
+    scheduled.remove(scheduled.size() - 1).run();
+  }
+
+  private static String jobStarted(String jobId) {
+    return "{\"data\":{\"startExemplarSearch\":{\"jobID\":\"" + jobId + "\"}}}";
+  }
+
+  private static String progress(long completed, long total) {
+    return "{\"data\":{\"getExemplarSearch\":{\"completedProcessingItems\":" + completed
+        + ",\"totalItemsToProcess\":" + total + ",\"results\":{\"items\":[]}}}}";
+  }
+
+  private static String found(String traceId) {
+    return "{\"data\":{\"getExemplarSearch\":{\"completedProcessingItems\":1,\"totalItemsToProcess\":10,"
+        + "\"results\":{\"items\":[{\"item\":{\"traceId\":\"" + traceId + "\"}}]}}}}";
+  }
+
+  private static List<Long> millis(List<Duration> durations) {
+    List<Long> millis = new ArrayList<>();
+    for (Duration duration : durations) {
+      millis.add(duration.toMillis());
+    }
+    return millis;
+  }
+
+  private static TraceSearchConfig config(long initialMillis, long maxMillis, long deadlineMillis) {
+    return new TraceSearchConfig() {
+      @Override
+      public Duration getInitialPollDelay() {
+        return Duration.ofMillis(initialMillis);
+      }
+
+      @Override
+      public Duration getMaxPollDelay() {
+        return Duration.ofMillis(maxMillis);
+      }
+
+      @Override
+      public Duration getDeadline() {
+        return Duration.ofMillis(deadlineMillis);
+      }
+    };
+  }
+
+  /** Leaves job starts for the test to complete and answers polls from {@link #polls}. */
+  private SplunkO11yHttpClient client() {
+    return (SplunkO11yHttpClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{SplunkO11yHttpClient.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getTraceByServiceAsync")) {
+            if (args[1].equals("StartExemplarTraceSearchJob")) {
+              CompletableFuture<String> start = new CompletableFuture<>();
+              starts.add(start);
+              return start;
+            }
+            return CompletableFuture.completedFuture(polls.remove());
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  /** Keeps scheduled polls for the test to run instead of running them after their delay. */
+  private TaskScheduler taskScheduler() {
+    return (TaskScheduler) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{TaskScheduler.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("schedule") && args.length == 2 && args[0] instanceof Duration) {
+            delays.add((Duration) args[0]);
+            scheduled.add((Runnable) args[1]);
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
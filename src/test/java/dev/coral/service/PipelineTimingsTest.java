@@ -0,0 +1,50 @@
+package dev.coral.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dev.coral.service.PipelineTimings.Stage;
+import dev.coral.service.PipelineTimings.TaskRecord;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.Test;
+
+class PipelineTimingsTest {
+
+  @Test
+  void testCriticalPathFollowsLatestFinishedPredecessor() {
+    List<TaskRecord> tasks = List.of(
+        new TaskRecord(Stage.TOPOLOGY, 0, 0, 10, 0, 8),
+        new TaskRecord(Stage.MTS, 10, 12, 30, 2, 15),
+        new TaskRecord(Stage.MTS, 10, 10, 20, 0, 9),
+        new TaskRecord(Stage.TIME_SERIES, 20, 20, 60, 5, 30),
+        new TaskRecord(Stage.TIME_SERIES, 30, 35, 50, 5, 10),
+        new TaskRecord(Stage.EXPORT, 60, 61, 70, 1, 0));
+
+    List<Stage> path = new ArrayList<>();
+    PipelineTimings.criticalPath(tasks).forEach(task -> path.add(task.stage()));
+
+    assertEquals(List.of(Stage.EXPORT, Stage.TIME_SERIES, Stage.MTS, Stage.TOPOLOGY), path);
+  }
+
+  @Test
+  void testReportsQueuedTimeAndCriticalPath() throws Exception {
+    PipelineTimings timings = new PipelineTimings(OpenTelemetry.noop().getTracer("test"), "test");
+    PipelineTimings.Task queued = timings.task(Stage.TOPOLOGY);
+    Thread.sleep(20);
+    queued.run(() -> { });
+    timings.record(Stage.EXPORT, () -> { });
+    timings.finish();
+
+    PipelineTimings.Report report = timings.toReport();
+    PipelineTimings.StageReport topology = report.getStages().get(Stage.TOPOLOGY.ordinal());
+    assertEquals("test", report.getRun());
+    assertEquals(1, topology.getTasks());
+    assertTrue(topology.getQueuedMillis() >= 20);
+    assertTrue(topology.getCriticalQueuedMillis() >= 20);
+    assertEquals(0, report.getStages().get(Stage.MTS.ordinal()).getTasks());
+    assertTrue(report.getCriticalPathMillis() <= report.getTotalMillis());
+  }
+}
@@ -0,0 +1,445 @@
+package dev.coral.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import dev.coral.client.splunk.CachingSplunkO11yClient;
+import dev.coral.client.splunk.FakeSplunkServer;
+import dev.coral.client.splunk.SplunkO11yHttpClient;
+import dev.coral.client.splunk.SplunkRequestScheduler;
+import dev.coral.client.splunk.SplunkRequestScheduler.Family;
+import dev.coral.client.splunk.SplunkRequestScheduler.Limits;
+import dev.coral.client.splunk.SplunkTarget;
+import dev.coral.client.splunk.SplunkTargets;
+import dev.coral.config.PipelineConfig;
+import dev.coral.config.SnapshotConfig;
+import dev.coral.config.SplunkCacheConfig;
+import dev.coral.config.SplunkTargetsConfig;
+import dev.coral.config.TimeSeriesConfig;
+import dev.coral.config.TraceSearchConfig;
+import dev.coral.model.SplunkMTS;
+import dev.coral.model.SplunkTopology;
+import dev.coral.store.MtsCatalog;
+import dev.coral.store.TimeSeriesStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SplunkO11yDataFetcherServiceTest {
+
+  private static final int PAGE_SIZE = 3;
+  private static final int SERVICES = 4;
+  private static final Pattern SERVICE = Pattern.compile("(?:service\\.name|sf_service):([^)\\s]+)");
+
+  @TempDir
+  Path exportDir;
+
+  private final List<Long> offsets = new ArrayList<>();
+  private List<SplunkMTS.Result> mts = List.of();
+  private int count;
+  private SplunkO11yDataFetcherService service;
+
+  private final List<String> services = new ArrayList<>();
+  private final Map<String, Set<String>> threadsByCall = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> inFlightByService = new ConcurrentHashMap<>();
+  private final AtomicBoolean servicesOverlapped = new AtomicBoolean();
+  private boolean failSecondService;
+  private volatile String brokenService;
+
+  @AfterEach
+  void tearDown() {
+    if (service != null) {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void testStopsAfterAShortLastPage() {
+    serve(7, 7);
+
+    SplunkMTS all = service.getMTS(null, "checkout");
+
+    assertEquals(List.of(0L, 3L, 6L), offsets);
+    assertEquals(ids(7), ids(all));
+    assertEquals(7, all.getCount());
+  }
+
+  @Test
+  void testStopsWhenAFullPageReachesTheCount() {
+    serve(6, 6);
+
+    SplunkMTS all = service.getMTS(null, "checkout");
+
+    assertEquals(List.of(0L, 3L), offsets);
+    assertEquals(ids(6), ids(all));
+  }
+
+  @Test
+  void testWithoutACountStopsAtTheFirstEmptyPageAfterAnExactMultiple() {
+    serve(6, 0);
+
+    SplunkMTS all = service.getMTS(null, "checkout");
+
+    assertEquals(List.of(0L, 3L, 6L), offsets);
+    assertEquals(ids(6), ids(all));
+  }
+
+  @Test
+  void testWithoutACountStopsAfterAShortPage() {
+    serve(5, 0);
+
+    SplunkMTS all = service.getMTS(null, "checkout");
+
+    assertEquals(List.of(0L, 3L), offsets);
+    assertEquals(ids(5), ids(all));
+    assertEquals(0, all.getCount());
+  }
+
+  @Test
+  void testEmptyFirstPageYieldsNoMts() {
+    serve(0, 0);
+
+    SplunkMTS all = service.getMTS(null, "checkout");
+
+    assertEquals(List.of(0L), offsets);
+    assertEquals(List.of(), ids(all));
+  }
+
+  @Test
+  void testFetchAllSplunkDataRunsEachStageOnItsExecutor() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(FakeSplunkServer.Options.parse(
+        "--port=0", "--mts-per-service=6", "--latency=20", "--jitter=0"))) {
+      Map<String, Map<String, Integer>> summary = collectFrom(fake).get("fake");
+
+      assertEquals(Set.copyOf(services), summary.keySet());
+      assertEquals(Set.of("splunk-mts"), threadsByCall.get("getSplunkTopology"));
+      assertEquals(Set.of("splunk-mts"), threadsByCall.get("getMtsPage"));
+      assertEquals(Set.of("splunk-timeseries"), threadsByCall.get("getTimeSeriesWindow"));
+      assertTrue(Files.exists(exportDir.resolve("splunkTopology.json")));
+      assertTrue(Files.exists(exportDir.resolve("allSplunkMetrics.json")));
+    }
+  }
+
+  @Test
+  void testFetchAllSplunkDataOverlapsTheStagesOfDifferentServices() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(FakeSplunkServer.Options.parse(
+        "--port=0", "--mts-per-service=6", "--latency=20", "--jitter=0"))) {
+      collectFrom(fake);
+
+      assertTrue(servicesOverlapped.get(), "Calls of different services never ran at the same time");
+    }
+  }
+
+  @Test
+  void testFetchAllSplunkDataContinuesPastAFailingService() throws Exception {
+    try (FakeSplunkServer fake = FakeSplunkServer.start(FakeSplunkServer.Options.parse(
+        "--port=0", "--mts-per-service=6", "--latency=5", "--jitter=0"))) {
+      failSecondService = true;
+      Map<String, Map<String, Integer>> summary = collectFrom(fake).get("fake");
+
+      assertEquals(SERVICES - 1, summary.size());
+      assertFalse(summary.containsKey(brokenService));
+      assertTrue(services.stream().filter(name -> !name.equals(brokenService)).allMatch(summary::containsKey));
+    }
+  }
+
+  /**
+   * Collects the first {@link #SERVICES} services of the fake's topology through a client that records the thread
+   * and overlap of every call, and fails the MTS discovery of the second service if {@link #failSecondService}.
+   */
+  private Map<String, Map<String, Map<String, Integer>>> collectFrom(FakeSplunkServer fake) {
+    SplunkTargetsConfig.Target configured = new SplunkTargetsConfig.MapToTargetConverter().convert(
+        Map.of("org", "fake", "url", fake.url(), "token", "token", "http2", "false"),
+        SplunkTargetsConfig.Target.class, null).orElseThrow();
+    SplunkTargetsConfig config = () -> List.of(configured);
+    SplunkTarget real = new SplunkTargets(config, new DefaultHttpClientConfiguration(), new SimpleMeterRegistry(),
+        OpenTelemetry.noop()).getDefault();
+    try {
+      SplunkTarget recorded = new SplunkTarget("fake", "us1", "token", fake.url(), false, recording(real.getClient()));
+      service = service(new SplunkTargets(List.of(recorded)));
+      return service.fetchAllSplunkData();
+    } finally {
+      real.getClient().close();
+    }
+  }
+
+  private SplunkO11yHttpClient recording(SplunkO11yHttpClient delegate) {
+    return (SplunkO11yHttpClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{SplunkO11yHttpClient.class},
+        (proxy, method, args) -> {
+          String call = method.getName();
+          threadsByCall.computeIfAbsent(call, name -> ConcurrentHashMap.newKeySet())
+              .add(Thread.currentThread().getName().replaceAll("-\\d+$", ""));
+          String serviceName = null;
+          if (call.equals("getMtsPage") || call.equals("getTimeSeriesWindow")) {
+            Matcher matcher = SERVICE.matcher((String) args[1]);
+            serviceName = matcher.find() ? matcher.group(1) : null;
+          }
+          if (serviceName != null && call.equals("getMtsPage") && serviceName.equals(brokenService)) {
+            throw new IllegalStateException("Injected failure of " + serviceName);
+          }
+          AtomicInteger inFlight = serviceName == null ? null
+              : inFlightByService.computeIfAbsent(serviceName, name -> new AtomicInteger());
+          if (inFlight != null) {
+            inFlight.incrementAndGet();
+            for (Map.Entry<String, AtomicInteger> other : inFlightByService.entrySet()) {
+              if (!other.getKey().equals(serviceName) && other.getValue().get() > 0) {
+                servicesOverlapped.set(true);
+              }
+            }
+          }
+          try {
+            Object result = method.invoke(delegate, args);
+            if (result instanceof SplunkTopology) {
+              trim(((SplunkTopology) result).getData());
+            }
+            return result;
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          } finally {
+            if (inFlight != null) {
+              inFlight.decrementAndGet();
+            }
+          }
+        });
+  }
+
+  /** Keeps the first {@link #SERVICES} services and picks the one to break. */
+  private void trim(SplunkTopology.SplunkTopologyData topology) {
+    List<SplunkTopology.Node> nodes = new ArrayList<>(topology.getNodes().subList(0, SERVICES));
+    topology.setNodes(nodes);
+    for (SplunkTopology.Node node : nodes) {
+      services.add(node.getServiceName());
+    }
+    if (failSecondService) {
+      brokenService = services.get(1);
+    }
+  }
+
+  /** Serves {@code total} MTS, reporting {@code reportedCount} as the count of every page. */
+  private void serve(int total, int reportedCount) {
+    List<SplunkMTS.Result> results = new ArrayList<>();
+    for (int i = 0; i < total; i++) {
+      SplunkMTS.Result result = new SplunkMTS.Result();
+      result.setId("tsid-" + i);
+      results.add(result);
+    }
+    mts = results;
+    count = reportedCount;
+    SplunkTarget target = new SplunkTarget("org", "us1", "token", "http://localhost", false, client());
+    service = service(new SplunkTargets(List.of(target)));
+  }
+
+  private SplunkO11yDataFetcherService service(SplunkTargets targets) {
+    Map<Family, Limits> limits = new EnumMap<>(Family.class);
+    for (Family family : Family.values()) {
+      limits.put(family, new Limits(1000, 1000, 1, 1, 1, Duration.ofSeconds(5)));
+    }
+    SplunkRequestScheduler scheduler = new SplunkRequestScheduler(false, limits, 0, Duration.ofMillis(20));
+    return new SplunkO11yDataFetcherService(targets,
+        new CachingSplunkO11yClient(scheduler, cacheConfig()),
+        new ExemplarTraceSearchPoller(scheduler, null, traceSearchConfig()),
+        new TimeSeriesStore(), new MtsCatalog(), pipelineConfig(), snapshotConfig(), timeSeriesConfig(),
+        new SimpleMeterRegistry(), OpenTelemetry.noop());
+  }
+
+  private static List<String> ids(int total) {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < total; i++) {
+      ids.add("tsid-" + i);
+    }
+    return ids;
+  }
+
+  private static List<String> ids(SplunkMTS mts) {
+    List<String> ids = new ArrayList<>();
+    for (SplunkMTS.Result result : mts.getResults()) {
+      ids.add(result.getId());
+    }
+    return ids;
+  }
+
+  /** Pages {@link #mts} by offset and limit and records the offsets requested. */
+  private SplunkO11yHttpClient client() {
+    return (SplunkO11yHttpClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{SplunkO11yHttpClient.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getMtsPage")) {
+            long offset = (Long) args[2];
+            long limit = (Long) args[3];
+            synchronized (offsets) {
+              offsets.add(offset);
+            }
+            int from = (int) Math.min(mts.size(), offset);
+            int to = (int) Math.min(mts.size(), offset + limit);
+            return new SplunkMTS(count, false, new ArrayList<>(mts.subList(from, to)));
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  private PipelineConfig pipelineConfig() {
+    return new PipelineConfig() {
+      @Override
+      public int getMtsConcurrency() {
+        return 2;
+      }
+
+      @Override
+      public int getMtsPageSize() {
+        return PAGE_SIZE;
+      }
+
+      @Override
+      public int getTimeSeriesConcurrency() {
+        return 2;
+      }
+
+      @Override
+      public int getExportConcurrency() {
+        return 1;
+      }
+
+      @Override
+      public String getExportDir() {
+        return exportDir.toString();
+      }
+
+      @Override
+      public int getProfileHistory() {
+        return 5;
+      }
+    };
+  }
+
+  private static SnapshotConfig snapshotConfig() {
+    return new SnapshotConfig() {
+      @Override
+      public boolean isEnabled() {
+        return false;
+      }
+
+      @Override
+      public String getDir() {
+        return "snapshots";
+      }
+
+      @Override
+      public int getRetain() {
+        return 1;
+      }
+    };
+  }
+
+  private static TimeSeriesConfig timeSeriesConfig() {
+    return new TimeSeriesConfig() {
+      @Override
+      public Duration getWindow() {
+        return Duration.ofMinutes(15);
+      }
+
+      @Override
+      public Duration getResolution() {
+        return Duration.ofSeconds(1);
+      }
+
+      @Override
+      public boolean isIncremental() {
+        return true;
+      }
+
+      @Override
+      public int getRawPoints() {
+        return 3600;
+      }
+
+      @Override
+      public List<String> getRollups() {
+        return List.of();
+      }
+    };
+  }
+
+  private static SplunkCacheConfig cacheConfig() {
+    return new SplunkCacheConfig() {
+      @Override
+      public boolean isEnabled() {
+        return false;
+      }
+
+      @Override
+      public long getMaximumSize() {
+        return 100;
+      }
+
+      @Override
+      public Duration getMtsBucket() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getMtsTtl() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getTopologyBucket() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getTopologyTtl() {
+        return Duration.ofMinutes(1);
+      }
+
+      @Override
+      public Duration getTimeSeriesBucket() {
+        return Duration.ofSeconds(10);
+      }
+
+      @Override
+      public Duration getTimeSeriesTtl() {
+        return Duration.ofSeconds(10);
+      }
+    };
+  }
+
+  private static TraceSearchConfig traceSearchConfig() {
+    return new TraceSearchConfig() {
+      @Override
+      public Duration getInitialPollDelay() {
+        return Duration.ofMillis(100);
+      }
+
+      @Override
+      public Duration getMaxPollDelay() {
+        return Duration.ofSeconds(1);
+      }
+
+      @Override
+      public Duration getDeadline() {
+        return Duration.ofSeconds(10);
+      }
+    };
+  }
+}
@@ -0,0 +1,123 @@
+package dev.coral.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class MtsCatalogTest {
+
+  @Test
+  void testDictionaryEncodesRepeatedValues() {
+    MtsCatalog catalog = new MtsCatalog();
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(catalog.add("prod", "orders-service", "latency", "ts" + i,
+          Map.of("kubernetesNode", "node-" + (i % 3), "telemetrySdkName", "opentelemetry")));
+    }
+    assertFalse(catalog.add("prod", "orders-service", "latency", "ts0", Map.of()));
+    assertTrue(catalog.add("staging", "orders-service", "latency", "ts0", Map.of()));
+
+    assertEquals(1001, catalog.size());
+    // 1000 tsids, 3 nodes, 2 keys, 1 sdk name, 2 orgs, service and metric
+    assertEquals(1010, catalog.dictionarySize());
+    assertEquals(Set.of("latency"), catalog.metrics("prod", "orders-service"));
+    assertEquals(Set.of(), catalog.metrics("dev", "orders-service"));
+  }
+
+  @Test
+  void testFindsByAnyDimension() {
+    MtsCatalog catalog = new MtsCatalog();
+    catalog.add("prod", "orders-service", "latency", "ts1", Map.of("method", "GET", "kubernetesNode", "node-1"));
+    catalog.add("prod", "orders-service", "latency", "ts2", Map.of("method", "POST", "kubernetesNode", "node-1"));
+    catalog.add("prod", "orders-service", "errors", "ts3", Map.of("method", "GET", "kubernetesNode", "node-2"));
+    catalog.add("prod", "checkout-service", "latency", "ts4", Map.of("method", "GET", "kubernetesNode", "node-1"));
+
+    assertEquals(List.of("ts1", "ts4"), tsids(catalog.find(null, null, "latency", Map.of("method", "GET"), 10)));
+    assertEquals(List.of("ts1", "ts2"), tsids(catalog.find("prod", "orders-service", null, Map.of("kubernetesNode", "node-1"), 10)));
+    assertEquals(List.of("ts3"), tsids(catalog.find(null, null, null, Map.of("method", "GET", "kubernetesNode", "node-2"), 10)));
+    assertEquals(List.of("ts1"), tsids(catalog.find(null, null, null, Map.of(), 1)));
+    assertEquals(List.of(), tsids(catalog.find(null, null, null, Map.of("method", "DELETE"), 10)));
+    assertEquals(List.of(), tsids(catalog.find(null, null, null, Map.of("unknown", "GET"), 10)));
+    assertEquals(List.of(), tsids(catalog.find(null, "payments-service", null, Map.of(), 10)));
+
+    assertEquals(Set.of("ts1", "ts2"), catalog.tsids("prod", "orders-service", "latency"));
+    assertEquals(Set.of(), catalog.tsids("prod", "payments-service", "latency"));
+    assertEquals(Map.of("orders-service", Set.of("latency", "errors"), "checkout-service", Set.of("latency")),
+        catalog.metricsByService("prod"));
+  }
+
+  @Test
+  void testSeparatesOrgs() {
+    MtsCatalog catalog = new MtsCatalog();
+    catalog.add("prod", "orders-service", "latency", "ts1", Map.of("method", "GET"));
+    catalog.add("staging", "orders-service", "latency", "ts2", Map.of("method", "GET"));
+    catalog.add("staging", "checkout-service", "latency", "ts3", Map.of("method", "GET"));
+
+    assertEquals(List.of("ts2", "ts3"), tsids(catalog.find("staging", null, null, Map.of("method", "GET"), 10)));
+    assertEquals(List.of("ts1", "ts2"), tsids(catalog.find(null, "orders-service", "latency", Map.of(), 10)));
+    assertEquals(Set.of("ts2"), catalog.tsids("staging", "orders-service", "latency"));
+    assertEquals(Set.of("orders-service"), catalog.services("prod"));
+    assertEquals(Set.of("orders-service", "checkout-service"), catalog.services("staging"));
+    assertEquals(Map.of("orders-service", Set.of("latency")), catalog.metricsByService("prod"));
+  }
+
+  @Test
+  void testExpiresMtsNotSeenInGeneration() {
+    MtsCatalog catalog = new MtsCatalog();
+    int first = catalog.newGeneration();
+    catalog.add("prod", "orders-service", "latency", "ts1", Map.of("kubernetesPodName", "pod-1"));
+    catalog.add("prod", "orders-service", "latency", "ts2", Map.of("kubernetesPodName", "pod-2"));
+    catalog.add("prod", "checkout-service", "latency", "ts3", Map.of("kubernetesPodName", "pod-3"));
+    catalog.add("staging", "orders-service", "latency", "ts4", Map.of("kubernetesPodName", "pod-4"));
+    assertEquals(List.of(), catalog.expire("prod", first, Set.of()));
+    int dictionarySize = catalog.dictionarySize();
+
+    // pod-1 is replaced by pod-5, checkout-service could not be discovered
+    int second = catalog.newGeneration();
+    catalog.add("prod", "orders-service", "latency", "ts2", Map.of("kubernetesPodName", "pod-2"));
+    catalog.add("prod", "orders-service", "latency", "ts5", Map.of("kubernetesPodName", "pod-5"));
+    List<MtsCatalog.Mts> expired = catalog.expire("prod", second, Set.of("checkout-service"));
+
+    assertEquals(List.of("ts1"), tsids(expired));
+    assertEquals(Map.of("kubernetesPodName", "pod-1"), expired.get(0).getDimensions());
+    assertEquals(4, catalog.size());
+    assertEquals(dictionarySize, catalog.dictionarySize());
+    assertEquals(Set.of("ts2", "ts5"), catalog.tsids("prod", "orders-service", "latency"));
+    assertEquals(Set.of("ts3"), catalog.tsids("prod", "checkout-service", "latency"));
+    assertEquals(Set.of("ts4"), catalog.tsids("staging", "orders-service", "latency"));
+    assertEquals(List.of(), tsids(catalog.find(null, null, null, Map.of("kubernetesPodName", "pod-1"), 10)));
+    assertEquals(List.of("ts5"), tsids(catalog.find("prod", null, null, Map.of("kubernetesPodName", "pod-5"), 10)));
+
+    int third = catalog.newGeneration();
+    assertTrue(catalog.add("prod", "orders-service", "latency", "ts1", Map.of("kubernetesPodName", "pod-1")));
+    assertEquals(List.of("ts2", "ts5"), tsids(catalog.expire("prod", third, Set.of("checkout-service"))));
+    assertEquals(Set.of("ts1"), catalog.tsids("prod", "orders-service", "latency"));
+    assertEquals(dictionarySize - 2, catalog.dictionarySize());
+  }
+
+  @Test
+  void testOverlappingRunsKeepTheirOwnGeneration() {
+    MtsCatalog catalog = new MtsCatalog();
+    int first = catalog.newGeneration();
+    int second = catalog.newGeneration();
+    catalog.add("prod", "orders-service", "latency", "ts1", Map.of(), first);
+    catalog.add("prod", "orders-service", "latency", "ts2", Map.of(), second);
+    catalog.add("prod", "orders-service", "latency", "ts2", Map.of(), first);
+
+    assertEquals(second, catalog.currentGeneration());
+    assertEquals(Set.of("ts1"), catalog.newTsids("prod", "orders-service", "latency", first));
+    assertEquals(Set.of("ts2"), catalog.newTsids("prod", "orders-service", "latency", second));
+    assertEquals(List.of("ts1"), tsids(catalog.expire("prod", second, Set.of())));
+    assertEquals(Set.of("ts2"), catalog.tsids("prod", "orders-service", "latency"));
+  }
+
+  private static List<String> tsids(List<MtsCatalog.Mts> mts) {
+    return mts.stream().map(MtsCatalog.Mts::getTsid).collect(Collectors.toList());
+  }
+}
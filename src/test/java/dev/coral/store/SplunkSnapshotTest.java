@@ -0,0 +1,163 @@
+package dev.coral.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.coral.model.SplunkTopology;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SplunkSnapshotTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testWriteAndMapLatest() throws Exception {
+    TimeSeriesStore store = new TimeSeriesStore();
+    store.append("prod", "orders-service", "queueSize", "tsA", 1000, 1.5);
+    store.append("prod", "orders-service", "queueSize", "tsA", 2000, 2.5);
+    SplunkTopology.SplunkTopologyData topology = new SplunkTopology.SplunkTopologyData(
+        List.of(new SplunkTopology.Node("orders-service", false, "service")),
+        List.of(new SplunkTopology.Edge("orders-service", "checkout-service")));
+
+    MtsCatalog catalog = new MtsCatalog();
+    catalog.add("prod", "orders-service", "queueSize", "tsA", Map.of("kubernetesNode", "node-1", "method", "GET"));
+
+    SplunkSnapshot.write(directory, 1, Map.of("prod", topology), catalog, store.view());
+    SplunkSnapshot snapshot = SplunkSnapshot.readLatest(directory).orElseThrow();
+
+    assertEquals(Map.of("prod", topology), snapshot.getTopologies());
+    assertEquals(Set.of("queueSize"), snapshot.getCatalog().metrics("prod", "orders-service"));
+    assertEquals(List.of(new MtsCatalog.Mts("prod", "orders-service", "queueSize", "tsA",
+            Map.of("kubernetesNode", "node-1", "method", "GET"))),
+        snapshot.getCatalog().find(null, null, null, Map.of("kubernetesNode", "node-1"), 10));
+    TimeSeriesColumn column = snapshot.getSeries().get("prod").get("orders-service").get("queueSize").get("tsA");
+    assertArrayEquals(new long[]{1000, 2000}, column.slice(Long.MIN_VALUE, Long.MAX_VALUE).getTimestamps());
+    assertArrayEquals(new double[]{1.5, 2.5}, column.slice(Long.MIN_VALUE, Long.MAX_VALUE).getValues());
+  }
+
+  @Test
+  void testRejectsTruncatedAndCorruptSnapshots() throws Exception {
+    Path file = writeSample();
+    byte[] bytes = Files.readAllBytes(file);
+    Path corrupt = directory.resolve("corrupt");
+    for (int length = 0; length < bytes.length; length++) {
+      Files.write(corrupt, Arrays.copyOf(bytes, length));
+      assertThrows(IOException.class, () -> SplunkSnapshot.read(corrupt), "truncated to " + length);
+    }
+
+    // string count, then the org index of the first topology
+    int firstTopology = 20 + 4 + "prod".length() + 4 + "orders-service".length() + 4 + "service".length()
+        + 4 + "checkout-service".length() + 4 + "queueSize".length() + 4 + "tsA".length()
+        + 4 + "kubernetesNode".length() + 4 + "node-1".length() + 4 + "method".length() + 4 + "GET".length()
+        + 4;
+    for (int[] corruption : new int[][]{{16, Integer.MAX_VALUE}, {16, -1}, {20, 1 << 30}, {firstTopology, 42}}) {
+      byte[] changed = bytes.clone();
+      ByteBuffer.wrap(changed).putInt(corruption[0], corruption[1]);
+      Files.write(corrupt, changed);
+      assertThrows(IOException.class, () -> SplunkSnapshot.read(corrupt), Arrays.toString(corruption));
+    }
+  }
+
+  @Test
+  void testFallsBackToOlderSnapshot() throws Exception {
+    Path file = writeSample();
+    SplunkSnapshot older = SplunkSnapshot.read(file);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(directory.resolve("splunk-" + (older.getCreatedAt() + 1) + ".snapshot"),
+        Arrays.copyOf(bytes, bytes.length / 2));
+
+    SplunkSnapshot snapshot = SplunkSnapshot.readLatest(directory).orElseThrow();
+    assertEquals(older.getCreatedAt(), snapshot.getCreatedAt());
+    assertEquals(Set.of("queueSize"), snapshot.getCatalog().metrics("prod", "orders-service"));
+
+    Files.write(file, Arrays.copyOf(bytes, 20));
+    assertFalse(SplunkSnapshot.readLatest(directory).isPresent());
+  }
+
+  @Test
+  void testSnapshotsWrittenInTheSameMillisecondDoNotOverwriteEachOther() throws Exception {
+    Set<Path> files = new HashSet<>();
+    for (int i = 0; i < 5; i++) {
+      files.add(writeSample(5));
+    }
+
+    assertEquals(5, files.size());
+    try (Stream<Path> listed = Files.list(directory)) {
+      assertEquals(files, listed.collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  void testSkipsSnapshotTooLargeToMap() throws Exception {
+    Path file = writeSample();
+    SplunkSnapshot older = SplunkSnapshot.read(file);
+    Path large = directory.resolve("splunk-" + (older.getCreatedAt() + 1) + "-0.snapshot");
+    try (FileChannel channel = FileChannel.open(large, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      // Sparse, so the file takes no space
+      channel.write(ByteBuffer.allocate(1), Integer.MAX_VALUE);
+    }
+
+    assertThrows(IOException.class, () -> SplunkSnapshot.read(large));
+    assertEquals(older.getCreatedAt(), SplunkSnapshot.readLatest(directory).orElseThrow().getCreatedAt());
+  }
+
+  @Test
+  void testRestoresRollupsBeyondTheRawPoints() throws Exception {
+    List<TimeSeriesRollups.Tier> tiers = TimeSeriesRollups.Tier.parseAll(List.of("1m:1h", "5m:1d"));
+    TimeSeriesStore store = new TimeSeriesStore(10, tiers);
+    for (int i = 0; i < 60; i++) {
+      store.append("prod", "orders-service", "queueSize", "tsA", i * 10_000L, i);
+    }
+    SplunkSnapshot.write(directory, 1, Map.of(), new MtsCatalog(), store.view());
+
+    TimeSeriesStore restored = new TimeSeriesStore(10, TimeSeriesRollups.Tier.parseAll(List.of("1m:1h", "1h:7d")));
+    restored.restore(SplunkSnapshot.readLatest(directory).orElseThrow().getSeries());
+
+    TimeSeriesColumn column = restored.view().get("prod").get("orders-service").get("queueSize").get("tsA");
+    assertEquals(10, column.slice(Long.MIN_VALUE, Long.MAX_VALUE).size());
+    RollupSlice minutes = column.rollup(60_000, Long.MIN_VALUE, Long.MAX_VALUE);
+    RollupSlice original = store.view().get("prod").get("orders-service").get("queueSize").get("tsA")
+        .rollup(60_000, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(original.getTimestamps(), minutes.getTimestamps());
+    assertArrayEquals(original.getCount(), minutes.getCount());
+    assertArrayEquals(original.getSum(), minutes.getSum());
+    long[] sixPerMinute = new long[10];
+    Arrays.fill(sixPerMinute, 6);
+    assertArrayEquals(sixPerMinute, minutes.getCount());
+    // A tier the snapshot did not keep is rebuilt from the raw points left
+    assertArrayEquals(new long[]{10}, column.rollup(3_600_000, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+  }
+
+  private Path writeSample() throws IOException {
+    return writeSample(2);
+  }
+
+  private Path writeSample(int retain) throws IOException {
+    TimeSeriesStore store = new TimeSeriesStore();
+    store.append("prod", "orders-service", "queueSize", "tsA", 1000, 1.5);
+    SplunkTopology.SplunkTopologyData topology = new SplunkTopology.SplunkTopologyData(
+        List.of(new SplunkTopology.Node("orders-service", false, "service")),
+        List.of(new SplunkTopology.Edge("orders-service", "checkout-service")));
+    MtsCatalog catalog = new MtsCatalog();
+    catalog.add("prod", "orders-service", "queueSize", "tsA", Map.of("kubernetesNode", "node-1", "method", "GET"));
+    return SplunkSnapshot.write(directory, retain, Map.of("prod", topology), catalog, store.view());
+  }
+}
@@ -0,0 +1,60 @@
+package dev.coral.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TimeSeriesRollupsTest {
+
+  @Test
+  void testTiersAggregateIndependently() {
+    TimeSeriesRollups rollups = new TimeSeriesRollups(TimeSeriesRollups.Tier.parseAll(List.of("1m:5m", "5m:1h")));
+    for (int i = 0; i < 180; i++) {
+      rollups.add(i * 1000L, i % 60);
+    }
+
+    RollupSlice minutes = rollups.slice(60_000, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{0, 60_000, 120_000}, minutes.getTimestamps());
+    assertArrayEquals(new long[]{60, 60, 60}, minutes.getCount());
+    assertArrayEquals(new double[]{1770, 1770, 1770}, minutes.getSum());
+    assertArrayEquals(new double[]{59, 59, 59}, minutes.getMax());
+
+    RollupSlice fiveMinutes = rollups.slice(300_000, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{0}, fiveMinutes.getTimestamps());
+    assertArrayEquals(new long[]{180}, fiveMinutes.getCount());
+
+    assertArrayEquals(new long[]{60_000}, rollups.slice(60_000, 1, 60_000).getTimestamps());
+    assertNull(rollups.slice(3_600_000, Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  void testOldBucketsAreOverwritten() {
+    TimeSeriesRollups rollups = new TimeSeriesRollups(List.of(TimeSeriesRollups.Tier.parse("1m:3m")));
+    for (int minute = 0; minute < 10; minute++) {
+      rollups.add(minute * 60_000L, minute);
+    }
+    // Outside the retained three minutes
+    rollups.add(0, 100);
+    rollups.replace(9 * 60_000L, 9, 12);
+
+    RollupSlice slice = rollups.slice(60_000, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{420_000, 480_000, 540_000}, slice.getTimestamps());
+    assertArrayEquals(new double[]{7, 8, 12}, slice.getSum());
+    assertArrayEquals(new double[]{7, 8, 9}, slice.getMin());
+    assertArrayEquals(new double[]{7, 8, 12}, slice.getMax());
+  }
+
+  @Test
+  void testParsesTierSpecs() {
+    TimeSeriesRollups.Tier tier = TimeSeriesRollups.Tier.parse("5m:1d");
+    assertEquals(300_000, tier.getWidthMillis());
+    assertEquals(288, tier.getBuckets());
+    assertThrows(IllegalArgumentException.class, () -> TimeSeriesRollups.Tier.parse("5m"));
+    assertThrows(IllegalArgumentException.class, () -> TimeSeriesRollups.Tier.parse("1h:5m"));
+  }
+}
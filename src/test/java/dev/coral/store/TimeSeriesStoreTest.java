@@ -0,0 +1,148 @@
+package dev.coral.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class TimeSeriesStoreTest {
+
+  private static final String WINDOW = "{\"data\":{"
+      + "\"tsA\":[ [ 1000, 1 ], [ 2000, 2.5 ], [ 3000, null ], [ 4000, 4 ] ],"
+      + "\"tsB\" : [ [ 2000, 7 ] ]"
+      + "},\"errors\":[]}";
+
+  @Test
+  void testMergeWindowAndScan() throws Exception {
+    TimeSeriesStore store = new TimeSeriesStore();
+    int points = store.mergeWindow("prod", "orders-service", "queueSize", WINDOW);
+
+    assertEquals(4, points);
+    Map<String, TimeSeriesSlice> slices = store.scan("prod", "orders-service", "queueSize", 2000, 4000);
+    assertArrayEquals(new long[]{2000, 4000}, slices.get("tsA").getTimestamps());
+    assertArrayEquals(new double[]{2.5, 4}, slices.get("tsA").getValues());
+    assertArrayEquals(new long[]{2000}, slices.get("tsB").getTimestamps());
+    assertEquals(0, store.scan("prod", "orders-service", "missing", 0, Long.MAX_VALUE).size());
+  }
+
+  @Test
+  void testMergeWindowAppends() throws Exception {
+    TimeSeriesStore store = new TimeSeriesStore();
+    store.mergeWindow("prod", "orders-service", "queueSize", WINDOW);
+    assertEquals(Map.of("tsA", 4000L, "tsB", 2000L), store.lastTimestamps("prod", "orders-service", "queueSize"));
+
+    String delta = "{\"data\":{\"tsA\":[[4000,4.5],[5000,5]],\"tsC\":[[5000,9]]}}";
+    assertEquals(3, store.mergeWindow("prod", "orders-service", "queueSize", delta));
+
+    Map<String, TimeSeriesSlice> slices = store.scan("prod", "orders-service", "queueSize", Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{1000, 2000, 4000, 5000}, slices.get("tsA").getTimestamps());
+    assertArrayEquals(new double[]{1, 2.5, 4.5, 5}, slices.get("tsA").getValues());
+    assertArrayEquals(new long[]{2000}, slices.get("tsB").getTimestamps());
+    assertArrayEquals(new long[]{5000}, slices.get("tsC").getTimestamps());
+    assertEquals(Map.of("tsA", 5000L, "tsB", 2000L, "tsC", 5000L), store.lastTimestamps("prod", "orders-service", "queueSize"));
+  }
+
+  @Test
+  void testRefreshStartIgnoresCataloguedMtsThatNeverReport() throws Exception {
+    MtsCatalog catalog = new MtsCatalog();
+    TimeSeriesStore store = new TimeSeriesStore();
+    int generation = catalog.newGeneration();
+    for (String tsid : List.of("tsA", "tsB", "tsDead")) {
+      catalog.add("prod", "orders-service", "queueSize", tsid, Map.of());
+    }
+    assertEquals(500, store.refreshStart("prod", "orders-service", "queueSize", 500,
+        catalog.newTsids("prod", "orders-service", "queueSize", generation)));
+    store.mergeWindow("prod", "orders-service", "queueSize", WINDOW);
+    assertEquals(500, store.refreshStart("prod", "orders-service", "queueSize", 500,
+        catalog.newTsids("prod", "orders-service", "queueSize", generation)));
+
+    // tsDead is still discovered but has never reported
+    generation = catalog.newGeneration();
+    for (String tsid : List.of("tsA", "tsB", "tsDead")) {
+      catalog.add("prod", "orders-service", "queueSize", tsid, Map.of());
+    }
+    assertEquals(Set.of(), catalog.newTsids("prod", "orders-service", "queueSize", generation));
+    assertEquals(2000, store.refreshStart("prod", "orders-service", "queueSize", 500,
+        catalog.newTsids("prod", "orders-service", "queueSize", generation)));
+    assertEquals(3000, store.refreshStart("prod", "orders-service", "queueSize", 3000,
+        catalog.newTsids("prod", "orders-service", "queueSize", generation)));
+
+    catalog.add("prod", "orders-service", "queueSize", "tsC", Map.of());
+    assertEquals(500, store.refreshStart("prod", "orders-service", "queueSize", 500,
+        catalog.newTsids("prod", "orders-service", "queueSize", generation)));
+  }
+
+  @Test
+  void testCountsMtsAndPoints() throws Exception {
+    TimeSeriesStore store = new TimeSeriesStore();
+    store.mergeWindow("prod", "orders-service", "queueSize", WINDOW);
+    store.append("staging", "orders-service", "queueSize", "tsA", 1000, 1);
+
+    assertEquals(3, store.mtsCount());
+    assertEquals(5L, store.pointCount());
+  }
+
+  @Test
+  void testRemoveDoesNotDropConcurrentAppends() throws Exception {
+    TimeSeriesStore store = new TimeSeriesStore();
+    AtomicInteger lost = new AtomicInteger();
+    Thread remover = new Thread(() -> {
+      for (int i = 0; i < 20_000; i++) {
+        store.append("prod", "orders-service", "queueSize", "tsB", i, i);
+        store.remove("prod", "orders-service", "queueSize", "tsB");
+      }
+    });
+    remover.start();
+    for (int i = 0; i < 20_000; i++) {
+      store.append("prod", "orders-service", "queueSize", "tsA", i, i);
+      if (!store.lastTimestamps("prod", "orders-service", "queueSize").containsKey("tsA")) {
+        lost.incrementAndGet();
+      }
+      store.remove("prod", "orders-service", "queueSize", "tsA");
+    }
+    remover.join();
+
+    assertEquals(0, lost.get());
+    assertEquals(0, store.mtsCount());
+  }
+
+  @Test
+  void testRingKeepsNewestPointsAndRollups() {
+    TimeSeriesStore store = new TimeSeriesStore(3, List.of(TimeSeriesRollups.Tier.parse("10s:1m")));
+    for (int i = 0; i < 20; i++) {
+      store.append("prod", "orders-service", "queueSize", "tsA", i * 1000L, i);
+    }
+    store.append("prod", "orders-service", "queueSize", "tsA", 500, 100);
+
+    TimeSeriesSlice raw = store.scan("prod", "orders-service", "queueSize", "tsA", Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{17000, 18000, 19000}, raw.getTimestamps());
+
+    RollupSlice rollup = store.rollups("prod", "orders-service", "queueSize", 10_000, Long.MIN_VALUE, Long.MAX_VALUE).get("tsA");
+    assertArrayEquals(new long[]{0, 10000}, rollup.getTimestamps());
+    // The point at 500 is older than the ring and is dropped from the rollups too
+    assertArrayEquals(new long[]{10, 10}, rollup.getCount());
+    assertArrayEquals(new double[]{0, 10}, rollup.getMin());
+    assertArrayEquals(new double[]{9, 19}, rollup.getMax());
+    assertArrayEquals(new double[]{45, 145}, rollup.getSum());
+    assertNull(store.rollups("prod", "orders-service", "queueSize", 60_000, Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  void testColumnKeepsTimestampOrder() {
+    TimeSeriesColumn column = new TimeSeriesColumn(1);
+    column.append(30, 3);
+    column.append(10, 1);
+    column.append(20, 2);
+    column.append(30, 33);
+
+    TimeSeriesSlice slice = column.slice(Long.MIN_VALUE, Long.MAX_VALUE);
+    assertArrayEquals(new long[]{10, 20, 30}, slice.getTimestamps());
+    assertArrayEquals(new double[]{1, 2, 33}, slice.getValues());
+  }
+}
@@ -0,0 +1,139 @@
+package dev.coral.utils.metrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalFileWriterTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testSameNameInSameSecondDoesNotOverwrite() throws Exception {
+    LocalFileWriter writer = new LocalFileWriter(directory, 16, 4, Duration.ofSeconds(5), true);
+    List<CompletableFuture<Path>> saves = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      saves.add(writer.save("topology", "{\"n\":" + i + "}"));
+    }
+    Set<Path> paths = new HashSet<>();
+    for (int i = 0; i < saves.size(); i++) {
+      Path path = saves.get(i).join();
+      paths.add(path);
+      assertEquals("{\"n\":" + i + "}", Files.readString(path));
+    }
+    assertEquals(10, paths.size());
+    writer.close();
+  }
+
+  @Test
+  void testObjectsArePrettyPrintedJson() throws Exception {
+    LocalFileWriter writer = new LocalFileWriter(directory, 16, 4, Duration.ofSeconds(5), false);
+    Path path = writer.save("alert", Map.of("severity", "Critical")).join();
+    assertTrue(path.getFileName().toString().startsWith("alert_"));
+    assertEquals("{\n  \"severity\" : \"Critical\"\n}", Files.readString(path).replace(System.lineSeparator(), "\n"));
+    writer.close();
+  }
+
+  @Test
+  void testCloseFlushesPendingRecords() throws Exception {
+    LocalFileWriter writer = new LocalFileWriter(directory, 256, 8, Duration.ofSeconds(5), false);
+    List<CompletableFuture<Path>> saves = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      saves.add(writer.save("series", "point " + i));
+    }
+    writer.close();
+    for (CompletableFuture<Path> save : saves) {
+      assertTrue(save.isDone() && !save.isCompletedExceptionally());
+    }
+    try (var files = Files.list(directory)) {
+      assertEquals(100, files.count());
+    }
+    assertThrows(RejectedExecutionException.class, () -> writer.save("late", "x"));
+  }
+
+  @Test
+  void testRejectsWhenQueueStaysFull() throws Exception {
+    LocalFileWriter writer = new LocalFileWriter(directory, 1, 1, Duration.ofMillis(50), false);
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Path> blocked = writer.save("blocked", new Blocking(writing, release));
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+    CompletableFuture<Path> queued = writer.save("queued", "x");
+
+    RejectedExecutionException e = assertThrows(RejectedExecutionException.class, () -> writer.save("dropped", "y"));
+    assertTrue(e.getMessage().contains("dropped"));
+
+    release.countDown();
+    writer.close();
+    assertTrue(blocked.isDone() && !blocked.isCompletedExceptionally());
+    assertTrue(queued.isDone() && !queued.isCompletedExceptionally());
+  }
+
+  @Test
+  void testEverySaveRacingCloseCompletes() throws Exception {
+    for (int round = 0; round < 100; round++) {
+      // A small queue keeps savers blocked in the enqueue while close() runs
+      LocalFileWriter writer = new LocalFileWriter(directory.resolve("round-" + round), 2, 8, Duration.ofSeconds(5),
+          false);
+      List<CompletableFuture<Path>> saves = new CopyOnWriteArrayList<>();
+      ExecutorService savers = Executors.newFixedThreadPool(8);
+      CountDownLatch saving = new CountDownLatch(8);
+      for (int t = 0; t < 8; t++) {
+        savers.execute(() -> {
+          saving.countDown();
+          while (true) {
+            try {
+              saves.add(writer.save("race", "x"));
+            } catch (RejectedExecutionException e) {
+              return;
+            }
+          }
+        });
+      }
+      assertTrue(saving.await(5, TimeUnit.SECONDS));
+      writer.close();
+      savers.shutdown();
+      assertTrue(savers.awaitTermination(5, TimeUnit.SECONDS));
+      for (CompletableFuture<Path> save : saves) {
+        assertTrue(save.isDone(), "A save accepted while closing never completed");
+      }
+    }
+  }
+
+  /** Serializes only once the test releases it, keeping the writer busy meanwhile. */
+  static final class Blocking {
+    private final CountDownLatch writing;
+    private final CountDownLatch release;
+
+    Blocking(CountDownLatch writing, CountDownLatch release) {
+      this.writing = writing;
+      this.release = release;
+    }
+
+    public String getValue() throws InterruptedException {
+      writing.countDown();
+      release.await();
+      return "done";
+    }
+  }
+}
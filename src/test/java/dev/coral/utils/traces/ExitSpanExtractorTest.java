@@ -0,0 +1,112 @@
+package dev.coral.utils.traces;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+import dev.coral.service.Span;
+import org.junit.jupiter.api.Test;
+
+class ExitSpanExtractorTest {
+
+  @Test
+  void testFindExitSpanInLocalTrace() throws Exception {
+    Span exitSpan = ExitSpanExtractor.findExitSpan(new File("src/main/resources/json/trace.json"));
+
+    assertEquals("9258600969b9ca50", exitSpan.getSpanId());
+    assertEquals("apm-api-peanuts", exitSpan.getServiceName());
+  }
+
+  @Test
+  void testSpanIndexQueries() throws Exception {
+    SpanIndex index = ExitSpanExtractor.readIndex(new File("src/main/resources/json/trace.json"));
+
+    assertEquals(16, index.size());
+    assertEquals(2, index.roots().size());
+    assertEquals(Set.of("istio-ingressgateway.istio-ingress", "apm-graphql", "apm-api-peanuts"),
+        index.exitSpansByService().keySet());
+    int span = index.indexOf("1f23713c5871e119");
+    assertEquals(SpanIndex.Kind.CLIENT, index.kind(span));
+    assertEquals(span, index.parent(index.indexOf("9258600969b9ca50")));
+    assertEquals("9258600969b9ca50", index.deepestSpan().getSpanId());
+  }
+
+  @Test
+  void testExitSpanOfService() throws Exception {
+    SpanIndex index = ExitSpanExtractor.readIndex(new File("src/main/resources/json/trace.json"));
+
+    for (String serviceName : index.exitSpansByService().keySet()) {
+      Span exitSpan = index.exitSpan(serviceName);
+      assertEquals(serviceName, exitSpan.getServiceName());
+      assertTrue(index.exitSpansByService().get(serviceName).contains(exitSpan));
+    }
+    assertEquals("9258600969b9ca50", index.exitSpan("apm-api-peanuts").getSpanId());
+    assertNull(index.exitSpan("unknown-service"));
+  }
+
+  @Test
+  void testMalformedDurationAndStartTimeAreUnknown() throws Exception {
+    String trace = "[{\"spanId\": \"a\", \"serviceName\": \"orders\", \"startTime\": \"yesterday\","
+        + " \"durationMicros\": \"12\", \"tags\": {\"span.kind\": \"client\"}},"
+        + " {\"spanId\": \"b\", \"serviceName\": \"orders\", \"durationMicros\": 1.5e3},"
+        + " {\"spanId\": \"c\", \"serviceName\": \"orders\", \"durationMicros\": \"slow\"},"
+        + " {\"spanId\": \"d\", \"serviceName\": \"orders\", \"durationMicros\": 99999999999}]";
+    SpanIndex index = ExitSpanExtractor.readIndex(trace.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(4, index.size());
+    assertEquals(Long.MIN_VALUE, index.startMicros(0));
+    assertEquals(12, index.span(0).getDurationMicros());
+    assertEquals(1500, index.span(1).getDurationMicros());
+    assertNull(index.span(2).getDurationMicros());
+    assertNull(index.span(3).getDurationMicros());
+    assertEquals("a", ExitSpanExtractor.findExitSpan(trace.getBytes(StandardCharsets.UTF_8), "orders").getSpanId());
+    assertEquals(Long.MIN_VALUE, ExitSpanExtractor.epochMicros("2024-13-45T99:00:00+02:00"));
+  }
+
+  @Test
+  void testSpanIdsDifferingInLeadingZerosDoNotCollide() {
+    assertEquals(0x9258600969b9ca50L, SpanIndex.spanKey("9258600969b9ca50"));
+    assertNotEquals(SpanIndex.spanKey("0abc"), SpanIndex.spanKey("abc"));
+    assertNotEquals(SpanIndex.spanKey("0000000000000abc"), SpanIndex.spanKey("abc"));
+
+    Span parent = span("abc", null);
+    Span child = span("0abc", "abc");
+    SpanIndex index = SpanIndex.builder()
+        .add(parent, 1, SpanIndex.Kind.SERVER)
+        .add(child, 2, SpanIndex.Kind.CLIENT)
+        .build();
+    assertEquals(0, index.indexOf("abc"));
+    assertEquals(1, index.indexOf("0abc"));
+    assertEquals(0, index.parent(1));
+    assertEquals(List.of(parent), index.roots());
+  }
+
+  @Test
+  void testEmptyTrace() throws Exception {
+    assertNull(ExitSpanExtractor.findExitSpan("[]".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void testEpochMicros() {
+    String timestamp = "2024-10-24T22:02:22.594381Z";
+    long expected = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.parse(timestamp));
+
+    assertEquals(expected, ExitSpanExtractor.epochMicros(timestamp));
+    assertEquals(expected, ExitSpanExtractor.epochMicros("2024-10-25T00:02:22.594381+02:00"));
+  }
+
+  private static Span span(String spanId, String parentId) {
+    Span span = new Span();
+    span.setSpanId(spanId);
+    span.setParentId(parentId);
+    return span;
+  }
+}